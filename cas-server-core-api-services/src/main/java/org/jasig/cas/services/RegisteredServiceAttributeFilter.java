@@ -19,4 +19,25 @@ public interface RegisteredServiceAttributeFilter extends Serializable {
      * @return a map that contains the filtered attributes.
      */
     Map<String, Object> filter(Map<String, Object> givenAttributes);
+
+    /**
+     * Whether the filter decides on each attribute independently of the others, in which case
+     * attributes may be filtered one at a time with {@link #filterAttribute(String, Object)}.
+     *
+     * @return true, if attributes can be filtered one at a time
+     */
+    default boolean filtersAttributesIndependently() {
+        return false;
+    }
+
+    /**
+     * Filters the value of a single attribute. Only used if attributes are filtered independently.
+     *
+     * @param name  the name of the attribute
+     * @param value the value of the attribute
+     * @return the value to release, or null if the attribute should not be released
+     */
+    default Object filterAttribute(final String name, final Object value) {
+        return value;
+    }
 }
@@ -41,4 +41,11 @@ public interface RegisteredServiceAttributeReleasePolicy extends Serializable {
      * @return the attributes
      */
     Map<String, Object> getAttributes(Principal p);
+
+    /**
+     * Prepares the policy ahead of its first release of attributes, when services are loaded.
+     * Policies that have nothing to prepare may ignore it.
+     */
+    default void compile() {
+    }
 }
@@ -0,0 +1,47 @@
+package org.jasig.cas.services;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Changes made to a service registry since a point in time, as reported by
+ * {@link ServiceRegistryDao#findChangedServices(long, Collection)}.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class RegisteredServiceChanges {
+
+    private final Collection<RegisteredService> changedServices;
+
+    private final Collection<Long> deletedServiceIds;
+
+    /**
+     * Instantiates a new set of changes.
+     *
+     * @param changedServices   the services that were added or saved
+     * @param deletedServiceIds the ids of services that were deleted
+     */
+    public RegisteredServiceChanges(final Collection<RegisteredService> changedServices,
+                                    final Collection<Long> deletedServiceIds) {
+        this.changedServices = Collections.unmodifiableCollection(changedServices);
+        this.deletedServiceIds = Collections.unmodifiableCollection(deletedServiceIds);
+    }
+
+    public Collection<RegisteredService> getChangedServices() {
+        return this.changedServices;
+    }
+
+    public Collection<Long> getDeletedServiceIds() {
+        return this.deletedServiceIds;
+    }
+
+    /**
+     * Whether nothing has changed.
+     *
+     * @return true if no service was added, saved or deleted
+     */
+    public boolean isEmpty() {
+        return this.changedServices.isEmpty() && this.deletedServiceIds.isEmpty();
+    }
+}
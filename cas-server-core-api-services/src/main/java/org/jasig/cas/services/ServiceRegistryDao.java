@@ -1,5 +1,6 @@
 package org.jasig.cas.services;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -41,4 +42,19 @@ public interface ServiceRegistryDao {
      * @return the registered service
      */
     RegisteredService findServiceById(long id);
+
+    /**
+     * Find the services that were saved at or after the given time, along with
+     * those among the given services that no longer exist in the data store. Registries that
+     * keep track of changes allow services managers to bring their view of the registry up to date
+     * without loading every service again.
+     *
+     * @param since             the time in milliseconds since which changes are requested
+     * @param knownServiceIds   the ids of the services the caller currently knows about
+     * @return the changes, or null if the registry does not keep track of changes
+     * and services must be {@link #load() loaded} again instead.
+     */
+    default RegisteredServiceChanges findChangedServices(final long since, final Collection<Long> knownServiceIds) {
+        return null;
+    }
 }
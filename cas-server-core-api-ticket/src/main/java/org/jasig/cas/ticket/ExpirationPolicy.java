@@ -1,6 +1,7 @@
 package org.jasig.cas.ticket;
 
 import java.io.Serializable;
+import java.time.ZonedDateTime;
 
 /**
  * Strategy that determines if the ticket is expired. Implementations of the
@@ -40,4 +41,18 @@ public interface ExpirationPolicy extends Serializable {
      * is not supported or is inactive.
      */
     Long getTimeToIdle();
+
+    /**
+     * Gets the earliest point in time at which a ticket in the given state
+     * could be considered expired by this policy, no matter how the ticket is used from
+     * now on. Ticket registries may use this as a hint to avoid examining tickets
+     * that cannot have expired yet.
+     *
+     * @param ticketState The snapshot of the current ticket state
+     * @return the earliest expiration time, or null if it cannot be determined
+     * and the ticket may expire at any time.
+     */
+    default ZonedDateTime getEarliestExpirationTime(final TicketState ticketState) {
+        return null;
+    }
 }
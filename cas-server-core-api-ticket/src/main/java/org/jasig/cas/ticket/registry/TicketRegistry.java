@@ -1,6 +1,8 @@
 package org.jasig.cas.ticket.registry;
 
 import java.util.Collection;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 import org.jasig.cas.ticket.Ticket;
 
@@ -63,4 +65,45 @@ public interface TicketRegistry {
      * might or might not be valid i.e. expired.
      */
     Collection<Ticket> getTickets();
+
+    /**
+     * Add several tickets to the registry at once. Registries whose storage
+     * supports multi-key operations should override this to avoid a round trip per ticket.
+     *
+     * @param tickets the tickets to add
+     */
+    default void addTickets(final Collection<Ticket> tickets) {
+        tickets.forEach(this::addTicket);
+    }
+
+    /**
+     * Retrieve several tickets from the registry at once. Tickets that
+     * cannot be found are left out of the result.
+     *
+     * @param ticketIds the ids of the tickets we wish to retrieve
+     * @return the tickets found in the registry
+     */
+    default Collection<Ticket> getTickets(final Collection<String> ticketIds) {
+        return ticketIds.stream()
+                .map(this::getTicket)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Remove several tickets from the registry at once. As with {@link #deleteTicket(String)},
+     * service tickets and proxy-granting tickets of ticket-granting tickets are removed as well.
+     *
+     * @param ticketIds the ids of the tickets to delete
+     * @return the number of the given tickets that were removed
+     */
+    default int deleteTickets(final Collection<String> ticketIds) {
+        int count = 0;
+        for (final String ticketId : ticketIds) {
+            if (deleteTicket(ticketId)) {
+                count++;
+            }
+        }
+        return count;
+    }
 }
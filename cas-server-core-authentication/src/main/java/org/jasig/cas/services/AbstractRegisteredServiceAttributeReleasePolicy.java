@@ -13,7 +13,8 @@ import java.util.Map;
 
 /**
  * Abstract release policy for attributes, provides common shared settings such as loggers and attribute filter config.
- * Subclasses are to provide the behavior for attribute retrieval.
+ * Subclasses are to provide the behavior for attribute retrieval, and may compile it along with the
+ * attribute filter into an {@link AttributeReleasePlan} that is built once and reused for every release.
  * @author Misagh Moayyed
  * @since 4.1.0
  */
@@ -36,9 +37,13 @@ public abstract class AbstractRegisteredServiceAttributeReleasePolicy implements
     /** Authorize the release of PGT for this service. Default is false. **/
     private boolean authorizedToReleaseProxyGrantingTicket;
 
+    /** The compiled release plan, or null until the policy is compiled again. **/
+    private transient volatile AttributeReleasePlan releasePlan;
+
     @Override
     public final void setAttributeFilter(final RegisteredServiceAttributeFilter filter) {
         this.registeredServiceAttributeFilter = filter;
+        resetReleasePlan();
     }
 
     public final void setPrincipalAttributesRepository(final PrincipalAttributesRepository repository) {
@@ -76,10 +81,28 @@ public abstract class AbstractRegisteredServiceAttributeReleasePolicy implements
         this.authorizedToReleaseProxyGrantingTicket = authorizedToReleaseProxyGrantingTicket;
     }
 
+    @Override
+    public final void compile() {
+        this.releasePlan = compileReleasePlan();
+        logger.debug("Compiled release plan {}", this.releasePlan);
+    }
+
     @Override
     public final Map<String, Object> getAttributes(final Principal p) {
         final Map<String, Object> principalAttributes = this.principalAttributesRepository == null
                 ? p.getAttributes() : this.principalAttributesRepository.getAttributes(p);
+
+        AttributeReleasePlan plan = this.releasePlan;
+        if (plan == null) {
+            plan = compileReleasePlan();
+            this.releasePlan = plan;
+        }
+        if (plan != null) {
+            final Map<String, Object> attributesToRelease = plan.release(principalAttributes);
+            logger.debug("Released {} of {} principal attributes", attributesToRelease.size(), principalAttributes.size());
+            return attributesToRelease;
+        }
+
         final Map<String, Object> attributesToRelease = getAttributesInternal(principalAttributes);
         
         if (this.registeredServiceAttributeFilter != null) {
@@ -96,6 +119,25 @@ public abstract class AbstractRegisteredServiceAttributeReleasePolicy implements
      */
     protected abstract Map<String, Object> getAttributesInternal(Map<String, Object> attributes);
 
+    /**
+     * Compiles the policy and its attribute filter into a release plan.
+     * Subclasses that do not compile their policy return null, and attributes are
+     * then released by {@link #getAttributesInternal(Map)} and the attribute filter.
+     *
+     * @return the release plan, or null
+     */
+    protected AttributeReleasePlan compileReleasePlan() {
+        return null;
+    }
+
+    /**
+     * Discards the compiled release plan, so that it is compiled again on the next release.
+     * Subclasses call this whenever a setting that goes into the plan changes.
+     */
+    protected final void resetReleasePlan() {
+        this.releasePlan = null;
+    }
+
     @Override
     public int hashCode() {
         return new HashCodeBuilder(13, 133)
@@ -0,0 +1,138 @@
+package org.jasig.cas.services;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The compiled form of an attribute release policy and its filter, built once per policy
+ * and applied on every release. The plan holds the names of the attributes to release along
+ * with the names they are released under, and releases them in a single pass over the
+ * principal attributes. Filters that decide on each attribute independently are applied
+ * within the same pass; other filters are applied to the released attributes afterwards.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class AttributeReleasePlan {
+
+    private final String[] attributeNames;
+
+    private final String[] releasedNames;
+
+    private final RegisteredServiceAttributeFilter filter;
+
+    private final boolean filteringAttributesIndependently;
+
+    private AttributeReleasePlan(final String[] attributeNames, final String[] releasedNames,
+                                 final RegisteredServiceAttributeFilter filter) {
+        this.attributeNames = attributeNames;
+        this.releasedNames = releasedNames;
+        this.filter = filter;
+        this.filteringAttributesIndependently = filter != null && filter.filtersAttributesIndependently();
+    }
+
+    /**
+     * Plan the release of all principal attributes.
+     *
+     * @param filter the attribute filter, or null
+     * @return the plan
+     */
+    public static AttributeReleasePlan all(final RegisteredServiceAttributeFilter filter) {
+        return new AttributeReleasePlan(null, null, filter);
+    }
+
+    /**
+     * Plan the release of the given attributes under their own names.
+     *
+     * @param attributeNames the names of the attributes to release
+     * @param filter         the attribute filter, or null
+     * @return the plan
+     */
+    public static AttributeReleasePlan allowed(final Iterable<String> attributeNames,
+                                               final RegisteredServiceAttributeFilter filter) {
+        final Map<String, String> names = new LinkedHashMap<>();
+        attributeNames.forEach(name -> names.put(name, name));
+        return mapped(names, filter);
+    }
+
+    /**
+     * Plan the release of the given attributes under the names they are mapped to.
+     *
+     * @param mappedNames the names of the attributes to release, mapped to the names they are released under
+     * @param filter      the attribute filter, or null
+     * @return the plan
+     */
+    public static AttributeReleasePlan mapped(final Map<String, String> mappedNames,
+                                              final RegisteredServiceAttributeFilter filter) {
+        final String[] attributeNames = new String[mappedNames.size()];
+        final String[] releasedNames = new String[mappedNames.size()];
+        int i = 0;
+        for (final Map.Entry<String, String> entry : mappedNames.entrySet()) {
+            attributeNames[i] = entry.getKey().intern();
+            releasedNames[i] = entry.getValue().intern();
+            i++;
+        }
+        return new AttributeReleasePlan(attributeNames, releasedNames, filter);
+    }
+
+    /**
+     * Release the principal attributes according to the plan.
+     *
+     * @param attributes the principal attributes
+     * @return the attributes to release
+     */
+    public Map<String, Object> release(final Map<String, Object> attributes) {
+        if (this.attributeNames == null) {
+            if (this.filter == null) {
+                return attributes;
+            }
+            if (!this.filteringAttributesIndependently) {
+                return this.filter.filter(attributes);
+            }
+            final Map<String, Object> attributesToRelease = new HashMap<>(attributes.size());
+            for (final Map.Entry<String, Object> entry : attributes.entrySet()) {
+                put(attributesToRelease, entry.getKey(), entry.getValue());
+            }
+            return attributesToRelease;
+        }
+
+        final Map<String, Object> attributesToRelease = new HashMap<>(Math.min(attributes.size(), this.attributeNames.length));
+        for (int i = 0; i < this.attributeNames.length; i++) {
+            final Object value = attributes.get(this.attributeNames[i]);
+            if (value != null) {
+                put(attributesToRelease, this.releasedNames[i], value);
+            }
+        }
+        if (this.filter != null && !this.filteringAttributesIndependently) {
+            return this.filter.filter(attributesToRelease);
+        }
+        return attributesToRelease;
+    }
+
+    /**
+     * Put the attribute into the attributes to release, having filtered its value if the filter allows it.
+     *
+     * @param attributesToRelease the attributes to release
+     * @param name                the name to release the attribute under
+     * @param value               the value of the attribute
+     */
+    private void put(final Map<String, Object> attributesToRelease, final String name, final Object value) {
+        final Object releasedValue = this.filteringAttributesIndependently ? this.filter.filterAttribute(name, value) : value;
+        if (releasedValue != null) {
+            attributesToRelease.put(name, releasedValue);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("attributeNames", this.attributeNames == null ? "*" : Arrays.toString(this.attributeNames))
+                .append("releasedNames", Arrays.toString(this.releasedNames))
+                .append("filter", this.filter)
+                .toString();
+    }
+}
@@ -20,6 +20,11 @@ public final class ReturnAllAttributeReleasePolicy extends AbstractRegisteredSer
         return resolvedAttributes;
     }
 
+    @Override
+    protected AttributeReleasePlan compileReleasePlan() {
+        return AttributeReleasePlan.all(getAttributeFilter());
+    }
+
 
     @Override
     public boolean equals(final Object obj) {
@@ -45,6 +45,7 @@ public final class ReturnAllowedAttributeReleasePolicy extends AbstractRegistere
      */
     public void setAllowedAttributes(final List<String> allowed) {
         this.allowedAttributes = allowed;
+        resetReleasePlan();
     }
     
     /**
@@ -68,6 +69,11 @@ public final class ReturnAllowedAttributeReleasePolicy extends AbstractRegistere
         return attributesToRelease;
     }
 
+    @Override
+    protected AttributeReleasePlan compileReleasePlan() {
+        return AttributeReleasePlan.allowed(this.allowedAttributes, getAttributeFilter());
+    }
+
 
     @Override
     public boolean equals(final Object obj) {
@@ -43,6 +43,7 @@ public class ReturnMappedAttributeReleasePolicy extends AbstractRegisteredServic
      */
     public void setAllowedAttributes(final Map<String, String> allowed) {
         this.allowedAttributes = allowed;
+        resetReleasePlan();
     }
     
     /**
@@ -72,6 +73,18 @@ public class ReturnMappedAttributeReleasePolicy extends AbstractRegisteredServic
         return attributesToRelease;
     }
 
+    /**
+     * {@inheritDoc}
+     * Subclasses may override {@link #getAttributesInternal(Map)}, so a plan is only
+     * compiled for this class itself.
+     */
+    @Override
+    protected AttributeReleasePlan compileReleasePlan() {
+        if (getClass() != ReturnMappedAttributeReleasePolicy.class) {
+            return null;
+        }
+        return AttributeReleasePlan.mapped(this.allowedAttributes, getAttributeFilter());
+    }
 
     @Override
     public boolean equals(final Object obj) {
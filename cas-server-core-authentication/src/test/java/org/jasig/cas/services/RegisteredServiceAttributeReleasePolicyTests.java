@@ -129,4 +129,87 @@ public class RegisteredServiceAttributeReleasePolicyTests {
         final Map<String, Object> attr = policy.getAttributes(p);
         assertEquals(attr.size(), attributes.size());
     }
+
+    @Test
+    public void verifyReleasePlanIsCompiledAgainWhenPolicyChanges() {
+        final ReturnAllowedAttributeReleasePolicy policy = new ReturnAllowedAttributeReleasePolicy();
+        policy.setAllowedAttributes(Arrays.asList("attr1", "attr3"));
+        policy.compile();
+        final Principal p = mock(Principal.class);
+
+        final Map<String, Object> map = new HashMap<>();
+        map.put("attr1", "value1");
+        map.put("attr2", "value2");
+        map.put("attr3", Arrays.asList("v3", "v4"));
+
+        when(p.getAttributes()).thenReturn(map);
+        when(p.getId()).thenReturn("principalId");
+        assertEquals(2, policy.getAttributes(p).size());
+
+        policy.setAllowedAttributes(Collections.singletonList("attr2"));
+        assertEquals(Collections.singletonMap("attr2", "value2"), policy.getAttributes(p));
+
+        final RegisteredServiceAttributeFilter filter = mock(RegisteredServiceAttributeFilter.class);
+        when(filter.filter(anyMapOf(String.class, Object.class))).thenReturn(Collections.emptyMap());
+        policy.setAttributeFilter(filter);
+        assertTrue(policy.getAttributes(p).isEmpty());
+        verify(filter).filter(Collections.singletonMap("attr2", "value2"));
+    }
+
+    @Test
+    public void verifyMappedAttributesAreFilteredOneAtATime() {
+        final ReturnMappedAttributeReleasePolicy policy = new ReturnMappedAttributeReleasePolicy();
+        final Map<String, String> mappedAttr = new HashMap<>();
+        mappedAttr.put("attr1", "newAttr1");
+        mappedAttr.put("attr3", "newAttr3");
+        policy.setAllowedAttributes(mappedAttr);
+        policy.setAttributeFilter(new RegisteredServiceAttributeFilter() {
+            private static final long serialVersionUID = -2412361095186376283L;
+
+            @Override
+            public Map<String, Object> filter(final Map<String, Object> givenAttributes) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean filtersAttributesIndependently() {
+                return true;
+            }
+
+            @Override
+            public Object filterAttribute(final String name, final Object value) {
+                return "newAttr1".equals(name) ? value : null;
+            }
+        });
+
+        final Principal p = mock(Principal.class);
+        final Map<String, Object> map = new HashMap<>();
+        map.put("attr1", "value1");
+        map.put("attr2", "value2");
+        map.put("attr3", "value3");
+        when(p.getAttributes()).thenReturn(map);
+        when(p.getId()).thenReturn("principalId");
+
+        assertEquals(Collections.singletonMap("newAttr1", "value1"), policy.getAttributes(p));
+    }
+
+    @Test
+    public void verifySubclassOfMappedPolicyReleasesItsOwnAttributes() {
+        final ReturnMappedAttributeReleasePolicy policy = new ReturnMappedAttributeReleasePolicy(
+                Collections.singletonMap("attr1", "newAttr1")) {
+            private static final long serialVersionUID = 8227913404296372564L;
+
+            @Override
+            protected Map<String, Object> getAttributesInternal(final Map<String, Object> resolvedAttributes) {
+                return Collections.singletonMap("custom", "value");
+            }
+        };
+        policy.compile();
+
+        final Principal p = mock(Principal.class);
+        when(p.getAttributes()).thenReturn(Collections.singletonMap("attr1", "value1"));
+        when(p.getId()).thenReturn("principalId");
+
+        assertEquals(Collections.singletonMap("custom", "value"), policy.getAttributes(p));
+    }
 }
@@ -1,5 +1,6 @@
 package org.jasig.cas.services;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import org.apache.commons.lang3.builder.CompareToBuilder;
 import org.apache.commons.lang3.builder.EqualsBuilder;
@@ -18,6 +19,7 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Inheritance;
 import javax.persistence.JoinTable;
 import javax.persistence.Lob;
@@ -44,7 +46,7 @@ import java.util.Set;
 @Inheritance
 @DiscriminatorColumn(name = "expression_type", length = 15, discriminatorType = DiscriminatorType.STRING,
                      columnDefinition = "VARCHAR(15) DEFAULT 'ant'")
-@Table(name = "RegisteredServiceImpl")
+@Table(name = "RegisteredServiceImpl", indexes = @Index(name = "RegisteredServiceImpl_last_modified_idx", columnList = "last_modified"))
 @JsonTypeInfo(use=JsonTypeInfo.Id.CLASS, include=JsonTypeInfo.As.PROPERTY, property="@class")
 public abstract class AbstractRegisteredService implements RegisteredService, Comparable<RegisteredService> {
 
@@ -133,6 +135,12 @@ public abstract class AbstractRegisteredService implements RegisteredService, Co
     @JoinTable(name="RegisteredServiceImpl_Properties")
     private Map<String, DefaultRegisteredServiceProperty> properties = new HashMap<>();
 
+    /**
+     * Time in milliseconds at which the service was last saved by a registry that keeps track of changes.
+     */
+    @Column(name = "last_modified", nullable = true)
+    private Long lastModified;
+
     @Override
     public long getId() {
         return this.id;
@@ -491,4 +499,19 @@ public abstract class AbstractRegisteredService implements RegisteredService, Co
     public void setMultifactorPolicy(final RegisteredServiceMultifactorPolicy multifactorPolicy) {
         this.multifactorPolicy = multifactorPolicy;
     }
+
+    /**
+     * Gets the time at which the service was last saved by a registry that keeps track of changes.
+     *
+     * @return the time in milliseconds, or 0 if unknown
+     */
+    @JsonIgnore
+    public long getLastModified() {
+        return this.lastModified == null ? 0 : this.lastModified;
+    }
+
+    @JsonIgnore
+    public void setLastModified(final long lastModified) {
+        this.lastModified = lastModified;
+    }
 }
@@ -6,7 +6,11 @@ import org.jasig.cas.support.events.CasRegisteredServiceSavedEvent;
 import org.jasig.cas.util.DateTimeUtils;
 import org.jasig.inspektr.audit.annotation.Audit;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.quartz.Job;
 import org.quartz.JobBuilder;
 import org.quartz.JobDetail;
@@ -30,19 +34,27 @@ import javax.annotation.PostConstruct;
 import javax.validation.constraints.NotNull;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.TreeSet;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
  * Default implementation of the {@link ServicesManager} interface. If there are
  * no services registered with the server, it considers the ServicecsManager
  * disabled and will not prevent any service from using CAS.
+ * <p>
+ * Services are periodically reloaded. If the service registry keeps track of changes,
+ * only services that were saved or deleted since the previous reload are fetched, and
+ * nothing is rebuilt if none were. Services are loaded in full otherwise.
  *
  * @author Scott Battaglia
  * @since 3.1
@@ -52,6 +64,10 @@ public final class DefaultServicesManagerImpl implements ReloadableServicesManag
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultServicesManagerImpl.class);
 
+    private static final long DEFAULT_RESOLUTION_CACHE_SIZE = 1000;
+
+    private static final int DEFAULT_CHANGE_TRACKING_TOLERANCE = 60;
+
     /**
      * Instance of ServiceRegistryDao.
      */
@@ -65,9 +81,25 @@ public final class DefaultServicesManagerImpl implements ReloadableServicesManag
     private ApplicationEventPublisher eventPublisher;
 
     /**
-     * Map to store all services.
+     * Immutable snapshot of all services. Readers never lock;
+     * writers build a new snapshot and swap it in.
+     */
+    private volatile RegisteredServicesSnapshot services = new RegisteredServicesSnapshot(Collections.emptyMap(), 0);
+
+    /**
+     * Maximum number of resolved service ids to remember per snapshot.
+     * A value of zero disables the resolution cache.
      */
-    private ConcurrentMap<Long, RegisteredService> services = new ConcurrentHashMap<>();
+    @Value("${service.registry.resolution.cache.size:1000}")
+    private long resolutionCacheSize = DEFAULT_RESOLUTION_CACHE_SIZE;
+
+    private final Counter resolutionCacheHits = new Counter();
+
+    private final Counter resolutionCacheMisses = new Counter();
+
+    @Autowired(required = false)
+    @Qualifier("metrics")
+    private MetricRegistry metricRegistry;
 
     @Value("${service.registry.quartz.reloader.repeatInterval:60}")
     private int refreshInterval;
@@ -75,6 +107,18 @@ public final class DefaultServicesManagerImpl implements ReloadableServicesManag
     @Value("${service.registry.quartz.reloader.startDelay:15}")
     private int startDelay;
 
+    /**
+     * Time in seconds by which changes are looked up before the previous reload,
+     * to account for clock differences between nodes and for slow transactions.
+     */
+    @Value("${service.registry.quartz.reloader.tolerance:60}")
+    private int changeTrackingTolerance = DEFAULT_CHANGE_TRACKING_TOLERANCE;
+
+    /**
+     * Time in milliseconds at which services were last reloaded, or 0 if they should be loaded in full.
+     */
+    private volatile long lastReloadTime;
+
     @Autowired
     private ApplicationContext applicationContext;
 
@@ -111,7 +155,9 @@ public final class DefaultServicesManagerImpl implements ReloadableServicesManag
         }
 
         this.serviceRegistryDao.delete(r);
-        this.services.remove(id);
+        final Map<Long, RegisteredService> map = new HashMap<>(this.services.byId);
+        map.remove(id);
+        this.services = new RegisteredServicesSnapshot(map, this.resolutionCacheSize);
 
         this.eventPublisher.publishEvent(new CasRegisteredServiceDeletedEvent(this, r));
         return r;
@@ -120,17 +166,30 @@ public final class DefaultServicesManagerImpl implements ReloadableServicesManag
 
     @Override
     public RegisteredService findServiceBy(final Service service) {
-        final TreeSet<RegisteredService> c = convertToTreeSet();
-        return c.stream().filter(r -> r.matches(service)).findFirst().orElse(null);
+        final RegisteredServicesSnapshot snapshot = this.services;
+        if (snapshot.resolutionCache == null || service == null || service.getId() == null) {
+            return snapshot.matchingIndex.findServiceBy(service);
+        }
+
+        final Optional<RegisteredService> cached = snapshot.resolutionCache.getIfPresent(service.getId());
+        if (cached != null) {
+            this.resolutionCacheHits.inc();
+            return cached.orElse(null);
+        }
+
+        this.resolutionCacheMisses.inc();
+        final RegisteredService r = snapshot.matchingIndex.findServiceBy(service);
+        snapshot.resolutionCache.put(service.getId(), Optional.ofNullable(r));
+        return r;
     }
 
     @Override
     public Collection<RegisteredService> findServiceBy(final Predicate<RegisteredService> predicate) {
-        final Collection<RegisteredService> c = convertToTreeSet();
-        final Iterator<RegisteredService> it = c.iterator();
-        while (it.hasNext()) {
-            if (!predicate.apply(it.next())) {
-                it.remove();
+        final List<RegisteredService> sorted = this.services.sorted;
+        final List<RegisteredService> c = new ArrayList<>();
+        for (final RegisteredService r : sorted) {
+            if (predicate.apply(r)) {
+                c.add(r);
             }
         }
         return c;
@@ -138,7 +197,7 @@ public final class DefaultServicesManagerImpl implements ReloadableServicesManag
 
     @Override
     public RegisteredService findServiceBy(final long id) {
-        final RegisteredService r = this.services.get(id);
+        final RegisteredService r = this.services.byId.get(id);
 
         try {
             return r == null ? null : r.clone();
@@ -153,12 +212,12 @@ public final class DefaultServicesManagerImpl implements ReloadableServicesManag
      * @return the tree set
      */
     public TreeSet<RegisteredService> convertToTreeSet() {
-        return new TreeSet<>(this.services.values());
+        return new TreeSet<>(this.services.sorted);
     }
 
     @Override
     public Collection<RegisteredService> getAllServices() {
-        return Collections.unmodifiableCollection(convertToTreeSet());
+        return this.services.sorted;
     }
 
     @Override
@@ -171,27 +230,72 @@ public final class DefaultServicesManagerImpl implements ReloadableServicesManag
     @Override
     public synchronized RegisteredService save(final RegisteredService registeredService) {
         final RegisteredService r = this.serviceRegistryDao.save(registeredService);
-        this.services.put(r.getId(), r);
+        final Map<Long, RegisteredService> map = new HashMap<>(this.services.byId);
+        map.put(r.getId(), r);
+        this.services = new RegisteredServicesSnapshot(map, this.resolutionCacheSize);
         this.eventPublisher.publishEvent(new CasRegisteredServiceSavedEvent(this, r));
         return r;
     }
 
     @Override
     public void reload() {
+        final long previousReloadTime = this.lastReloadTime;
+        if (previousReloadTime > 0) {
+            final long start = System.currentTimeMillis();
+            final RegisteredServicesSnapshot current = this.services;
+            final RegisteredServiceChanges changes = this.serviceRegistryDao.findChangedServices(
+                    previousReloadTime - TimeUnit.SECONDS.toMillis(this.changeTrackingTolerance), current.byId.keySet());
+            if (changes != null) {
+                LOGGER.debug("Reloading changed registered services.");
+                applyChanges(changes, start);
+                return;
+            }
+        }
         LOGGER.debug("Reloading registered services.");
         load();
     }
 
+    /**
+     * Apply the changes reported by the DAO to the services, rebuilding the snapshot only if needed.
+     *
+     * @param changes the changes
+     * @param start   the time at which changes were requested
+     */
+    private synchronized void applyChanges(final RegisteredServiceChanges changes, final long start) {
+        final Map<Long, RegisteredService> map = new HashMap<>(this.services.byId);
+        boolean modified = false;
+        for (final Long id : changes.getDeletedServiceIds()) {
+            modified |= map.remove(id) != null;
+        }
+        for (final RegisteredService r : changes.getChangedServices()) {
+            modified |= !r.equals(map.put(r.getId(), r));
+        }
+        if (modified) {
+            this.services = new RegisteredServicesSnapshot(map, this.resolutionCacheSize);
+            LOGGER.info("Applied {} changed and {} deleted service(s) from {}.", changes.getChangedServices().size(),
+                    changes.getDeletedServiceIds().size(), this.serviceRegistryDao);
+        } else {
+            LOGGER.debug("No services have changed in {}.", this.serviceRegistryDao);
+        }
+        this.lastReloadTime = start;
+    }
+
     /**
      * Load services that are provided by the DAO.
      */
     public void load() {
-        this.services = this.serviceRegistryDao.load().stream()
-                .collect(Collectors.toConcurrentMap(r -> {
+        final long start = System.currentTimeMillis();
+        final Map<Long, RegisteredService> map = this.serviceRegistryDao.load().stream()
+                .collect(Collectors.toMap(r -> {
                     LOGGER.debug("Adding registered service {}", r.getServiceId());
                     return r.getId();
-                }, r -> r, (r, s) -> s == null ? r : s == null ? r : s));
-        LOGGER.info("Loaded {} services from {}.", this.services.size(),
+                }, r -> r, (r, s) -> s == null ? r : s));
+        final RegisteredServicesSnapshot snapshot = new RegisteredServicesSnapshot(map, this.resolutionCacheSize);
+        synchronized (this) {
+            this.services = snapshot;
+            this.lastReloadTime = start;
+        }
+        LOGGER.info("Loaded {} services from {}.", snapshot.sorted.size(),
             this.serviceRegistryDao);
 
     }
@@ -227,6 +331,19 @@ public final class DefaultServicesManagerImpl implements ReloadableServicesManag
         }
     }
 
+    /**
+     * Register the service resolution cache counters with the metrics registry, if one is available.
+     */
+    @PostConstruct
+    public void registerMetrics() {
+        if (this.metricRegistry != null) {
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "SERVICE_RESOLUTION_CACHE_HITS"),
+                    this.resolutionCacheHits);
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "SERVICE_RESOLUTION_CACHE_MISSES"),
+                    this.resolutionCacheMisses);
+        }
+    }
+
     private boolean shouldScheduleLoaderJob() {
         if (this.startDelay > 0 && this.applicationContext.getParent() == null && scheduler != null) {
             LOGGER.debug("Found CAS servlet application context for service management");
@@ -236,11 +353,45 @@ public final class DefaultServicesManagerImpl implements ReloadableServicesManag
         return false;
     }
 
+    public void setChangeTrackingTolerance(final int changeTrackingTolerance) {
+        this.changeTrackingTolerance = changeTrackingTolerance;
+    }
+
     @Override
     public void setApplicationEventPublisher(final ApplicationEventPublisher applicationEventPublisher) {
         this.eventPublisher = applicationEventPublisher;
     }
 
+    /**
+     * Immutable, pre-sorted view of the registered services along with
+     * an id index and the matching index used to resolve services.
+     * Resolved service ids are remembered in a bounded cache that is
+     * discarded along with the snapshot, so a resolution never outlives
+     * the collection of services it was computed from.
+     */
+    private static final class RegisteredServicesSnapshot {
+        private final Map<Long, RegisteredService> byId;
+
+        private final List<RegisteredService> sorted;
+
+        private final RegisteredServicesMatchingIndex matchingIndex;
+
+        private final Cache<String, Optional<RegisteredService>> resolutionCache;
+
+        RegisteredServicesSnapshot(final Map<Long, RegisteredService> services, final long resolutionCacheSize) {
+            services.values().stream()
+                    .map(RegisteredService::getAttributeReleasePolicy)
+                    .filter(policy -> policy != null)
+                    .forEach(RegisteredServiceAttributeReleasePolicy::compile);
+            this.byId = Collections.unmodifiableMap(services);
+            final TreeSet<RegisteredService> set = new TreeSet<>(services.values());
+            this.sorted = Collections.unmodifiableList(Arrays.asList(set.toArray(new RegisteredService[set.size()])));
+            this.matchingIndex = new RegisteredServicesMatchingIndex(this.sorted);
+            this.resolutionCache = resolutionCacheSize > 0
+                    ? CacheBuilder.newBuilder().maximumSize(resolutionCacheSize).build() : null;
+        }
+    }
+
     /**
      * The Service registry reloader job.
      */
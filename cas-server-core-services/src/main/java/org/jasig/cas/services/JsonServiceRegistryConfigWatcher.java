@@ -23,6 +23,8 @@ import static java.nio.file.StandardWatchEventKinds.*;
 /**
  * This is {@link JsonServiceRegistryConfigWatcher} that watches the json config directory
  * for changes and promptly attempts to reload the CAS service registry configuration.
+ * Only the services defined by the files that changed are reloaded, and the services manager
+ * is refreshed once changes settle.
  *
  * @author Misagh Moayyed
  * @since 4.1.0
@@ -109,7 +111,7 @@ class JsonServiceRegistryConfigWatcher implements Runnable, Closeable {
                 if (kind.name().equals(ENTRY_CREATE.name()) && file.exists()) {
                     handleCreateEvent(file);
                 } else if (kind.name().equals(ENTRY_DELETE.name())) {
-                    handleDeleteEvent();
+                    handleDeleteEvent(file);
                 } else if (kind.name().equals(ENTRY_MODIFY.name()) && file.exists()) {
                     handleModifyEvent(file);
                 }
@@ -129,11 +131,8 @@ class JsonServiceRegistryConfigWatcher implements Runnable, Closeable {
         if (newService == null) {
             LOGGER.warn("New service definition could not be loaded from [{}]", file.getAbsolutePath());
         } else {
-            final RegisteredService oldService = this.serviceRegistryDao.findServiceById(newService.getId());
-
-            if (!newService.equals(oldService)) {
-                this.serviceRegistryDao.updateRegisteredService(newService);
-                this.serviceRegistryDao.refreshServicesManager();
+            if (this.serviceRegistryDao.updateRegisteredService(file, newService)) {
+                this.serviceRegistryDao.scheduleServicesManagerRefresh();
             } else {
                 LOGGER.debug("Service [{}] loaded from [{}] is identical to the existing entry. Entry may have already been saved "
                         + "in the event processing pipeline", newService.getId(), file.getName());
@@ -143,10 +142,15 @@ class JsonServiceRegistryConfigWatcher implements Runnable, Closeable {
 
     /**
      * Handle delete event.
+     *
+     * @param file the file that was deleted
      */
-    private void handleDeleteEvent() {
-        this.serviceRegistryDao.load();
-        this.serviceRegistryDao.refreshServicesManager();
+    private void handleDeleteEvent(final File file) {
+        final RegisteredService service = this.serviceRegistryDao.removeRegisteredService(file);
+        if (service != null) {
+            LOGGER.debug("Removed service [{}] defined by [{}]", service.getId(), file);
+            this.serviceRegistryDao.scheduleServicesManagerRefresh();
+        }
     }
 
     /**
@@ -168,8 +172,9 @@ class JsonServiceRegistryConfigWatcher implements Runnable, Closeable {
                     service.getServiceId(), service.getId(), file.getAbsolutePath());
 
         }
-        this.serviceRegistryDao.updateRegisteredService(service);
-        this.serviceRegistryDao.refreshServicesManager();
+        if (this.serviceRegistryDao.updateRegisteredService(file, service)) {
+            this.serviceRegistryDao.scheduleServicesManagerRefresh();
+        }
     }
 
     @Override
@@ -25,9 +25,17 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * Implementation of {@code ServiceRegistryDao} that reads services definition from JSON
@@ -67,6 +75,13 @@ import java.util.concurrent.ConcurrentHashMap;
  }
  * </pre>
  *
+ * <p>Changes made to the directory are picked up as they happen. Files are parsed in parallel
+ * when all services are loaded. Afterwards, each file that is created, modified or deleted only
+ * updates the service it defines, which is found through an index of service ids by file, and bursts of
+ * changes within the reload debounce interval are followed by a single refresh of the services manager.
+ * The services manager then only picks up the services that changed, and files that changed without
+ * the watcher noticing are found by their modification time, without parsing the other files again.</p>
+ *
  * @author Dmitriy Kopylenko
  * @author Marvin S. Addison
  * @author Misagh Moayyed
@@ -82,11 +97,23 @@ public class JsonServiceRegistryDao implements ServiceRegistryDao {
      */
     private static final String FILE_EXTENSION = "json";
 
+    private static final long DEFAULT_RELOAD_DEBOUNCE_INTERVAL = 500;
+
     /**
      * Map of service ID to registered service.
      */
     private Map<Long, RegisteredService> serviceMap = new ConcurrentHashMap<>();
 
+    /**
+     * Map of the absolute path of each service definition file to the id of the service it defines.
+     */
+    private Map<String, Long> serviceIdsByFile = new ConcurrentHashMap<>();
+
+    /**
+     * Map of service ID to the time the service was last added or changed since services were loaded.
+     */
+    private Map<Long, Long> serviceChangeTimes = new ConcurrentHashMap<>();
+
     /**
      * The Service registry directory.
      */
@@ -103,6 +130,26 @@ public class JsonServiceRegistryDao implements ServiceRegistryDao {
     private final Thread jsonServiceRegistryWatcherThread;
     private final JsonServiceRegistryConfigWatcher jsonServiceRegistryConfigWatcher;
 
+    /**
+     * Time in milliseconds to wait for further changes to service definition files
+     * before refreshing the services manager. Set to 0 to refresh on every change.
+     */
+    @Value("${service.registry.config.reload.debounce:500}")
+    private long reloadDebounceInterval = DEFAULT_RELOAD_DEBOUNCE_INTERVAL;
+
+    /**
+     * Refreshes the services manager once changes to service definition files settle.
+     */
+    private final ScheduledExecutorService refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, getClass().getSimpleName() + "Refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong lastChangeTime = new AtomicLong();
+
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+
     /**
      * Instantiates a new Json service registry dao.
      *
@@ -161,7 +208,7 @@ public class JsonServiceRegistryDao implements ServiceRegistryDao {
             if (this.serviceMap.containsKey(service.getId())) {
                 LOGGER.debug("Found existing service definition by id [{}]. Saving...", service.getId());
             }
-            this.serviceMap.put(service.getId(), service);
+            updateRegisteredService(f, service);
             LOGGER.debug("Saved service to [{}]", f.getCanonicalPath());
         } catch (final IOException e) {
             throw new RuntimeException("IO error opening file stream.", e);
@@ -178,6 +225,8 @@ public class JsonServiceRegistryDao implements ServiceRegistryDao {
                 LOGGER.warn("Failed to delete service definition file [{}]", f.getCanonicalPath());
             } else {
                 serviceMap.remove(service.getId());
+                this.serviceChangeTimes.remove(service.getId());
+                this.serviceIdsByFile.remove(f.getAbsolutePath());
                 LOGGER.debug("Successfully deleted service definition file [{}]", f.getCanonicalPath());
             }
             return result;
@@ -188,34 +237,76 @@ public class JsonServiceRegistryDao implements ServiceRegistryDao {
 
     @Override
     public final synchronized List<RegisteredService> load() {
+        final long start = System.currentTimeMillis();
         final Map<Long, RegisteredService> temp = new ConcurrentHashMap<>();
-        final int[] errorCount = {0};
+        final Map<String, Long> tempServiceIdsByFile = new ConcurrentHashMap<>();
+        final AtomicInteger errorCount = new AtomicInteger();
         final Collection<File> c = FileUtils.listFiles(this.serviceRegistryDirectory.toFile(), new String[] {FILE_EXTENSION}, true);
-        c.stream().filter(file -> file.length() > 0).forEach(file -> {
+        c.parallelStream().filter(file -> file.length() > 0).forEach(file -> {
             final RegisteredService service = loadRegisteredServiceFromFile(file);
             if (service == null) {
                 LOGGER.warn("Could not load service definition from file {}", file);
-                errorCount[0]++;
+                errorCount.incrementAndGet();
             } else {
-                if (temp.containsKey(service.getId())) {
+                if (temp.put(service.getId(), service) != null) {
                     LOGGER.warn("Found a service definition [{}] with a duplicate id [{}]. "
                                     + "This will overwrite previous service definitions and is likely a "
                                     + "configuration problem. Make sure all services have a unique id and try again.",
                             service.getServiceId(), service.getId());
                 }
-                temp.put(service.getId(), service);
+                tempServiceIdsByFile.put(file.getAbsolutePath(), service.getId());
             }
         });
 
-        if (errorCount[0] == 0) {
+        if (errorCount.get() == 0) {
             this.serviceMap = temp;
+            this.serviceIdsByFile = tempServiceIdsByFile;
+            this.serviceChangeTimes = new ConcurrentHashMap<>();
+            LOGGER.debug("Loaded {} service definition(s) from {} file(s) in {} ms", temp.size(), c.size(),
+                    System.currentTimeMillis() - start);
         } else {
             LOGGER.warn("{} errors encountered when loading service definitions. New definitions are not loaded until errors are "
-                   +  "corrected", errorCount[0]);
+                   +  "corrected", errorCount.get());
         }
         return new ArrayList(this.serviceMap.values());
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>Changes the watcher has applied are reported as they are. In addition, files that were modified
+     * since the given time, or that are not known to define a service, are parsed again, and services whose
+     * files no longer exist are removed. Other files are not parsed.</p>
+     */
+    @Override
+    public final synchronized RegisteredServiceChanges findChangedServices(final long since, final Collection<Long> knownServiceIds) {
+        final Set<String> paths = new HashSet<>();
+        for (final File file : FileUtils.listFiles(this.serviceRegistryDirectory.toFile(), new String[] {FILE_EXTENSION}, true)) {
+            final String path = file.getAbsolutePath();
+            paths.add(path);
+            if (file.length() == 0) {
+                removeRegisteredService(file);
+            } else if (file.lastModified() >= since || !this.serviceIdsByFile.containsKey(path)) {
+                final RegisteredService service = loadRegisteredServiceFromFile(file);
+                if (service != null) {
+                    updateRegisteredService(file, service);
+                }
+            }
+        }
+        this.serviceIdsByFile.keySet().stream()
+                .filter(path -> !paths.contains(path))
+                .collect(Collectors.toList())
+                .forEach(path -> removeRegisteredService(new File(path)));
+
+        final List<RegisteredService> changedServices = this.serviceMap.values().stream()
+                .filter(service -> this.serviceChangeTimes.getOrDefault(service.getId(), 0L) >= since
+                        || !knownServiceIds.contains(service.getId()))
+                .collect(Collectors.toList());
+        final List<Long> deletedServiceIds = knownServiceIds.stream()
+                .filter(id -> !this.serviceMap.containsKey(id))
+                .collect(Collectors.toList());
+        return new RegisteredServiceChanges(changedServices, deletedServiceIds);
+    }
+
     @Override
     public final RegisteredService findServiceById(final long id) {
         return serviceMap.get(id);
@@ -252,12 +343,48 @@ public class JsonServiceRegistryDao implements ServiceRegistryDao {
     }
 
     /**
-     * Insert registered service into the existing map.
+     * Insert the registered service defined by the given file into the existing map,
+     * replacing the service the file used to define if its id has changed. The file is
+     * recorded as defining the service even if the service itself is unchanged.
      *
+     * @param file    the service definition file
      * @param service the service
+     * @return true if the services have changed, or false if the file defines a service identical to the existing one
      */
-    void updateRegisteredService(final RegisteredService service) {
-        this.serviceMap.put(service.getId(), service);
+    boolean updateRegisteredService(final File file, final RegisteredService service) {
+        boolean changed = false;
+        final Long previousId = this.serviceIdsByFile.put(file.getAbsolutePath(), service.getId());
+        if (previousId != null && previousId != service.getId() && !this.serviceIdsByFile.containsValue(previousId)) {
+            LOGGER.debug("Service definition file [{}] no longer defines service [{}]", file, previousId);
+            this.serviceMap.remove(previousId);
+            this.serviceChangeTimes.remove(previousId);
+            changed = true;
+        }
+        if (!service.equals(this.serviceMap.put(service.getId(), service))) {
+            this.serviceChangeTimes.put(service.getId(), System.currentTimeMillis());
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Remove the registered service defined by the given file from the existing map.
+     *
+     * @param file the service definition file, which may no longer exist
+     * @return the removed service, or null if the file defined no known service
+     */
+    RegisteredService removeRegisteredService(final File file) {
+        final Long id = this.serviceIdsByFile.remove(file.getAbsolutePath());
+        if (id == null) {
+            LOGGER.debug("No service definition is known to be loaded from [{}]", file);
+            return null;
+        }
+        if (this.serviceIdsByFile.containsValue(id)) {
+            LOGGER.debug("Service [{}] is still defined by another file", id);
+            return null;
+        }
+        this.serviceChangeTimes.remove(id);
+        return this.serviceMap.remove(id);
     }
 
     Path getServiceRegistryDirectory() {
@@ -302,6 +429,40 @@ public class JsonServiceRegistryDao implements ServiceRegistryDao {
         }
     }
 
+    /**
+     * Refreshes the services manager once no further changes are reported within the
+     * reload debounce interval, such that a burst of changes only causes a single refresh.
+     */
+    void scheduleServicesManagerRefresh() {
+        if (this.reloadDebounceInterval <= 0) {
+            refreshServicesManager();
+            return;
+        }
+        this.lastChangeTime.set(System.currentTimeMillis());
+        if (this.pendingChanges.getAndIncrement() == 0) {
+            this.refreshScheduler.schedule(this::refreshServicesManagerWhenSettled, this.reloadDebounceInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refreshServicesManagerWhenSettled() {
+        final long remaining = this.lastChangeTime.get() + this.reloadDebounceInterval - System.currentTimeMillis();
+        if (remaining > 0) {
+            this.refreshScheduler.schedule(this::refreshServicesManagerWhenSettled, remaining, TimeUnit.MILLISECONDS);
+            return;
+        }
+        final int changes = this.pendingChanges.getAndSet(0);
+        LOGGER.debug("Refreshing the services manager after {} change(s) to service definition files", changes);
+        try {
+            refreshServicesManager();
+        } catch (final Exception e) {
+            LOGGER.error("Unable to refresh the services manager", e);
+        }
+    }
+
+    public void setReloadDebounceInterval(final long reloadDebounceInterval) {
+        this.reloadDebounceInterval = reloadDebounceInterval;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName();
@@ -314,5 +475,6 @@ public class JsonServiceRegistryDao implements ServiceRegistryDao {
     public void destroy() {
         this.jsonServiceRegistryConfigWatcher.close();
         this.jsonServiceRegistryWatcherThread.interrupt();
+        this.refreshScheduler.shutdownNow();
     }
 }
@@ -0,0 +1,256 @@
+package org.jasig.cas.services;
+
+import org.jasig.cas.authentication.principal.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precompiled lookup structure for matching a {@link Service} against a collection
+ * of registered services. Literal prefixes are extracted from the service id patterns
+ * of {@link RegexRegisteredService} definitions and organized into a character trie,
+ * so that only the definitions whose prefix agrees with the requested service id are
+ * evaluated via their regular expression. Definitions whose prefix cannot be determined,
+ * or whose matching logic is not the one provided by {@link RegexRegisteredService},
+ * are always considered candidates.
+ * <p>
+ * Candidates are evaluated in the natural order of the registered services, so
+ * the result is always identical to a linear scan over the sorted collection.
+ * Instances are immutable once built and are safe to share between threads.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class RegisteredServicesMatchingIndex {
+
+    private static final String REGEX_META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    private static final int MAX_ASCII_CHARACTER = 127;
+
+    private final RegisteredService[] services;
+
+    private final Node root = new Node();
+
+    private final int[] unindexed;
+
+    /**
+     * Instantiates a new index. The given collection is expected to be
+     * sorted in the order in which services should be evaluated.
+     *
+     * @param sortedServices the sorted services
+     */
+    public RegisteredServicesMatchingIndex(final Collection<RegisteredService> sortedServices) {
+        this.services = sortedServices.toArray(new RegisteredService[sortedServices.size()]);
+
+        final List<Integer> unindexedPositions = new ArrayList<>();
+        for (int i = 0; i < this.services.length; i++) {
+            final String prefix = getLiteralPrefix(this.services[i]);
+            if (prefix == null || prefix.isEmpty()) {
+                unindexedPositions.add(i);
+            } else {
+                this.root.put(prefix, 0, i);
+            }
+        }
+        this.unindexed = unindexedPositions.stream().mapToInt(Integer::intValue).toArray();
+        this.root.compact();
+    }
+
+    /**
+     * Find the first registered service, in evaluation order, that matches the given service.
+     *
+     * @param service the service
+     * @return the registered service, or null if none matches
+     */
+    public RegisteredService findServiceBy(final Service service) {
+        if (service == null || service.getId() == null) {
+            return findServiceByLinearScan(service);
+        }
+
+        final String id = service.getId();
+        final int[] candidates = collectCandidates(id);
+        for (final int candidate : candidates) {
+            final RegisteredService registeredService = this.services[candidate];
+            if (registeredService.matches(service)) {
+                return registeredService;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of services in this index.
+     *
+     * @return the size
+     */
+    public int size() {
+        return this.services.length;
+    }
+
+    private RegisteredService findServiceByLinearScan(final Service service) {
+        for (final RegisteredService registeredService : this.services) {
+            if (registeredService.matches(service)) {
+                return registeredService;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Walk the trie along the lower-cased service id and gather the positions
+     * of all definitions whose literal prefix is a prefix of the id, along with
+     * those that could not be indexed. The result is sorted in evaluation order.
+     *
+     * @param id the service id
+     * @return positions of the candidate services
+     */
+    private int[] collectCandidates(final String id) {
+        int[] candidates = this.unindexed;
+        int count = candidates.length;
+        boolean copied = false;
+
+        Node node = this.root;
+        for (int i = 0; i < id.length() && node != null; i++) {
+            node = node.next(toLowerCaseAscii(id.charAt(i)));
+            if (node != null && node.positions.length > 0) {
+                if (!copied) {
+                    candidates = Arrays.copyOf(candidates, count + node.positions.length);
+                    copied = true;
+                } else if (candidates.length < count + node.positions.length) {
+                    candidates = Arrays.copyOf(candidates, Math.max(candidates.length * 2, count + node.positions.length));
+                }
+                System.arraycopy(node.positions, 0, candidates, count, node.positions.length);
+                count += node.positions.length;
+            }
+        }
+
+        if (!copied) {
+            return candidates;
+        }
+        final int[] result = count == candidates.length ? candidates : Arrays.copyOf(candidates, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Gets the literal, lower-cased prefix that any service id must start with in order
+     * to be matched by the given registered service.
+     *
+     * @param registeredService the registered service
+     * @return the literal prefix, or null if the service cannot be indexed
+     */
+    static String getLiteralPrefix(final RegisteredService registeredService) {
+        if (!usesRegexMatching(registeredService)) {
+            return null;
+        }
+        return getLiteralPrefix(registeredService.getServiceId());
+    }
+
+    /**
+     * Gets the literal, lower-cased prefix of the given regular expression,
+     * such that every string fully matched by the expression starts with the prefix.
+     * Only ASCII characters are considered, in line with the case-insensitive
+     * matching of {@link RegexRegisteredService}.
+     *
+     * @param pattern the pattern
+     * @return the literal prefix, or null if the pattern cannot be analyzed
+     */
+    static String getLiteralPrefix(final String pattern) {
+        if (pattern == null || pattern.indexOf('|') >= 0) {
+            return null;
+        }
+
+        final StringBuilder prefix = new StringBuilder(pattern.length());
+        int i = pattern.startsWith("^") ? 1 : 0;
+        while (i < pattern.length()) {
+            final char c = pattern.charAt(i);
+            int next = i + 1;
+            final char literal;
+
+            if (c == '\\' && next < pattern.length() && isEscapedLiteral(pattern.charAt(next))) {
+                literal = pattern.charAt(next++);
+            } else if (isLiteral(c)) {
+                literal = c;
+            } else {
+                break;
+            }
+
+            final char quantifier = next < pattern.length() ? pattern.charAt(next) : 0;
+            if (quantifier == '?' || quantifier == '*' || quantifier == '{') {
+                break;
+            }
+            prefix.append(toLowerCaseAscii(literal));
+            if (quantifier == '+') {
+                break;
+            }
+            i = next;
+        }
+        return prefix.toString();
+    }
+
+    private static boolean isLiteral(final char c) {
+        return c <= MAX_ASCII_CHARACTER && REGEX_META_CHARACTERS.indexOf(c) < 0;
+    }
+
+    private static boolean isEscapedLiteral(final char c) {
+        return c <= MAX_ASCII_CHARACTER && !Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * Determine whether the service relies on the default regular expression matching
+     * of {@link RegexRegisteredService}; subclasses that override matching cannot be indexed.
+     *
+     * @param registeredService the registered service
+     * @return true if the service is matched by its service id pattern
+     */
+    private static boolean usesRegexMatching(final RegisteredService registeredService) {
+        if (!(registeredService instanceof RegexRegisteredService)) {
+            return false;
+        }
+        try {
+            return registeredService.getClass().getMethod("matches", Service.class)
+                    .getDeclaringClass() == RegexRegisteredService.class;
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static char toLowerCaseAscii(final char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * A node in the prefix trie. Positions hold the evaluation-order indexes of services
+     * whose literal prefix terminates at this node.
+     */
+    private static final class Node {
+        private static final int[] EMPTY = new int[0];
+
+        private final Map<Character, Node> children = new HashMap<>();
+
+        private final List<Integer> pending = new ArrayList<>();
+
+        private int[] positions = EMPTY;
+
+        void put(final String prefix, final int depth, final int position) {
+            if (depth == prefix.length()) {
+                this.pending.add(position);
+                return;
+            }
+            this.children.computeIfAbsent(prefix.charAt(depth), k -> new Node()).put(prefix, depth + 1, position);
+        }
+
+        Node next(final char c) {
+            return this.children.isEmpty() ? null : this.children.get(c);
+        }
+
+        void compact() {
+            this.positions = this.pending.stream().mapToInt(Integer::intValue).toArray();
+            this.pending.clear();
+            this.children.values().forEach(Node::compact);
+        }
+    }
+}
@@ -9,13 +9,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 
 /**
@@ -74,52 +74,58 @@ public final class RegisteredServiceRegexAttributeFilter implements RegisteredSe
      * </ul>
      */
     @Override
-    @SuppressWarnings("unchecked")
     public Map<String, Object> filter(final Map<String, Object> givenAttributes) {
         final Map<String, Object> attributesToRelease = new HashMap<>();
-        givenAttributes.entrySet().stream().filter(entry -> {
-            final String attributeName = entry.getKey();
-            final Object attributeValue = entry.getValue();
-            logger.debug("Received attribute [{}] with value [{}]", attributeName, attributeValue);
-            return attributeValue != null;
-        }).forEach(entry -> {
-            final String attributeName = entry.getKey();
-            final Object attributeValue = entry.getValue();
-
-            if (attributeValue instanceof Collection) {
-                logger.trace("Attribute value {} is a collection", attributeValue);
-                final List filteredAttributes = filterAttributes(
-                        ((Collection<String>) attributeValue), attributeName);
-                if (filteredAttributes.size() > 0) {
-                    attributesToRelease.put(attributeName, filteredAttributes);
-                }
-            } else if (attributeValue.getClass().isArray()) {
-                logger.trace("Attribute value {} is an array", attributeValue);
-                final List filteredAttributes = filterAttributes(Arrays.asList((String[]) attributeValue), attributeName);
-                if (filteredAttributes.size() > 0) {
-                    attributesToRelease.put(attributeName, filteredAttributes);
-                }
-            } else if (attributeValue instanceof Map) {
-                logger.trace("Attribute value {} is a map", attributeValue);
-                final Map<String, String> filteredAttributes = filterAttributes((Map<String, String>) attributeValue);
-                if (filteredAttributes.size() > 0) {
-                    attributesToRelease.put(attributeName, filteredAttributes);
-                }
-            } else {
-                logger.trace("Attribute value {} is a string", attributeValue);
-                final String attrValue = attributeValue.toString();
-                if (patternMatchesAttributeValue(attrValue)) {
-                    logReleasedAttributeEntry(attributeName, attrValue);
-                    attributesToRelease.put(attributeName, attrValue);
-                }
+        for (final Map.Entry<String, Object> entry : givenAttributes.entrySet()) {
+            final Object filteredValue = filterAttribute(entry.getKey(), entry.getValue());
+            if (filteredValue != null) {
+                attributesToRelease.put(entry.getKey(), filteredValue);
             }
-        });
+        }
 
         logger.debug("Received {} attributes. Filtered and released {}", givenAttributes.size(),
                 attributesToRelease.size());
         return attributesToRelease;
     }
 
+    @Override
+    public boolean filtersAttributesIndependently() {
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object filterAttribute(final String attributeName, final Object attributeValue) {
+        logger.debug("Received attribute [{}] with value [{}]", attributeName, attributeValue);
+        if (attributeValue == null) {
+            return null;
+        }
+
+        if (attributeValue instanceof Collection) {
+            logger.trace("Attribute value {} is a collection", attributeValue);
+            final List<String> filteredAttributes = filterAttributes((Collection<String>) attributeValue, attributeName);
+            return filteredAttributes.isEmpty() ? null : filteredAttributes;
+        }
+        if (attributeValue.getClass().isArray()) {
+            logger.trace("Attribute value {} is an array", attributeValue);
+            final List<String> filteredAttributes = filterAttributes(Arrays.asList((String[]) attributeValue), attributeName);
+            return filteredAttributes.isEmpty() ? null : filteredAttributes;
+        }
+        if (attributeValue instanceof Map) {
+            logger.trace("Attribute value {} is a map", attributeValue);
+            final Map<String, String> filteredAttributes = filterAttributes((Map<String, String>) attributeValue);
+            return filteredAttributes.isEmpty() ? null : filteredAttributes;
+        }
+
+        logger.trace("Attribute value {} is a string", attributeValue);
+        final String attrValue = attributeValue.toString();
+        if (patternMatchesAttributeValue(attrValue)) {
+            logReleasedAttributeEntry(attributeName, attrValue);
+            return attrValue;
+        }
+        return null;
+    }
+
     /**
      * Filter map attributes based on the values given.
      *
@@ -127,10 +133,14 @@ public final class RegisteredServiceRegexAttributeFilter implements RegisteredSe
      * @return the map
      */
     private Map<String, String> filterAttributes(final Map<String, String> valuesToFilter) {
-        return valuesToFilter.entrySet().stream().filter(entry -> patternMatchesAttributeValue(entry.getValue())).map(entry -> {
-            logReleasedAttributeEntry(entry.getKey(), entry.getValue());
-            return entry;
-        }).collect(Collectors.toMap(Map.Entry::getKey, entry -> valuesToFilter.get(entry.getKey()), (e, f) -> f == null ? e : f));
+        final Map<String, String> filteredValues = new HashMap<>(valuesToFilter.size());
+        for (final Map.Entry<String, String> entry : valuesToFilter.entrySet()) {
+            if (patternMatchesAttributeValue(entry.getValue())) {
+                logReleasedAttributeEntry(entry.getKey(), entry.getValue());
+                filteredValues.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return filteredValues;
     }
 
     /**
@@ -148,13 +158,17 @@ public final class RegisteredServiceRegexAttributeFilter implements RegisteredSe
      *
      * @param valuesToFilter the values to filter
      * @param attributeName the attribute name
-     * @return the string[]
+     * @return the values that match the pattern
      */
-    private List filterAttributes(final Collection<String> valuesToFilter, final String attributeName) {
-        return valuesToFilter.stream().filter(this::patternMatchesAttributeValue).map(attributeValue -> {
-            logReleasedAttributeEntry(attributeName, attributeValue);
-            return attributeValue;
-        }).collect(Collectors.toList());
+    private List<String> filterAttributes(final Collection<String> valuesToFilter, final String attributeName) {
+        final List<String> filteredValues = new ArrayList<>(valuesToFilter.size());
+        for (final String attributeValue : valuesToFilter) {
+            if (patternMatchesAttributeValue(attributeValue)) {
+                logReleasedAttributeEntry(attributeName, attributeValue);
+                filteredValues.add(attributeValue);
+            }
+        }
+        return filteredValues;
     }
 
     /**
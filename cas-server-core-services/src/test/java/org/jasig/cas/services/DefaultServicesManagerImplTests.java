@@ -7,6 +7,9 @@ import org.junit.Test;
 import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -134,6 +137,21 @@ public class DefaultServicesManagerImplTests  {
         assertTrue(this.defaultServicesManagerImpl.getAllServices().contains(r));
     }
     
+    @Test
+    public void verifyAllServicesIsStableSnapshot() {
+        final Collection<RegisteredService> before = this.defaultServicesManagerImpl.getAllServices();
+
+        final RegisteredServiceImpl r = new RegisteredServiceImpl();
+        r.setId(1000);
+        r.setName("test");
+        r.setServiceId("test");
+        this.defaultServicesManagerImpl.save(r);
+
+        assertEquals(1, before.size());
+        assertEquals(2, this.defaultServicesManagerImpl.getAllServices().size());
+        assertNotSame(r, this.defaultServicesManagerImpl.findServiceBy(r.getId()));
+    }
+
     @Test
     public void verifyRegexService() {
         final RegexRegisteredService r = new RegexRegisteredService();
@@ -148,6 +166,31 @@ public class DefaultServicesManagerImplTests  {
         assertEquals(r, this.defaultServicesManagerImpl.findServiceBy(service));
     }
 
+    @Test
+    public void verifyResolutionIsRefreshedOnSave() {
+        final RegexRegisteredService r = new RegexRegisteredService();
+        r.setId(10000);
+        r.setName("regex test");
+        r.setServiceId("^http://www.test.edu.+");
+        r.setEvaluationOrder(10000);
+        this.defaultServicesManagerImpl.save(r);
+
+        final SimpleService service = new SimpleService("http://www.test.edu/app");
+        assertEquals(r, this.defaultServicesManagerImpl.findServiceBy(service));
+        assertEquals(r, this.defaultServicesManagerImpl.findServiceBy(service));
+
+        final RegexRegisteredService r2 = new RegexRegisteredService();
+        r2.setId(10001);
+        r2.setName("regex test app");
+        r2.setServiceId("^http://www.test.edu/app");
+        r2.setEvaluationOrder(1);
+        this.defaultServicesManagerImpl.save(r2);
+        assertEquals(r2, this.defaultServicesManagerImpl.findServiceBy(service));
+
+        this.defaultServicesManagerImpl.delete(r2.getId());
+        assertEquals(r, this.defaultServicesManagerImpl.findServiceBy(service));
+    }
+
     @Test
     public void verifyEmptyServicesRegistry() {
         final SimpleService s = new SimpleService("http://www.google.com");
@@ -196,6 +239,46 @@ public class DefaultServicesManagerImplTests  {
 
     }
 
+    @Test
+    public void verifyReloadAppliesChangedServices() {
+        final ServiceRegistryDao dao = mock(ServiceRegistryDao.class);
+        when(dao.load()).thenReturn(Arrays.asList(newRegisteredService(1), newRegisteredService(2)));
+        final DefaultServicesManagerImpl manager = new DefaultServicesManagerImpl(dao);
+        final Collection<RegisteredService> services = manager.getAllServices();
+
+        when(dao.findChangedServices(anyLong(), anyCollectionOf(Long.class))).thenReturn(
+                new RegisteredServiceChanges(Collections.emptyList(), Collections.emptyList()));
+        manager.reload();
+        assertSame(services, manager.getAllServices());
+
+        when(dao.findChangedServices(anyLong(), anyCollectionOf(Long.class))).thenReturn(
+                new RegisteredServiceChanges(Collections.singletonList(newRegisteredService(3)), Collections.singletonList(1L)));
+        manager.reload();
+        verify(dao, times(1)).load();
+        assertNull(manager.findServiceBy(1));
+        assertNotNull(manager.findServiceBy(2));
+        assertNotNull(manager.findServiceBy(3));
+        assertEquals(2, manager.getAllServices().size());
+    }
+
+    @Test
+    public void verifyReloadLoadsAllServicesWithoutChangeTracking() {
+        final ServiceRegistryDao dao = mock(ServiceRegistryDao.class);
+        when(dao.load()).thenReturn(Collections.singletonList(newRegisteredService(1)));
+        final DefaultServicesManagerImpl manager = new DefaultServicesManagerImpl(dao);
+        manager.reload();
+        verify(dao, times(2)).load();
+        assertNotNull(manager.findServiceBy(1));
+    }
+
+    private static RegisteredServiceImpl newRegisteredService(final long id) {
+        final RegisteredServiceImpl r = new RegisteredServiceImpl();
+        r.setId(id);
+        r.setName("service" + id);
+        r.setServiceId("https://service" + id + ".example.com");
+        return r;
+    }
+
     private static class SimpleService implements Service {
 
         /**
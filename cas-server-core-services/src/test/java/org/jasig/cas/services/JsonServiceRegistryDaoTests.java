@@ -6,19 +6,25 @@ import org.jasig.cas.services.support.RegisteredServiceRegexAttributeFilter;
 import com.google.common.collect.Sets;
 import org.apache.commons.io.FileUtils;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.springframework.core.io.ClassPathResource;
 
+import java.io.File;
 import java.net.URI;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.junit.Assert.*;
@@ -32,6 +38,9 @@ public class JsonServiceRegistryDaoTests {
 
     private static final ClassPathResource RESOURCE = new ClassPathResource("services");
 
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     private final ServiceRegistryDao dao;
 
     public JsonServiceRegistryDaoTests() throws Exception {
@@ -375,4 +384,113 @@ public class JsonServiceRegistryDaoTests {
         assertEquals(prop.getValues().size(), 2);
     }
 
+    @Test
+    public void verifyDeletedFileRemovesOnlyItsService() throws Exception {
+        final JsonServiceRegistryDao jsonDao = (JsonServiceRegistryDao) this.dao;
+        final RegexRegisteredService r1 = new RegexRegisteredService();
+        r1.setServiceId("^https://.+");
+        r1.setName("verifyDeletedFileRemovesOnlyItsService1");
+        r1.setId(5001);
+        final RegexRegisteredService r2 = new RegexRegisteredService();
+        r2.setServiceId("^https://.+");
+        r2.setName("verifyDeletedFileRemovesOnlyItsService2");
+        r2.setId(5002);
+        jsonDao.save(r1);
+        jsonDao.save(r2);
+
+        final File file = jsonDao.makeFile(r1);
+        assertTrue(file.delete());
+        assertEquals(r1, jsonDao.removeRegisteredService(file));
+        assertNull(jsonDao.findServiceById(r1.getId()));
+        assertNotNull(jsonDao.findServiceById(r2.getId()));
+        assertNull(jsonDao.removeRegisteredService(file));
+    }
+
+    @Test
+    public void verifyServicesManagerRefreshesAreDebounced() throws Exception {
+        final AtomicInteger refreshes = new AtomicInteger();
+        final JsonServiceRegistryDao jsonDao = new JsonServiceRegistryDao(this.folder.getRoot()) {
+            @Override
+            void refreshServicesManager() {
+                refreshes.incrementAndGet();
+            }
+        };
+        jsonDao.setReloadDebounceInterval(200);
+        try {
+            for (int i = 0; i < 50; i++) {
+                jsonDao.scheduleServicesManagerRefresh();
+            }
+            Thread.sleep(1000);
+            assertEquals(1, refreshes.get());
+
+            jsonDao.scheduleServicesManagerRefresh();
+            Thread.sleep(1000);
+            assertEquals(2, refreshes.get());
+        } finally {
+            jsonDao.destroy();
+        }
+    }
+
+    @Test
+    public void verifyDeletedFileIsFoundWithoutParsingOtherFiles() throws Exception {
+        final AtomicInteger parses = new AtomicInteger();
+        final JsonServiceRegistryDao jsonDao = new JsonServiceRegistryDao(this.folder.getRoot()) {
+            @Override
+            RegisteredService loadRegisteredServiceFromFile(final File file) {
+                parses.incrementAndGet();
+                return super.loadRegisteredServiceFromFile(file);
+            }
+        };
+        try {
+            final List<RegexRegisteredService> services = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                final RegexRegisteredService r = new RegexRegisteredService();
+                r.setServiceId("^https://.+");
+                r.setName("verifyDeletedFileIsFoundWithoutParsingOtherFiles" + i);
+                r.setId(6000 + i);
+                jsonDao.save(r);
+                services.add(r);
+            }
+            final List<Long> ids = jsonDao.load().stream().map(RegisteredService::getId).collect(Collectors.toList());
+            assertEquals(10, ids.size());
+            Thread.sleep(1000);
+            final long since = System.currentTimeMillis();
+            parses.set(0);
+
+            assertTrue(jsonDao.makeFile(services.get(0)).delete());
+            final RegisteredServiceChanges changes = jsonDao.findChangedServices(since, ids);
+            assertEquals(0, parses.get());
+            assertTrue(changes.getChangedServices().isEmpty());
+            assertEquals(Collections.singletonList(services.get(0).getId()), new ArrayList<>(changes.getDeletedServiceIds()));
+            assertNull(jsonDao.findServiceById(services.get(0).getId()));
+            assertEquals(services.get(1), jsonDao.findServiceById(services.get(1).getId()));
+        } finally {
+            jsonDao.destroy();
+        }
+    }
+
+    @Test
+    public void verifyServiceIsKeptWhileAnotherFileDefinesIt() throws Exception {
+        final JsonServiceRegistryDao jsonDao = new JsonServiceRegistryDao(this.folder.getRoot());
+        jsonDao.setReloadDebounceInterval(0);
+        try {
+            final RegexRegisteredService r = new RegexRegisteredService();
+            r.setServiceId("^https://.+");
+            r.setName("verifyServiceIsKeptWhileAnotherFileDefinesIt");
+            r.setId(7001);
+            jsonDao.save(r);
+            final File copy = new File(this.folder.getRoot(), "copy.json");
+            assertTrue(copy.createNewFile());
+            Thread.sleep(1000);
+
+            FileUtils.copyFile(jsonDao.makeFile(r), copy);
+            Thread.sleep(1000);
+            assertTrue(jsonDao.makeFile(r).delete());
+            Thread.sleep(1000);
+
+            assertEquals(r, jsonDao.findServiceById(r.getId()));
+        } finally {
+            jsonDao.destroy();
+        }
+    }
 }
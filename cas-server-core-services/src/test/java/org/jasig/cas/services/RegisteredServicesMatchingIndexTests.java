@@ -0,0 +1,103 @@
+package org.jasig.cas.services;
+
+import org.jasig.cas.authentication.principal.Service;
+import org.jasig.cas.mock.MockService;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link RegisteredServicesMatchingIndex}.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class RegisteredServicesMatchingIndexTests {
+
+    @Test
+    public void verifyLiteralPrefixes() {
+        assertEquals("https://www.example.org/", RegisteredServicesMatchingIndex.getLiteralPrefix("^https://www\\.example\\.org/.*"));
+        assertEquals("http", RegisteredServicesMatchingIndex.getLiteralPrefix("^https?://.+"));
+        assertEquals("http", RegisteredServicesMatchingIndex.getLiteralPrefix("https*://.+"));
+        assertEquals("https://app", RegisteredServicesMatchingIndex.getLiteralPrefix("HTTPS://APP+.edu"));
+        assertEquals("https://", RegisteredServicesMatchingIndex.getLiteralPrefix("https://[a-z]+\\.edu"));
+        assertEquals("", RegisteredServicesMatchingIndex.getLiteralPrefix("\\Qhttps://example.org\\E"));
+        assertEquals("", RegisteredServicesMatchingIndex.getLiteralPrefix("^(https|imaps)://.*"));
+        assertNull(RegisteredServicesMatchingIndex.getLiteralPrefix("^https://a.org|^https://b.org"));
+        assertNull(RegisteredServicesMatchingIndex.getLiteralPrefix((String) null));
+    }
+
+    @Test
+    public void verifyNonRegexServicesAreNotIndexed() {
+        final RegisteredServiceImpl r = new RegisteredServiceImpl();
+        r.setServiceId("https://www.example.org/**");
+        assertNull(RegisteredServicesMatchingIndex.getLiteralPrefix(r));
+    }
+
+    @Test
+    public void verifyEvaluationOrderIsPreserved() {
+        final RegisteredService catchAll = newService(1, "^https?://.*", 100);
+        final RegisteredService specific = newService(2, "^https://www\\.example\\.org/app/.*", 10);
+        final RegisteredService broader = newService(3, "^https://www\\.example\\.org/.*", 5);
+
+        final RegisteredServicesMatchingIndex index = newIndex(catchAll, specific, broader);
+        assertEquals(broader, index.findServiceBy(new MockService("https://www.example.org/app/login")));
+        assertEquals(catchAll, index.findServiceBy(new MockService("http://other.example.org")));
+        assertNull(index.findServiceBy(new MockService("imaps://mail.example.org")));
+    }
+
+    @Test
+    public void verifyCaseInsensitiveMatching() {
+        final RegisteredService r = newService(1, "^https://www\\.test\\.edu.+", 1);
+        final RegisteredServicesMatchingIndex index = newIndex(r);
+        assertEquals(r, index.findServiceBy(new MockService("HTTPS://www.TEST.edu/param=hello")));
+    }
+
+    @Test
+    public void verifyNullService() {
+        final RegisteredServicesMatchingIndex index = newIndex(newService(1, "^https://.*", 1));
+        assertNull(index.findServiceBy(null));
+    }
+
+    @Test
+    public void verifyIndexAgreesWithLinearScan() {
+        final List<RegisteredService> services = new ArrayList<>();
+        int id = 0;
+        for (int i = 0; i < 50; i++) {
+            services.add(newService(id++, "^https://app" + i + "\\.example\\.org/.*", i % 7));
+            services.add(newService(id++, "^https?://app" + i + "\\.example\\.org/secure/.*", i % 3));
+            services.add(newService(id++, "^imaps?://mail" + i + "\\.example\\.org.*", i % 5));
+        }
+        services.add(newService(id++, "^(https?|imaps?)://.*\\.example\\.org.*", 4));
+        services.add(newService(id, "^.*", 1000));
+
+        final TreeSet<RegisteredService> sorted = new TreeSet<>(services);
+        final RegisteredServicesMatchingIndex index = new RegisteredServicesMatchingIndex(sorted);
+
+        for (final String url : Arrays.asList("https://app1.example.org/", "http://app2.example.org/secure/x",
+                "https://app49.example.org/secure/", "IMAP://MAIL3.example.org", "imaps://mail10.example.org/inbox",
+                "ftp://app1.example.org", "https://unknown.example.com", "")) {
+            final Service service = new MockService(url);
+            final RegisteredService expected = sorted.stream().filter(r -> r.matches(service)).findFirst().orElse(null);
+            assertEquals(url, expected, index.findServiceBy(service));
+        }
+    }
+
+    private static RegisteredServicesMatchingIndex newIndex(final RegisteredService... services) {
+        return new RegisteredServicesMatchingIndex(new TreeSet<>(Arrays.asList(services)));
+    }
+
+    private static RegisteredService newService(final long id, final String serviceId, final int order) {
+        final RegexRegisteredService r = new RegexRegisteredService();
+        r.setId(id);
+        r.setName("service" + id);
+        r.setServiceId(serviceId);
+        r.setEvaluationOrder(order);
+        return r;
+    }
+}
@@ -3,6 +3,7 @@ package org.jasig.cas.services.support;
 import org.jasig.cas.authentication.principal.Principal;
 import org.jasig.cas.services.RegisteredServiceAttributeFilter;
 import org.jasig.cas.services.RegisteredService;
+import org.jasig.cas.services.ReturnAllAttributeReleasePolicy;
 import org.jasig.cas.services.ReturnAllowedAttributeReleasePolicy;
 import org.jasig.cas.util.SerializationUtils;
 
@@ -111,6 +112,21 @@ public class RegisteredServiceRegexAttributeFilterTests {
         assertEquals(p2.getAttributeFilter(), policy.getAttributeFilter());
     }
 
+    @Test
+    public void verifyReleasePlanFiltersLikeTheFilter() {
+        final ReturnAllAttributeReleasePolicy policy = new ReturnAllAttributeReleasePolicy();
+        policy.setAttributeFilter(this.filter);
+        policy.compile();
+        final Principal p = mock(Principal.class);
+        when(p.getAttributes()).thenReturn(this.givenAttributesMap);
+        when(p.getId()).thenReturn("principalId");
+
+        final Map<String, Object> attrs = policy.getAttributes(p);
+        assertEquals(this.filter.filter(this.givenAttributesMap), attrs);
+        assertEquals("loggedInTestUid", attrs.get("uid"));
+        assertNull(this.filter.filterAttribute("phone", "1290"));
+    }
+
     @Test
     public void verifySerialization() {
         final byte[] data = SerializationUtils.serialize(this.filter);
@@ -3,6 +3,8 @@ package org.jasig.cas.ticket;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.springframework.util.Assert;
 
+import javax.persistence.Access;
+import javax.persistence.AccessType;
 import javax.persistence.Column;
 import javax.persistence.Id;
 import javax.persistence.Lob;
@@ -27,6 +29,7 @@ import java.time.ZonedDateTime;
  * @since 3.0.0
  */
 @MappedSuperclass
+@Access(AccessType.FIELD)
 public abstract class AbstractTicket implements Ticket, TicketState {
 
     private static final long serialVersionUID = -8506442397878267555L;
@@ -122,6 +125,73 @@ public abstract class AbstractTicket implements Ticket, TicketState {
         return this.previousLastTimeUsed;
     }
 
+    /**
+     * Gets the creation time in milliseconds, stored next to the serialized
+     * creation time so that the database can compare and index it.
+     *
+     * @return the creation time in milliseconds, or null
+     */
+    @Access(AccessType.PROPERTY)
+    @Column(name="CREATION_TIME_MILLIS")
+    protected Long getCreationTimeMillis() {
+        return toMillis(this.creationTime);
+    }
+
+    /**
+     * The creation time in milliseconds is derived from the creation time; the stored value is ignored.
+     *
+     * @param creationTimeMillis the creation time in milliseconds
+     */
+    protected void setCreationTimeMillis(final Long creationTimeMillis) {
+        // derived from the creation time
+    }
+
+    /**
+     * Gets the last time this ticket was used in milliseconds, stored next to the
+     * serialized last time used so that the database can compare and index it.
+     *
+     * @return the last time used in milliseconds, or null
+     */
+    @Access(AccessType.PROPERTY)
+    @Column(name="LAST_TIME_USED_MILLIS")
+    protected Long getLastTimeUsedMillis() {
+        return toMillis(this.lastTimeUsed);
+    }
+
+    /**
+     * The last time used in milliseconds is derived from the last time used; the stored value is ignored.
+     *
+     * @param lastTimeUsedMillis the last time used in milliseconds
+     */
+    protected void setLastTimeUsedMillis(final Long lastTimeUsedMillis) {
+        // derived from the last time used
+    }
+
+    /**
+     * Gets a non-negative hash of the ticket id, stored so that the database can
+     * split tickets into partitions, for example to share cleanup between nodes.
+     *
+     * @return the id hash, or null
+     */
+    @Access(AccessType.PROPERTY)
+    @Column(name="ID_HASH")
+    protected Integer getIdHash() {
+        return this.id == null ? null : this.id.hashCode() & Integer.MAX_VALUE;
+    }
+
+    /**
+     * The id hash is derived from the id; the stored value is ignored.
+     *
+     * @param idHash the id hash
+     */
+    protected void setIdHash(final Integer idHash) {
+        // derived from the id
+    }
+
+    private static Long toMillis(final ZonedDateTime time) {
+        return time == null ? null : time.toInstant().toEpochMilli();
+    }
+
     @Override
     public final boolean isExpired() {
         final TicketGrantingTicket tgt = getGrantingTicket();
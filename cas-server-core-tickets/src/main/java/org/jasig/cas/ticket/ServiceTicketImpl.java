@@ -10,6 +10,7 @@ import javax.persistence.Column;
 import javax.persistence.DiscriminatorColumn;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -26,7 +27,7 @@ import javax.validation.constraints.NotNull;
  * @since 3.0.0
  */
 @Entity
-@Table(name="SERVICETICKET")
+@Table(name="SERVICETICKET", indexes=@Index(name="SERVICETICKET_CREATED_IDX", columnList="CREATION_TIME_MILLIS"))
 @DiscriminatorColumn(name="TYPE")
 @DiscriminatorValue(ServiceTicket.PREFIX)
 public class ServiceTicketImpl extends AbstractTicket implements ServiceTicket {
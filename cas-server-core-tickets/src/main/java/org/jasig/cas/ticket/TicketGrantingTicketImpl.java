@@ -16,10 +16,12 @@ import javax.persistence.DiscriminatorColumn;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -41,7 +43,7 @@ import java.util.Set;
  * @since 3.0.0
  */
 @Entity
-@Table(name="TICKETGRANTINGTICKET")
+@Table(name="TICKETGRANTINGTICKET", indexes=@Index(name="TICKETGRANTINGTICKET_LAST_USED_IDX", columnList="LAST_TIME_USED_MILLIS"))
 @DiscriminatorColumn(name = "TYPE")
 @DiscriminatorValue(TicketGrantingTicket.PREFIX)
 public class TicketGrantingTicketImpl extends AbstractTicket implements TicketGrantingTicket {
@@ -83,6 +85,14 @@ public class TicketGrantingTicketImpl extends AbstractTicket implements TicketGr
     @Column(name="SUPPLEMENTAL_AUTHENTICATIONS", nullable=false, length = Integer.MAX_VALUE)
     private final ArrayList<Authentication> supplementalAuthentications = new ArrayList<>();
 
+    /**
+     * Version of the ticket, for optimistic locking of concurrent updates. The column defaults
+     * to zero, so that it can be added to tables that already hold tickets.
+     */
+    @Version
+    @Column(name="VERSION", columnDefinition = "INTEGER DEFAULT 0")
+    private Integer version = 0;
+
     /**
      * Instantiates a new ticket granting ticket impl.
      */
@@ -6,9 +6,6 @@ import org.jasig.cas.ticket.TicketGrantingTicket;
 
 import java.time.ZonedDateTime;
 
-import java.lang.reflect.Constructor;
-
-
 /**
  * This is {@link AbstractTicketDelegator}.
  *
@@ -46,6 +43,10 @@ public abstract class AbstractTicketDelegator<T extends Ticket> implements Ticke
         this.ticketRegistry.updateTicket(this.ticket);
     }
 
+    protected AbstractTicketRegistry getTicketRegistry() {
+        return this.ticketRegistry;
+    }
+
     protected T getTicket() {
         return this.ticket;
     }
@@ -101,21 +102,4 @@ public abstract class AbstractTicketDelegator<T extends Ticket> implements Ticke
     public ExpirationPolicy getExpirationPolicy() {
         return ticket.getExpirationPolicy();
     }
-
-    /**
-     * Get the default constructor.
-     *
-     * @param clazz the ticket delegator class
-     * @return the default constructor.
-     */
-    @SuppressWarnings("unchecked")
-    public static Constructor<? extends AbstractTicketDelegator> getDefaultConstructor(final Class<? extends AbstractTicketDelegator>
-                                                                                                   clazz) {
-        try {
-            return (Constructor<? extends AbstractTicketDelegator>) Class.forName(clazz.getName())
-                    .getDeclaredConstructors()[0];
-        } catch (final ClassNotFoundException e) {
-            throw new RuntimeException(e);
-        }
-    }
 }
@@ -1,5 +1,10 @@
 package org.jasig.cas.ticket.registry;
 
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.io.ByteSource;
 import org.apache.commons.lang3.StringUtils;
 import org.jasig.cas.CipherExecutor;
@@ -13,9 +18,9 @@ import org.jasig.cas.ticket.proxy.ProxyTicket;
 import org.jasig.cas.util.DateTimeUtils;
 import org.jasig.cas.util.DigestUtils;
 import org.jasig.cas.util.Pair;
-import org.jasig.cas.util.SerializationUtils;
 import org.quartz.Job;
 import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -33,15 +38,27 @@ import org.springframework.web.context.support.SpringBeanAutowiringSupport;
 
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
-import java.lang.reflect.Constructor;
+import javax.annotation.PreDestroy;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -53,6 +70,17 @@ import java.util.stream.Collectors;
  */
 public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRegistryState, Job {
 
+    private static final int DEFAULT_CLEANER_BATCH_SIZE = 500;
+
+    private static final int DEFAULT_CLEANER_LOGOUT_THREADS = 4;
+
+    private static final int DEFAULT_CLEANER_LOGOUT_QUEUE_SIZE = 1000;
+
+    /**
+     * Job data key under which the registry instance to clean is handed to the cleaner job.
+     */
+    private static final String JOB_DATA_TICKET_REGISTRY = "ticketRegistry";
+
     /** The Slf4j logger instance. */
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -65,6 +93,42 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
     @Value("${ticket.registry.cleaner.startdelay:20}")
     private int startDelay;
 
+    /**
+     * Maximum number of expired tickets the cleaner processes at a time.
+     */
+    @Value("${ticket.registry.cleaner.batchsize:500}")
+    private int cleanerBatchSize = DEFAULT_CLEANER_BATCH_SIZE;
+
+    /**
+     * Number of threads that send logout notifications for expired ticket-granting tickets.
+     * A value of zero sends them from the cleaner thread.
+     */
+    @Value("${ticket.registry.cleaner.logout.threads:4}")
+    private int cleanerLogoutThreads = DEFAULT_CLEANER_LOGOUT_THREADS;
+
+    /**
+     * Number of logout notifications that may be waiting for a thread,
+     * before the cleaner has to send them itself.
+     */
+    @Value("${ticket.registry.cleaner.logout.queuesize:1000}")
+    private int cleanerLogoutQueueSize = DEFAULT_CLEANER_LOGOUT_QUEUE_SIZE;
+
+    private ExecutorService logoutExecutor;
+
+    private final Queue<Future<?>> pendingLogouts = new ConcurrentLinkedQueue<>();
+
+    private final Histogram ticketsCleanedPerRun = new Histogram(new ExponentiallyDecayingReservoir());
+
+    private final Histogram ticketsCleanedPerSecond = new Histogram(new ExponentiallyDecayingReservoir());
+
+    private final Meter logoutsPerformed = new Meter();
+
+    private volatile long cleanerLag;
+
+    @Autowired(required = false)
+    @Qualifier("metrics")
+    private MetricRegistry metricRegistry;
+
     @Autowired(required = false)
     @Qualifier("scheduler")
     private Scheduler scheduler;
@@ -78,21 +142,32 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
     @Qualifier("logoutManager")
     private LogoutManager logoutManager;
 
-    private List<Pair<Class<? extends Ticket>, Constructor<? extends AbstractTicketDelegator>>> ticketDelegators = new ArrayList<>();
+    /**
+     * Serializes tickets before they are encrypted.
+     */
+    @Autowired(required = false)
+    @Qualifier("ticketSerializer")
+    private TicketSerializer ticketSerializer = new DefaultTicketSerializer();
+
+    /**
+     * Ticket delegators, in the order in which ticket types are examined.
+     */
+    private final List<Pair<Class<? extends Ticket>, TicketDelegatorFactory<? extends Ticket>>> ticketDelegators =
+            new CopyOnWriteArrayList<>();
+
+    /**
+     * Ticket delegators resolved per concrete ticket class.
+     */
+    private final Map<Class<?>, TicketDelegatorFactory<? extends Ticket>> ticketDelegatorsByType = new ConcurrentHashMap<>();
 
     /**
      * Default constructor which registers the appropriate ticket delegators.
      */
-    @SuppressWarnings("unchecked")
     public AbstractTicketRegistry() {
-        ticketDelegators.add(new Pair(ProxyGrantingTicket.class,
-                AbstractTicketDelegator.getDefaultConstructor(ProxyGrantingTicketDelegator.class)));
-        ticketDelegators.add(new Pair(TicketGrantingTicket.class,
-                AbstractTicketDelegator.getDefaultConstructor(TicketGrantingTicketDelegator.class)));
-        ticketDelegators.add(new Pair(ProxyTicket.class,
-                AbstractTicketDelegator.getDefaultConstructor(ProxyTicketDelegator.class)));
-        ticketDelegators.add(new Pair(ServiceTicket.class,
-                AbstractTicketDelegator.getDefaultConstructor(ServiceTicketDelegator.class)));
+        registerTicketDelegator(ProxyGrantingTicket.class, ProxyGrantingTicketDelegator::new);
+        registerTicketDelegator(TicketGrantingTicket.class, TicketGrantingTicketDelegator::new);
+        registerTicketDelegator(ProxyTicket.class, ProxyTicketDelegator::new);
+        registerTicketDelegator(ServiceTicket.class, ServiceTicketDelegator::new);
     }
 
     /**
@@ -146,39 +221,60 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
             return false;
         }
 
-        if (ticket instanceof TicketGrantingTicket) {
-            if (ticket instanceof ProxyGrantingTicket) {
-                logger.debug("Removing proxy-granting ticket [{}]", ticketId);
-            }
-
-            logger.debug("Removing children of ticket [{}] from the registry.", ticket.getId());
-            final TicketGrantingTicket tgt = (TicketGrantingTicket) ticket;
-            deleteChildren(tgt);
-
-            final Collection<ProxyGrantingTicket> proxyGrantingTickets = tgt.getProxyGrantingTickets();
-            proxyGrantingTickets.stream().map(Ticket::getId).forEach(this::deleteTicket);
-        }
+        deleteChildren(Collections.singleton(ticket));
         logger.debug("Removing ticket [{}] from the registry.", ticket);
         return deleteSingleTicket(ticketId);
     }
 
+    @Override
+    public int deleteTickets(final Collection<String> ticketIds) {
+        if (ticketIds.isEmpty()) {
+            return 0;
+        }
+        final Collection<Ticket> tickets = getTickets(ticketIds);
+        if (tickets.isEmpty()) {
+            return 0;
+        }
+
+        deleteChildren(tickets);
+        final List<String> ids = tickets.stream().map(Ticket::getId).collect(Collectors.toList());
+        logger.debug("Removing tickets {} from the registry.", ids);
+        return deleteSingleTickets(ids);
+    }
 
     /**
-     * Delete TGT's service tickets.
+     * Delete the service tickets and proxy-granting tickets of the given tickets,
+     * along with the children of those proxy-granting tickets, all at once.
      *
-     * @param ticket the ticket
+     * @param tickets the tickets
      */
-    private void deleteChildren(final TicketGrantingTicket ticket) {
-        // delete service tickets
-        final Map<String, Service> services = ticket.getServices();
-        if (services != null && !services.isEmpty()) {
-            services.keySet().stream().forEach(ticketId -> {
-                if (deleteSingleTicket(ticketId)) {
-                    logger.debug("Removed ticket [{}]", ticketId);
-                } else {
-                    logger.debug("Unable to remove ticket [{}]", ticketId);
+    private void deleteChildren(final Collection<Ticket> tickets) {
+        final List<String> children = new ArrayList<>();
+        Collection<Ticket> grantingTickets = tickets;
+        while (!grantingTickets.isEmpty()) {
+            final List<String> proxyGrantingTicketIds = new ArrayList<>();
+            for (final Ticket ticket : grantingTickets) {
+                if (ticket instanceof TicketGrantingTicket) {
+                    if (ticket instanceof ProxyGrantingTicket) {
+                        logger.debug("Removing proxy-granting ticket [{}]", ticket.getId());
+                    }
+                    logger.debug("Removing children of ticket [{}] from the registry.", ticket.getId());
+                    final TicketGrantingTicket tgt = (TicketGrantingTicket) ticket;
+                    final Map<String, Service> services = tgt.getServices();
+                    if (services != null) {
+                        children.addAll(services.keySet());
+                    }
+                    tgt.getProxyGrantingTickets().stream().map(Ticket::getId).forEach(proxyGrantingTicketIds::add);
                 }
-            });
+            }
+            children.addAll(proxyGrantingTicketIds);
+            // Proxy-granting tickets are looked up again, since their own children are only tracked by the registry copy
+            grantingTickets = proxyGrantingTicketIds.isEmpty() ? Collections.emptyList() : getTickets(proxyGrantingTicketIds);
+        }
+
+        if (!children.isEmpty()) {
+            final int count = deleteSingleTickets(children);
+            logger.debug("Removed {} of {} child ticket(s)", count, children.size());
         }
     }
 
@@ -200,6 +296,23 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
      */
     public abstract boolean deleteSingleTicket(final String ticketId);
 
+    /**
+     * Delete several ticket instances from the store, without looking at their children.
+     * Registries whose backend supports removing several entries at once should override this.
+     *
+     * @param ticketIds the ticket ids
+     * @return the number of tickets removed
+     */
+    protected int deleteSingleTickets(final Collection<String> ticketIds) {
+        int count = 0;
+        for (final String ticketId : ticketIds) {
+            if (deleteSingleTicket(ticketId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Update the received ticket.
      *
@@ -207,6 +320,21 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
      */
     protected abstract void updateTicket(Ticket ticket);
 
+    /**
+     * Update a ticket-granting ticket after it has granted a service ticket.
+     * By default, the whole ticket is updated. Registries that are able to apply
+     * the grant where the ticket is stored may override this to only send the change.
+     *
+     * @param ticket                     the ticket-granting ticket, with the grant applied
+     * @param serviceTicketId            the id of the granted service ticket
+     * @param service                    the service the ticket was granted for
+     * @param onlyTrackMostRecentSession whether only the most recent session of the service is tracked
+     */
+    protected void updateTicketGrantingTicket(final TicketGrantingTicket ticket, final String serviceTicketId,
+                                              final Service service, final boolean onlyTrackMostRecentSession) {
+        updateTicket(ticket);
+    }
+
     /**
      * Whether or not a callback to the TGT is required when checking for expiration.
      *
@@ -214,6 +342,32 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
      */
     protected abstract boolean needsCallback();
 
+    /**
+     * Whether the registry hands out the very ticket instances it stores, such that
+     * changes made to a retrieved ticket are immediately reflected in the registry.
+     * Tickets of such registries need not be wrapped in delegators, unless a callback
+     * is required or tickets are encrypted. Default is {@code false}.
+     *
+     * @return true, if tickets are held by reference.
+     */
+    protected boolean isTicketHeldByReference() {
+        return false;
+    }
+
+    /**
+     * Subscribe to changes made to the tickets of this registry, including those made by
+     * other nodes, such that copies of tickets kept elsewhere can be discarded as they change.
+     * The listener receives the ids under which changed tickets are stored, as produced by
+     * {@link #encodeTicketId(String)}, when a ticket is updated, removed, expired or evicted.
+     * Registries that cannot publish such changes return {@code false}, which is the default.
+     *
+     * @param listener the listener
+     * @return true, if the listener was registered
+     */
+    public boolean addTicketChangeListener(final Consumer<String> listener) {
+        return false;
+    }
+
     /**
      * Gets the proxied ticket instance.
      *
@@ -225,25 +379,77 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
             return null;
         }
 
-        for (final Pair<Class<? extends Ticket>, Constructor<? extends AbstractTicketDelegator>> ticketDelegator: ticketDelegators) {
-            final Class<? extends Ticket> clazz = ticketDelegator.getFirst();
-            if (clazz.isAssignableFrom(ticket.getClass())) {
-                final Constructor<? extends AbstractTicketDelegator> constructor = ticketDelegator.getSecond();
-                try {
-                    return constructor.newInstance(this, ticket, needsCallback());
-                } catch (final Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }
+        final boolean callback = needsCallback();
+        if (!callback && this.cipherExecutor == null && isTicketHeldByReference()) {
+            return ticket;
         }
 
-        throw new IllegalStateException("Cannot wrap ticket of type: " + ticket.getClass() + " with a ticket delegator");
+        TicketDelegatorFactory factory = this.ticketDelegatorsByType.get(ticket.getClass());
+        if (factory == null) {
+            factory = this.ticketDelegators.stream()
+                    .filter(pair -> pair.getFirst().isAssignableFrom(ticket.getClass()))
+                    .findFirst()
+                    .map(Pair::getSecond)
+                    .orElseThrow(() -> new IllegalStateException("Cannot wrap ticket of type: "
+                            + ticket.getClass() + " with a ticket delegator"));
+            this.ticketDelegatorsByType.put(ticket.getClass(), factory);
+        }
+        return factory.create(this, ticket, callback);
+    }
+
+    /**
+     * Register a ticket delegator for the given ticket type, after all
+     * delegators that are already registered.
+     *
+     * @param <T>     the ticket type
+     * @param type    the ticket type
+     * @param factory the delegator factory
+     */
+    public final <T extends Ticket> void registerTicketDelegator(final Class<T> type, final TicketDelegatorFactory<T> factory) {
+        registerTicketDelegator(this.ticketDelegators.size(), type, factory);
+    }
+
+    /**
+     * Register a ticket delegator for the given ticket type at the given position.
+     * Delegators are examined in order, and the first one whose type matches
+     * the ticket is used to wrap it.
+     *
+     * @param <T>     the ticket type
+     * @param index   the position of the delegator
+     * @param type    the ticket type
+     * @param factory the delegator factory
+     */
+    public final <T extends Ticket> void registerTicketDelegator(final int index, final Class<T> type,
+                                                                 final TicketDelegatorFactory<T> factory) {
+        this.ticketDelegators.add(index, new Pair<>(type, factory));
+        this.ticketDelegatorsByType.clear();
     }
 
     public void setCipherExecutor(final CipherExecutor<byte[], byte[]> cipherExecutor) {
         this.cipherExecutor = cipherExecutor;
     }
 
+    /**
+     * Whether tickets are encrypted before they are stored.
+     *
+     * @return true, if a cipher is defined
+     */
+    protected boolean isCipherExecutorEnabled() {
+        return this.cipherExecutor != null;
+    }
+
+    public void setLogoutManager(final LogoutManager logoutManager) {
+        this.logoutManager = logoutManager;
+    }
+
+    public void setTicketSerializer(final TicketSerializer ticketSerializer) {
+        this.ticketSerializer = ticketSerializer;
+    }
+
+    protected TicketSerializer getTicketSerializer() {
+        return this.ticketSerializer;
+    }
+
     /**
      * Encode ticket id into a SHA-512.
      *
@@ -280,8 +486,7 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
         }
         
         logger.info("Encoding [{}]", ticket);
-        final byte[] encodedTicketObject = SerializationUtils.serializeAndEncodeObject(
-                this.cipherExecutor, ticket);
+        final byte[] encodedTicketObject = this.cipherExecutor.encode(this.ticketSerializer.serialize(ticket));
         final String encodedTicketId = encodeTicketId(ticket.getId());
         final Ticket encodedTicket = new EncodedTicket(
                 ByteSource.wrap(encodedTicketObject), 
@@ -310,8 +515,7 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
         logger.info("Attempting to decode {}", result);
         final EncodedTicket encodedTicket = (EncodedTicket) result;
 
-        final Ticket ticket = SerializationUtils.decodeAndSerializeObject(
-                encodedTicket.getEncoded(), this.cipherExecutor, Ticket.class);
+        final Ticket ticket = this.ticketSerializer.deserialize(this.cipherExecutor.decode(encodedTicket.getEncoded()));
         logger.info("Decoded {}",  ticket);
         return ticket;
     }
@@ -331,14 +535,20 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
         return items.stream().map(this::decodeTicket).collect(Collectors.toSet());
     }
 
-    @Nullable
-    public List<Pair<Class<? extends Ticket>, Constructor<? extends AbstractTicketDelegator>>> getTicketDelegators() {
-        return ticketDelegators;
+    public List<Pair<Class<? extends Ticket>, TicketDelegatorFactory<? extends Ticket>>> getTicketDelegators() {
+        return Collections.unmodifiableList(this.ticketDelegators);
     }
 
-    public void setTicketDelegators(@Nullable final List<Pair<Class<? extends Ticket>, Constructor<? extends AbstractTicketDelegator>>>
+    /**
+     * Replace all registered ticket delegators.
+     *
+     * @param ticketDelegators the ticket delegators
+     */
+    public void setTicketDelegators(final List<Pair<Class<? extends Ticket>, TicketDelegatorFactory<? extends Ticket>>>
                                             ticketDelegators) {
-        this.ticketDelegators = ticketDelegators;
+        this.ticketDelegators.clear();
+        this.ticketDelegators.addAll(ticketDelegators);
+        this.ticketDelegatorsByType.clear();
     }
 
     /**
@@ -348,20 +558,15 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
         try {
             if (preCleanupTickets()) {
                 logger.debug("Beginning ticket cleanup...");
-                this.getTickets().stream()
-                        .filter(ticket -> ticket.isExpired())
-                        .forEach(ticket -> {
-                            if (ticket instanceof TicketGrantingTicket) {
-                                logger.debug("Cleaning up expired ticket-granting ticket [{}]", ticket.getId());
-                                this.logoutManager.performLogout((TicketGrantingTicket) ticket);
-                                deleteTicket(ticket.getId());
-                            } else if (ticket instanceof ServiceTicket) {
-                                logger.debug("Cleaning up expired service ticket or its derivative [{}]", ticket.getId());
-                                deleteTicket(ticket.getId());
-                            } else {
-                                logger.warn("Unknown ticket type [{}]. Nothing to clean up.", ticket.getClass().getSimpleName());
-                            }
-                        });
+                final long start = System.currentTimeMillis();
+                this.cleanerLag = getCleanerLag();
+                final int count = cleanupExpiredTickets();
+                final int logouts = awaitPendingLogouts(start);
+                final long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+                this.ticketsCleanedPerRun.update(count);
+                this.ticketsCleanedPerSecond.update(count * TimeUnit.SECONDS.toMillis(1) / elapsed);
+                logger.info("Cleaned up {} expired ticket(s) and performed {} logout(s) in {} ms, "
+                        + "{} ms behind the earliest pending expiration", count, logouts, elapsed, this.cleanerLag);
             }
         } finally {
             postCleanupTickets();
@@ -369,6 +574,155 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
 
     }
 
+    /**
+     * Go over the tickets that may have expired, and clean up those that have.
+     * The default implementation examines every ticket in the registry and
+     * hands expired tickets to {@link #cleanupExpiredTickets(Collection)} in batches
+     * of {@link #getCleanerBatchSize()}. Registries that keep track of expiration times
+     * may override this to only visit tickets that can actually have expired.
+     *
+     * @return the number of tickets cleaned up
+     */
+    protected int cleanupExpiredTickets() {
+        final int batchSize = getCleanerBatchSize();
+        final List<Ticket> batch = new ArrayList<>();
+        int count = 0;
+        for (final Ticket ticket : getTickets()) {
+            if (ticket.isExpired()) {
+                batch.add(ticket);
+                if (batch.size() >= batchSize) {
+                    count += cleanupExpiredTickets(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            count += cleanupExpiredTickets(batch);
+        }
+        return count;
+    }
+
+    /**
+     * Clean up a batch of expired tickets. Logout notifications for ticket-granting
+     * tickets are handed to the cleaner's logout executor, and the tickets are then
+     * removed from the registry via {@link #deleteTickets(Collection)}. Once the executor
+     * queue fills up, the calling thread performs the logout itself, which slows
+     * down the cleaner until notifications catch up.
+     *
+     * @param tickets the expired tickets
+     * @return the number of tickets removed
+     */
+    protected final int cleanupExpiredTickets(final Collection<Ticket> tickets) {
+        final List<String> ticketIds = new ArrayList<>(tickets.size());
+        for (final Ticket ticket : tickets) {
+            if (ticket instanceof TicketGrantingTicket) {
+                logger.debug("Cleaning up expired ticket-granting ticket [{}]", ticket.getId());
+                submitLogout((TicketGrantingTicket) ticket);
+                ticketIds.add(ticket.getId());
+            } else if (ticket instanceof ServiceTicket) {
+                logger.debug("Cleaning up expired service ticket or its derivative [{}]", ticket.getId());
+                ticketIds.add(ticket.getId());
+            } else {
+                logger.warn("Unknown ticket type [{}]. Nothing to clean up.", ticket.getClass().getSimpleName());
+            }
+        }
+        return deleteTickets(ticketIds);
+    }
+
+    private void submitLogout(final TicketGrantingTicket ticket) {
+        if (this.logoutManager == null) {
+            return;
+        }
+        final ExecutorService executor = getLogoutExecutor();
+        if (executor == null) {
+            performLogout(ticket);
+        } else {
+            this.pendingLogouts.add(executor.submit(() -> performLogout(ticket)));
+        }
+    }
+
+    private void performLogout(final TicketGrantingTicket ticket) {
+        try {
+            this.logoutManager.performLogout(ticket);
+        } catch (final Exception e) {
+            logger.warn("Unable to perform logout for [{}]: {}", ticket.getId(), e.getMessage());
+            logger.debug(e.getMessage(), e);
+        } finally {
+            this.logoutsPerformed.mark();
+        }
+    }
+
+    /**
+     * Wait for the logout notifications submitted during this run, giving up
+     * once the run has taken as long as the interval between runs.
+     *
+     * @param start the time the run started
+     * @return the number of logouts that completed
+     */
+    private int awaitPendingLogouts(final long start) {
+        final long deadline = start + TimeUnit.SECONDS.toMillis(this.refreshInterval);
+        int count = 0;
+        Future<?> logout = this.pendingLogouts.poll();
+        while (logout != null) {
+            try {
+                logout.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+                count++;
+            } catch (final TimeoutException e) {
+                logger.warn("Logout notifications are still pending after {} ms. They will complete in the background",
+                        System.currentTimeMillis() - start);
+                this.pendingLogouts.clear();
+                break;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (final ExecutionException e) {
+                logger.debug(e.getMessage(), e);
+            }
+            logout = this.pendingLogouts.poll();
+        }
+        return count;
+    }
+
+    private synchronized ExecutorService getLogoutExecutor() {
+        if (this.logoutExecutor == null && this.cleanerLogoutThreads > 0) {
+            this.logoutExecutor = new ThreadPoolExecutor(this.cleanerLogoutThreads, this.cleanerLogoutThreads,
+                    0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(Math.max(this.cleanerLogoutQueueSize, 1)),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+        return this.logoutExecutor;
+    }
+
+    /**
+     * Stop the threads that send logout notifications on behalf of the cleaner.
+     */
+    @PreDestroy
+    public synchronized void shutdownLogoutExecutor() {
+        if (this.logoutExecutor != null) {
+            this.logoutExecutor.shutdown();
+            this.logoutExecutor = null;
+        }
+    }
+
+    /**
+     * Gets how far behind the cleaner is, as the time elapsed since the earliest
+     * pending expiration of a ticket that is still in the registry. Default is zero,
+     * as the registry does not keep track of expiration times.
+     *
+     * @return the lag in milliseconds
+     */
+    protected long getCleanerLag() {
+        return 0;
+    }
+
+    /**
+     * Gets the maximum number of expired tickets the cleaner processes at a time.
+     *
+     * @return the batch size
+     */
+    protected int getCleanerBatchSize() {
+        return Math.max(this.cleanerBatchSize, 1);
+    }
+
     /**
      * Post cleanup tickets. This injection point is always executed
      * in a finally block regardless of whether cleanup actually happened.
@@ -386,6 +740,23 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
         return true;
     }
 
+    /**
+     * Register the cleaner statistics with the metrics registry, if one is available.
+     */
+    @PostConstruct
+    public void registerMetrics() {
+        if (this.metricRegistry != null) {
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "TICKETS_CLEANED_PER_RUN"),
+                    this.ticketsCleanedPerRun);
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "TICKETS_CLEANED_PER_SECOND"),
+                    this.ticketsCleanedPerSecond);
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "TICKET_CLEANER_LOGOUTS"),
+                    this.logoutsPerformed);
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "TICKET_CLEANER_LAG"),
+                    (Gauge<Long>) () -> this.cleanerLag);
+        }
+    }
+
     /**
      * Schedule reloader job.
      */
@@ -400,8 +771,11 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
             }
 
             logger.info("Preparing to schedule job to clean up after tickets...");
+            final JobDataMap jobData = new JobDataMap();
+            jobData.put(JOB_DATA_TICKET_REGISTRY, this);
             final JobDetail job = JobBuilder.newJob(this.getClass())
                     .withIdentity(this.getClass().getSimpleName().concat(UUID.randomUUID().toString()))
+                    .usingJobData(jobData)
                     .build();
 
             final Trigger trigger = TriggerBuilder.newTrigger()
@@ -425,8 +799,14 @@ public abstract class AbstractTicketRegistry implements TicketRegistry, TicketRe
     @Override
     public final void execute(final JobExecutionContext jobExecutionContext) throws JobExecutionException {
         try {
-            SpringBeanAutowiringSupport.processInjectionBasedOnCurrentContext(this);
-            cleanupTickets();
+            // Clean the scheduling registry itself, rather than the job instance quartz created for this run
+            final Object registry = jobExecutionContext.getMergedJobDataMap().get(JOB_DATA_TICKET_REGISTRY);
+            if (registry instanceof AbstractTicketRegistry) {
+                ((AbstractTicketRegistry) registry).cleanupTickets();
+            } else {
+                SpringBeanAutowiringSupport.processInjectionBasedOnCurrentContext(this);
+                cleanupTickets();
+            }
         } catch (final Exception e) {
             logger.error(e.getMessage(), e);
         }
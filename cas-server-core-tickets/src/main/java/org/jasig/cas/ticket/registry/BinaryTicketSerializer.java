@@ -0,0 +1,613 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.authentication.BasicCredentialMetaData;
+import org.jasig.cas.authentication.DefaultAuthentication;
+import org.jasig.cas.authentication.DefaultHandlerResult;
+import org.jasig.cas.authentication.principal.SimplePrincipal;
+import org.jasig.cas.ticket.ProxyGrantingTicketImpl;
+import org.jasig.cas.ticket.ProxyTicketImpl;
+import org.jasig.cas.ticket.ServiceTicketImpl;
+import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.ticket.TicketGrantingTicketImpl;
+import org.jasig.cas.ticket.support.AlwaysExpiresExpirationPolicy;
+import org.jasig.cas.ticket.support.HardTimeoutExpirationPolicy;
+import org.jasig.cas.ticket.support.MultiTimeUseOrTimeoutExpirationPolicy;
+import org.jasig.cas.ticket.support.NeverExpiresExpirationPolicy;
+import org.jasig.cas.ticket.support.RememberMeDelegatingExpirationPolicy;
+import org.jasig.cas.ticket.support.ThrottledUseAndTimeoutExpirationPolicy;
+import org.jasig.cas.ticket.support.TicketGrantingTicketExpirationPolicy;
+import org.jasig.cas.ticket.support.TimeoutExpirationPolicy;
+import org.jasig.cas.util.SerializationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.objenesis.Objenesis;
+import org.springframework.objenesis.ObjenesisStd;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link TicketSerializer} that writes tickets in a compact, versioned binary format.
+ * <p>
+ * Tickets, authentications, principals and expiration policies are written as a type id followed
+ * by the values of their fields, in an order fixed by the schema of each type. Strings, numbers,
+ * dates, enums, classes and the common collection types are written inline. Strings and objects that appear
+ * more than once in a ticket graph, such as service urls or the parent of a proxy-granting ticket, are written
+ * once and referenced thereafter. Web application services are supported when they are on the classpath.
+ * Any other value falls back to Java serialization.
+ * <p>
+ * Type ids and the fields of each schema are part of the format; new types and fields may only be appended.
+ * Fields written by a newer version are skipped, and fields missing from an older payload keep their defaults.
+ * Payloads that were produced by Java serialization are still read.
+ * <p>
+ * Registries use this serializer for encrypted tickets once it is aliased as {@code ticketSerializer}.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+@Component("binaryTicketSerializer")
+public final class BinaryTicketSerializer implements TicketSerializer {
+
+    /** First byte of every payload. Java serialization streams start with {@code 0xAC}. */
+    private static final byte MAGIC = (byte) 0xCB;
+
+    private static final byte FORMAT_VERSION = 1;
+
+    /** The magic byte, followed by the format version. */
+    private static final int HEADER_SIZE = 2;
+
+    private static final int INITIAL_BUFFER_SIZE = 512;
+
+    /** Variable-length numbers are written seven bits at a time, least significant first. */
+    private static final int VARINT_BITS = 7;
+
+    private static final long VARINT_MASK = 0x7F;
+
+    private static final int VARINT_CONTINUATION = 0x80;
+
+    private static final String[] TICKET_FIELDS = {"id", "expirationPolicy", "creationTime", "lastTimeUsed",
+            "previousLastTimeUsed", "countOfUses"};
+
+    private static final String[] TICKET_GRANTING_TICKET_FIELDS = concat(TICKET_FIELDS, "authentication", "expired",
+            "proxiedBy", "services", "ticketGrantingTicket", "proxyGrantingTickets", "supplementalAuthentications", "version");
+
+    private static final String[] SERVICE_TICKET_FIELDS = concat(TICKET_FIELDS, "ticketGrantingTicket", "service",
+            "fromNewLogin", "grantedTicketAlready");
+
+    private static final Objenesis OBJENESIS = new ObjenesisStd(true);
+
+    /** Schemas, indexed by type id. */
+    private static final List<Schema> SCHEMAS = new ArrayList<>();
+
+    private static final Map<Class<?>, Schema> SCHEMAS_BY_TYPE = new HashMap<>();
+
+    static {
+        register(TicketGrantingTicketImpl.class, TICKET_GRANTING_TICKET_FIELDS);
+        register(ProxyGrantingTicketImpl.class, TICKET_GRANTING_TICKET_FIELDS);
+        register(ServiceTicketImpl.class, SERVICE_TICKET_FIELDS);
+        register(ProxyTicketImpl.class, SERVICE_TICKET_FIELDS);
+        register(DefaultAuthentication.class, "authenticationDate", "credentials", "principal", "attributes",
+                "successes", "failures");
+        register(SimplePrincipal.class, "id", "attributes");
+        register(DefaultHandlerResult.class, "handlerName", "credentialMetaData", "principal", "warnings");
+        register(BasicCredentialMetaData.class, "id", "credentialClass");
+        register(HardTimeoutExpirationPolicy.class, "timeToKillInMilliSeconds");
+        register(TimeoutExpirationPolicy.class, "timeToKillInMilliSeconds");
+        register(MultiTimeUseOrTimeoutExpirationPolicy.class, "timeToKillInMilliSeconds", "numberOfUses");
+        register(MultiTimeUseOrTimeoutExpirationPolicy.ServiceTicketExpirationPolicy.class,
+                "timeToKillInMilliSeconds", "numberOfUses");
+        register(MultiTimeUseOrTimeoutExpirationPolicy.ProxyTicketExpirationPolicy.class,
+                "timeToKillInMilliSeconds", "numberOfUses");
+        register(ThrottledUseAndTimeoutExpirationPolicy.class, "timeToKillInMilliSeconds", "timeInBetweenUsesInMilliSeconds");
+        register(TicketGrantingTicketExpirationPolicy.class, "maxTimeToLiveInMilliSeconds", "timeToKillInMilliSeconds");
+        register(RememberMeDelegatingExpirationPolicy.class, "rememberMeExpirationPolicy", "sessionExpirationPolicy");
+        register(NeverExpiresExpirationPolicy.class);
+        register(AlwaysExpiresExpirationPolicy.class);
+        registerIfPresent("org.jasig.cas.authentication.principal.SimpleWebApplicationServiceImpl",
+                "id", "originalUrl", "artifactId", "principal", "loggedOutAlready", "responseBuilder", "format");
+        registerIfPresent("org.jasig.cas.authentication.principal.WebApplicationServiceResponseBuilder", "responseType");
+    }
+
+    @Override
+    public byte[] serialize(final Ticket ticket) {
+        final Encoder encoder = new Encoder();
+        encoder.out.write(MAGIC);
+        encoder.out.write(FORMAT_VERSION);
+        encoder.writeValue(ticket);
+        return encoder.out.toByteArray();
+    }
+
+    @Override
+    public Ticket deserialize(final byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != MAGIC) {
+            return SerializationUtils.deserializeAndCheckObject(bytes, Ticket.class);
+        }
+        if (bytes.length < HEADER_SIZE || bytes[1] > FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported ticket format version");
+        }
+        final Object result = new Decoder(ByteBuffer.wrap(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE)).readValue();
+        if (!(result instanceof Ticket)) {
+            throw new ClassCastException("Decoded object is of type " + (result == null ? null : result.getClass())
+                    + " when we were expecting " + Ticket.class);
+        }
+        return (Ticket) result;
+    }
+
+    private static void register(final Class<?> type, final String... fieldNames) {
+        final Schema schema = new Schema(SCHEMAS.size(), type, fieldNames);
+        SCHEMAS.add(schema);
+        SCHEMAS_BY_TYPE.put(type, schema);
+    }
+
+    /**
+     * Register a type that may not be on the classpath. Its type id is reserved either way.
+     *
+     * @param className  the class name
+     * @param fieldNames the field names
+     */
+    private static void registerIfPresent(final String className, final String... fieldNames) {
+        final ClassLoader classLoader = BinaryTicketSerializer.class.getClassLoader();
+        if (ClassUtils.isPresent(className, classLoader)) {
+            register(ClassUtils.resolveClassName(className, classLoader), fieldNames);
+        } else {
+            SCHEMAS.add(null);
+        }
+    }
+
+    private static String[] concat(final String[] fields, final String... more) {
+        final String[] result = Arrays.copyOf(fields, fields.length + more.length);
+        System.arraycopy(more, 0, result, fields.length, more.length);
+        return result;
+    }
+
+    /**
+     * Value tags.
+     */
+    private static final class Tag {
+        static final int NULL = 0;
+        static final int STRING = 1;
+        static final int INT = 2;
+        static final int LONG = 3;
+        static final int TRUE = 4;
+        static final int FALSE = 5;
+        static final int DOUBLE = 6;
+        static final int DATE_TIME = 7;
+        static final int CLASS = 8;
+        static final int LIST = 9;
+        static final int SET = 10;
+        static final int MAP = 11;
+        static final int UNMODIFIABLE_LIST = 12;
+        static final int UNMODIFIABLE_SET = 13;
+        static final int UNMODIFIABLE_MAP = 14;
+        static final int OBJECT = 15;
+        static final int REFERENCE = 16;
+        static final int SERIALIZED = 17;
+        static final int ENUM = 18;
+
+        private Tag() {
+        }
+    }
+
+    /**
+     * The fields of a type, in the order in which they are written.
+     */
+    private static final class Schema {
+        private final int typeId;
+
+        private final Field[] fields;
+
+        private final Constructor<?> constructor;
+
+        private final Class<?> type;
+
+        /** Logger fields are not written, but initialized when the type is instantiated without a constructor. */
+        private final List<Field> loggerFields = new ArrayList<>();
+
+        Schema(final int typeId, final Class<?> type, final String... fieldNames) {
+            this.typeId = typeId;
+            this.type = type;
+            this.fields = new Field[fieldNames.length];
+            for (int i = 0; i < fieldNames.length; i++) {
+                final Field field = ReflectionUtils.findField(type, fieldNames[i]);
+                if (field == null) {
+                    throw new IllegalStateException("Field " + fieldNames[i] + " is not defined by " + type);
+                }
+                ReflectionUtils.makeAccessible(field);
+                this.fields[i] = field;
+            }
+            collectUnlistedFields(type, fieldNames);
+            this.constructor = getNoArgConstructor(type);
+        }
+
+        /**
+         * Instantiate the type through its no-arg constructor, so that transient state
+         * is initialized, or without calling a constructor if it has none.
+         *
+         * @return the new instance
+         */
+        Object newInstance() {
+            if (this.constructor == null) {
+                final Object instance = OBJENESIS.newInstance(this.type);
+                this.loggerFields.forEach(field -> ReflectionUtils.setField(field, instance, LoggerFactory.getLogger(this.type)));
+                return instance;
+            }
+            try {
+                return this.constructor.newInstance();
+            } catch (final Exception e) {
+                throw new IllegalStateException("Cannot instantiate " + this.type, e);
+            }
+        }
+
+        private static Constructor<?> getNoArgConstructor(final Class<?> type) {
+            try {
+                final Constructor<?> constructor = type.getDeclaredConstructor();
+                ReflectionUtils.makeAccessible(constructor);
+                return constructor;
+            } catch (final NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Collect logger fields, and make sure that the schema lists every other field
+         * that Java serialization would write, so that no state is silently dropped.
+         *
+         * @param type       the type
+         * @param fieldNames the field names listed by the schema
+         */
+        private void collectUnlistedFields(final Class<?> type, final String... fieldNames) {
+            final Set<String> names = new HashSet<>(Arrays.asList(fieldNames));
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                for (final Field field : current.getDeclaredFields()) {
+                    final int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || names.contains(field.getName())) {
+                        continue;
+                    }
+                    if (!Logger.class.isAssignableFrom(field.getType())) {
+                        throw new IllegalStateException("Schema of " + type + " does not include field " + field.getName());
+                    }
+                    ReflectionUtils.makeAccessible(field);
+                    this.loggerFields.add(field);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a single ticket graph.
+     */
+    private static final class Encoder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+
+        private final Map<Object, Integer> objects = new IdentityHashMap<>();
+
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        void writeValue(final Object value) {
+            if (value == null) {
+                this.out.write(Tag.NULL);
+                return;
+            }
+            final Schema schema = SCHEMAS_BY_TYPE.get(value.getClass());
+            if (schema != null) {
+                writeObject(schema, value);
+            } else if (value instanceof String) {
+                this.out.write(Tag.STRING);
+                writeString((String) value);
+            } else if (value instanceof Integer) {
+                this.out.write(Tag.INT);
+                writeVarLong(zigZag((Integer) value));
+            } else if (value instanceof Long) {
+                this.out.write(Tag.LONG);
+                writeVarLong(zigZag((Long) value));
+            } else if (value instanceof Boolean) {
+                this.out.write((Boolean) value ? Tag.TRUE : Tag.FALSE);
+            } else if (value instanceof Double) {
+                this.out.write(Tag.DOUBLE);
+                writeLong(Double.doubleToLongBits((Double) value));
+            } else if (value instanceof ZonedDateTime) {
+                writeDateTime((ZonedDateTime) value);
+            } else if (value instanceof Class) {
+                this.out.write(Tag.CLASS);
+                writeString(((Class<?>) value).getName());
+            } else if (value instanceof Enum) {
+                this.out.write(Tag.ENUM);
+                writeString(((Enum<?>) value).getDeclaringClass().getName());
+                writeString(((Enum<?>) value).name());
+            } else if (!writeCollection(value)) {
+                writeSerialized(value);
+            }
+        }
+
+        private void writeObject(final Schema schema, final Object value) {
+            final Integer reference = this.objects.get(value);
+            if (reference != null) {
+                this.out.write(Tag.REFERENCE);
+                writeVarLong(reference);
+                return;
+            }
+            this.objects.put(value, this.objects.size());
+            this.out.write(Tag.OBJECT);
+            writeVarLong(schema.typeId);
+            writeVarLong(schema.fields.length);
+            for (final Field field : schema.fields) {
+                writeValue(ReflectionUtils.getField(field, value));
+            }
+        }
+
+        private boolean writeCollection(final Object value) {
+            final boolean unmodifiable = isUnmodifiable(value);
+            if (value instanceof Map && (unmodifiable || value instanceof HashMap)) {
+                this.out.write(unmodifiable ? Tag.UNMODIFIABLE_MAP : Tag.MAP);
+                final Map<?, ?> map = (Map<?, ?>) value;
+                writeVarLong(map.size());
+                for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+                return true;
+            }
+            if (value instanceof Set && (unmodifiable || value instanceof HashSet)) {
+                this.out.write(unmodifiable ? Tag.UNMODIFIABLE_SET : Tag.SET);
+                writeElements((Collection<?>) value);
+                return true;
+            }
+            if (value instanceof List && (unmodifiable || value instanceof ArrayList)) {
+                this.out.write(unmodifiable ? Tag.UNMODIFIABLE_LIST : Tag.LIST);
+                writeElements((Collection<?>) value);
+                return true;
+            }
+            return false;
+        }
+
+        private void writeElements(final Collection<?> collection) {
+            writeVarLong(collection.size());
+            collection.forEach(this::writeValue);
+        }
+
+        private void writeDateTime(final ZonedDateTime dateTime) {
+            this.out.write(Tag.DATE_TIME);
+            writeVarLong(zigZag(dateTime.toEpochSecond()));
+            writeVarLong(dateTime.getNano());
+            writeString(dateTime.getZone().getId());
+        }
+
+        private void writeSerialized(final Object value) {
+            if (!(value instanceof Serializable)) {
+                throw new IllegalArgumentException("Cannot serialize value of type " + value.getClass());
+            }
+            final byte[] bytes = SerializationUtils.serialize((Serializable) value);
+            this.out.write(Tag.SERIALIZED);
+            writeVarLong(bytes.length);
+            this.out.write(bytes, 0, bytes.length);
+        }
+
+        /**
+         * Write a string the first time it is seen, preceded by zero,
+         * and its position among the strings seen so far plus one thereafter.
+         *
+         * @param value the string
+         */
+        private void writeString(final String value) {
+            final Integer reference = this.strings.get(value);
+            if (reference != null) {
+                writeVarLong(reference + 1);
+                return;
+            }
+            this.strings.put(value, this.strings.size());
+            writeVarLong(0);
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            this.out.write(bytes, 0, bytes.length);
+        }
+
+        private void writeLong(final long value) {
+            for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+                this.out.write((int) (value >>> shift));
+            }
+        }
+
+        private void writeVarLong(final long value) {
+            long remaining = value;
+            while ((remaining & ~VARINT_MASK) != 0) {
+                this.out.write((int) (remaining & VARINT_MASK) | VARINT_CONTINUATION);
+                remaining >>>= VARINT_BITS;
+            }
+            this.out.write((int) remaining);
+        }
+
+        private static long zigZag(final long value) {
+            return (value << 1) ^ (value >> (Long.SIZE - 1));
+        }
+
+        private static boolean isUnmodifiable(final Object value) {
+            final String name = value.getClass().getName();
+            return name.startsWith("java.util.Collections$Unmodifiable")
+                    || name.startsWith("java.util.Collections$Empty")
+                    || name.startsWith("java.util.Collections$Singleton");
+        }
+    }
+
+    /**
+     * Reads a single ticket graph.
+     */
+    private static final class Decoder {
+        private final ByteBuffer in;
+
+        private final List<Object> objects = new ArrayList<>();
+
+        private final List<String> strings = new ArrayList<>();
+
+        Decoder(final ByteBuffer in) {
+            this.in = in;
+        }
+
+        Object readValue() {
+            final int tag = this.in.get();
+            switch (tag) {
+                case Tag.NULL:
+                    return null;
+                case Tag.STRING:
+                    return readString();
+                case Tag.INT:
+                    return (int) unZigZag(readVarLong());
+                case Tag.LONG:
+                    return unZigZag(readVarLong());
+                case Tag.TRUE:
+                    return Boolean.TRUE;
+                case Tag.FALSE:
+                    return Boolean.FALSE;
+                case Tag.DOUBLE:
+                    return Double.longBitsToDouble(this.in.getLong());
+                case Tag.DATE_TIME:
+                    return readDateTime();
+                case Tag.CLASS:
+                    return readClass();
+                default:
+                    return readComposite(tag);
+            }
+        }
+
+        private Object readComposite(final int tag) {
+            switch (tag) {
+                case Tag.LIST:
+                    return readElements(new ArrayList<>());
+                case Tag.SET:
+                    return readElements(new LinkedHashSet<>());
+                case Tag.MAP:
+                    return readEntries();
+                case Tag.UNMODIFIABLE_LIST:
+                    return Collections.unmodifiableList(readElements(new ArrayList<>()));
+                case Tag.UNMODIFIABLE_SET:
+                    return Collections.unmodifiableSet(readElements(new LinkedHashSet<>()));
+                case Tag.UNMODIFIABLE_MAP:
+                    return Collections.unmodifiableMap(readEntries());
+                case Tag.OBJECT:
+                    return readObject();
+                case Tag.REFERENCE:
+                    return this.objects.get((int) readVarLong());
+                case Tag.SERIALIZED:
+                    return SerializationUtils.deserialize(readBytes());
+                case Tag.ENUM:
+                    return readEnum();
+                default:
+                    throw new IllegalArgumentException("Unknown value tag " + tag);
+            }
+        }
+
+        private Object readObject() {
+            final int typeId = (int) readVarLong();
+            if (typeId >= SCHEMAS.size()) {
+                throw new IllegalArgumentException("Unknown type id " + typeId);
+            }
+            final Schema schema = SCHEMAS.get(typeId);
+            if (schema == null) {
+                throw new IllegalArgumentException("Type id " + typeId + " refers to a class that is not available");
+            }
+            final Object instance = schema.newInstance();
+            this.objects.add(instance);
+
+            final int count = (int) readVarLong();
+            for (int i = 0; i < count; i++) {
+                final Object value = readValue();
+                if (i < schema.fields.length) {
+                    ReflectionUtils.setField(schema.fields[i], instance, value);
+                }
+            }
+            return instance;
+        }
+
+        private <T extends Collection<Object>> T readElements(final T collection) {
+            final int size = (int) readVarLong();
+            for (int i = 0; i < size; i++) {
+                collection.add(readValue());
+            }
+            return collection;
+        }
+
+        private Map<Object, Object> readEntries() {
+            final int size = (int) readVarLong();
+            final Map<Object, Object> map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                map.put(readValue(), readValue());
+            }
+            return map;
+        }
+
+        private ZonedDateTime readDateTime() {
+            final long seconds = unZigZag(readVarLong());
+            final int nanos = (int) readVarLong();
+            return ZonedDateTime.ofInstant(Instant.ofEpochSecond(seconds, nanos), ZoneId.of(readString()));
+        }
+
+        private Class<?> readClass() {
+            final String name = readString();
+            try {
+                return ClassUtils.forName(name, ClassUtils.getDefaultClassLoader());
+            } catch (final ClassNotFoundException e) {
+                throw new IllegalArgumentException("Cannot load class " + name, e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Enum<?> readEnum() {
+            final Class type = readClass();
+            return Enum.valueOf(type, readString());
+        }
+
+        private String readString() {
+            final int reference = (int) readVarLong();
+            if (reference > 0) {
+                return this.strings.get(reference - 1);
+            }
+            final String value = new String(readBytes(), StandardCharsets.UTF_8);
+            this.strings.add(value);
+            return value;
+        }
+
+        private byte[] readBytes() {
+            final byte[] bytes = new byte[(int) readVarLong()];
+            this.in.get(bytes);
+            return bytes;
+        }
+
+        private long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += VARINT_BITS) {
+                final byte b = this.in.get();
+                result |= (b & VARINT_MASK) << shift;
+                if ((b & VARINT_CONTINUATION) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed variable-length number");
+        }
+
+        private static long unZigZag(final long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
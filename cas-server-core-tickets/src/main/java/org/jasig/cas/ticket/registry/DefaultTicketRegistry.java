@@ -1,20 +1,22 @@
 package org.jasig.cas.ticket.registry;
 
-import org.jasig.cas.ticket.ServiceTicket;
 import org.jasig.cas.ticket.Ticket;
-import org.jasig.cas.ticket.TicketGrantingTicket;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementation of the TicketRegistry that is backed by a ConcurrentHashMap.
+ * Tickets are also kept in a {@link TicketExpirationIndex}, so that the cleaner
+ * only visits tickets that may have expired since it last ran.
  *
  * @author Scott Battaglia
  * @since 3.0.0
@@ -27,6 +29,16 @@ public final class DefaultTicketRegistry extends AbstractTicketRegistry {
      */
     private final Map<String, Ticket> cache;
 
+    /**
+     * Number of tickets in the cache per ticket type.
+     */
+    private final TicketRegistryCounters counters = new TicketRegistryCounters();
+
+    /**
+     * Tickets ordered by the earliest time they could have expired.
+     */
+    private final TicketExpirationIndex expirationIndex = new TicketExpirationIndex();
+
     /**
      * Instantiates a new default ticket registry.
      */
@@ -62,7 +74,10 @@ public final class DefaultTicketRegistry extends AbstractTicketRegistry {
         Assert.notNull(ticket, "ticket cannot be null");
 
         logger.debug("Added ticket [{}] to registry.", ticket.getId());
-        this.cache.put(ticket.getId(), ticket);
+        if (this.cache.put(ticket.getId(), ticket) == null) {
+            this.counters.increment(ticket);
+        }
+        this.expirationIndex.add(ticket);
     }
 
     @Override
@@ -78,7 +93,13 @@ public final class DefaultTicketRegistry extends AbstractTicketRegistry {
 
     @Override
     public boolean deleteSingleTicket(final String ticketId) {
-        return this.cache.remove(ticketId) != null;
+        final Ticket ticket = this.cache.remove(ticketId);
+        if (ticket == null) {
+            return false;
+        }
+        this.counters.decrement(ticket);
+        this.expirationIndex.remove(ticketId);
+        return true;
     }
 
 
@@ -89,12 +110,48 @@ public final class DefaultTicketRegistry extends AbstractTicketRegistry {
 
     @Override
     public long sessionCount() {
-        return this.cache.values().stream().filter(t -> t instanceof TicketGrantingTicket).count();
+        return this.counters.sessionCount();
     }
 
     @Override
     public long serviceTicketCount() {
-        return this.cache.values().stream().filter(t -> t instanceof ServiceTicket).count();
+        return this.counters.serviceTicketCount();
+    }
+
+    @Override
+    protected int cleanupExpiredTickets() {
+        final long start = System.currentTimeMillis();
+        final int batchSize = getCleanerBatchSize();
+        int count = 0;
+
+        List<String> batch = this.expirationIndex.poll(start, batchSize);
+        while (!batch.isEmpty()) {
+            logger.debug("Examining {} ticket(s) that may have expired", batch.size());
+            final List<Ticket> expired = new ArrayList<>(batch.size());
+            for (final String ticketId : batch) {
+                final Ticket ticket = this.cache.get(ticketId);
+                if (ticket != null) {
+                    if (ticket.isExpired()) {
+                        expired.add(ticket);
+                    } else {
+                        // Look at the ticket again once it could have expired, but not during this run
+                        this.expirationIndex.add(ticket, start + 1);
+                    }
+                }
+            }
+            count += cleanupExpiredTickets(expired);
+            expired.stream()
+                    .filter(ticket -> this.cache.containsKey(ticket.getId()))
+                    .forEach(ticket -> this.expirationIndex.add(ticket, start + 1));
+            batch = this.expirationIndex.poll(start, batchSize);
+        }
+        return count;
+    }
+
+    @Override
+    protected long getCleanerLag() {
+        final long earliestDueTime = this.expirationIndex.getEarliestDueTime();
+        return Math.max(System.currentTimeMillis() - earliestDueTime, 0);
     }
 
     @Override
@@ -106,4 +163,9 @@ public final class DefaultTicketRegistry extends AbstractTicketRegistry {
     protected boolean needsCallback() {
         return false;
     }
+
+    @Override
+    protected boolean isTicketHeldByReference() {
+        return true;
+    }
 }
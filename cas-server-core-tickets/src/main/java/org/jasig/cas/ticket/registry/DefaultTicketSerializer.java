@@ -0,0 +1,23 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.util.SerializationUtils;
+
+/**
+ * {@link TicketSerializer} that uses Java serialization.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class DefaultTicketSerializer implements TicketSerializer {
+
+    @Override
+    public byte[] serialize(final Ticket ticket) {
+        return SerializationUtils.serialize(ticket);
+    }
+
+    @Override
+    public Ticket deserialize(final byte[] bytes) {
+        return SerializationUtils.deserializeAndCheckObject(bytes, Ticket.class);
+    }
+}
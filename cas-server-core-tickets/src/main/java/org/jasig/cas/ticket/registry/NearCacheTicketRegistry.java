@@ -0,0 +1,356 @@
+package org.jasig.cas.ticket.registry;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.Assert;
+
+import javax.annotation.PostConstruct;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decorator that keeps recently retrieved tickets of a distributed ticket registry in a
+ * local, size and time bounded cache, so that repeated lookups of the same ticket during
+ * a single flow do not each incur a network round trip.
+ * <p>
+ * Tickets are cached in serialized form, and each lookup served from the cache
+ * deserializes a copy of its own, so that requests never share a mutable ticket.
+ * <p>
+ * Cached copies are dropped once tickets are added, updated or deleted through this registry,
+ * and lookups that raced with such a change do not cache what they read. If the
+ * decorated registry is able to publish changes made to its tickets, possibly by other
+ * nodes, cached copies are dropped as soon as they change as well. Otherwise, they may
+ * be out of date for up to the configured time to live, which should then be kept short.
+ * By default, only ticket-granting tickets are cached.
+ * <p>
+ * To enable, declare this registry around the actual registry and alias it as {@code ticketRegistry}.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class NearCacheTicketRegistry implements TicketRegistry, TicketRegistryState {
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    private static final long DEFAULT_TIME_TO_LIVE_IN_SECONDS = 5;
+
+    private static final int INVALIDATION_STRIPES = 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /** The real instance of the ticket registry that is to be decorated. */
+    @NotNull
+    private final TicketRegistry ticketRegistry;
+
+    @Value("${ticket.registry.nearcache.maxsize:10000}")
+    private long maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+    @Value("${ticket.registry.nearcache.ttl:5}")
+    private long timeToLiveInSeconds = DEFAULT_TIME_TO_LIVE_IN_SECONDS;
+
+    @Value("${ticket.registry.nearcache.tgtonly:true}")
+    private boolean cacheTicketGrantingTicketsOnly = true;
+
+    @Autowired(required = false)
+    @Qualifier("metrics")
+    private MetricRegistry metricRegistry;
+
+    private Cache<String, byte[]> cache;
+
+    /**
+     * Number of times the tickets of each stripe were invalidated, by the hash of their cache key.
+     * A lookup only caches what it read if its stripe was not invalidated in the meantime.
+     */
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    private TicketSerializer ticketSerializer = new DefaultTicketSerializer();
+
+    /**
+     * Instantiates a new near cache in front of the given registry.
+     *
+     * @param ticketRegistry the ticket registry to decorate
+     */
+    public NearCacheTicketRegistry(final TicketRegistry ticketRegistry) {
+        this.ticketRegistry = ticketRegistry;
+    }
+
+    /**
+     * Build the cache, subscribe to changes published by the decorated registry,
+     * and register cache statistics with the metrics registry, if one is available.
+     */
+    @PostConstruct
+    public void initialize() {
+        if (this.ticketRegistry instanceof AbstractTicketRegistry) {
+            this.ticketSerializer = ((AbstractTicketRegistry) this.ticketRegistry).getTicketSerializer();
+        }
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(this.maximumSize)
+                .expireAfterWrite(this.timeToLiveInSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+
+        if (this.ticketRegistry instanceof AbstractTicketRegistry
+                && ((AbstractTicketRegistry) this.ticketRegistry).addTicketChangeListener(this::invalidate)) {
+            logger.info("Tickets cached from {} are invalidated as they change", this.ticketRegistry.getClass().getSimpleName());
+        } else {
+            logger.info("{} does not publish ticket changes. Cached tickets may be out of date for up to {} seconds",
+                    this.ticketRegistry.getClass().getSimpleName(), this.timeToLiveInSeconds);
+        }
+
+        if (this.metricRegistry != null) {
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "NEAR_CACHE_HIT_RATIO"),
+                    (Gauge<Double>) () -> this.cache.stats().hitRate());
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "NEAR_CACHE_HITS"),
+                    (Gauge<Long>) () -> this.cache.stats().hitCount());
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "NEAR_CACHE_MISSES"),
+                    (Gauge<Long>) () -> this.cache.stats().missCount());
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "NEAR_CACHE_SIZE"),
+                    (Gauge<Long>) () -> this.cache.size());
+        }
+    }
+
+    @Override
+    public void addTicket(final Ticket ticket) {
+        this.ticketRegistry.addTicket(ticket);
+        invalidate(getCacheKey(ticket.getId()));
+    }
+
+    @Override
+    public void addTickets(final Collection<Ticket> tickets) {
+        this.ticketRegistry.addTickets(tickets);
+        tickets.forEach(ticket -> invalidate(getCacheKey(ticket.getId())));
+    }
+
+    @Override
+    public <T extends Ticket> T getTicket(final String ticketId, final Class<T> clazz) {
+        Assert.notNull(clazz, "clazz cannot be null");
+
+        final Ticket ticket = getTicket(ticketId);
+        if (ticket == null) {
+            return null;
+        }
+
+        if (!clazz.isAssignableFrom(ticket.getClass())) {
+            throw new ClassCastException("Ticket [" + ticket.getId()
+                    + " is of type " + ticket.getClass()
+                    + " when we were expecting " + clazz);
+        }
+        return (T) ticket;
+    }
+
+    @Override
+    public Ticket getTicket(final String ticketId) {
+        if (ticketId == null || !isCacheable(ticketId)) {
+            return this.ticketRegistry.getTicket(ticketId);
+        }
+
+        final String key = getCacheKey(ticketId);
+        final Ticket cached = getCachedTicket(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final long invalidation = getInvalidation(key);
+        final Ticket ticket = this.ticketRegistry.getTicket(ticketId);
+        if (ticket != null && isCacheable(ticket)) {
+            cache(key, ticket, invalidation);
+        }
+        return ticket;
+    }
+
+    @Override
+    public Collection<Ticket> getTickets(final Collection<String> ticketIds) {
+        final List<Ticket> tickets = new ArrayList<>(ticketIds.size());
+        final List<String> missing = new ArrayList<>();
+        final Map<String, Long> invalidations = new HashMap<>();
+        for (final String ticketId : ticketIds) {
+            final String key = getCacheKey(ticketId);
+            final Ticket cached = isCacheable(ticketId) ? getCachedTicket(key) : null;
+            if (cached != null) {
+                tickets.add(cached);
+            } else {
+                missing.add(ticketId);
+                invalidations.put(ticketId, getInvalidation(key));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (final Ticket ticket : this.ticketRegistry.getTickets(missing)) {
+                final Long invalidation = invalidations.get(ticket.getId());
+                if (invalidation != null && isCacheable(ticket)) {
+                    cache(getCacheKey(ticket.getId()), ticket, invalidation);
+                }
+                tickets.add(ticket);
+            }
+        }
+        return tickets;
+    }
+
+    @Override
+    public Collection<Ticket> getTickets() {
+        return this.ticketRegistry.getTickets();
+    }
+
+    @Override
+    public boolean deleteTicket(final String ticketId) {
+        final boolean result = this.ticketRegistry.deleteTicket(ticketId);
+        invalidateWithChildren(ticketId);
+        return result;
+    }
+
+    @Override
+    public int deleteTickets(final Collection<String> ticketIds) {
+        final int count = this.ticketRegistry.deleteTickets(ticketIds);
+        ticketIds.forEach(this::invalidateWithChildren);
+        return count;
+    }
+
+    @Override
+    public long sessionCount() {
+        if (this.ticketRegistry instanceof TicketRegistryState) {
+            return ((TicketRegistryState) this.ticketRegistry).sessionCount();
+        }
+        return Long.MIN_VALUE;
+    }
+
+    @Override
+    public long serviceTicketCount() {
+        if (this.ticketRegistry instanceof TicketRegistryState) {
+            return ((TicketRegistryState) this.ticketRegistry).serviceTicketCount();
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Drop the cached copy of a ticket.
+     *
+     * @param key the key under which the decorated registry stores the ticket
+     */
+    public void invalidate(final String key) {
+        if (key != null) {
+            this.invalidations.incrementAndGet(getInvalidationStripe(key));
+            this.cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Gets the fraction of cacheable lookups that were served from the cache.
+     *
+     * @return the hit ratio
+     */
+    public double getHitRatio() {
+        return this.cache.stats().hitRate();
+    }
+
+    public TicketRegistry getTicketRegistry() {
+        return this.ticketRegistry;
+    }
+
+    public void setMaximumSize(final long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public void setTimeToLiveInSeconds(final long timeToLiveInSeconds) {
+        this.timeToLiveInSeconds = timeToLiveInSeconds;
+    }
+
+    public void setCacheTicketGrantingTicketsOnly(final boolean cacheTicketGrantingTicketsOnly) {
+        this.cacheTicketGrantingTicketsOnly = cacheTicketGrantingTicketsOnly;
+    }
+
+    private void invalidateWithChildren(final String ticketId) {
+        final String key = getCacheKey(ticketId);
+        final Ticket cached = key == null ? null : getCachedTicket(key);
+        if (cached instanceof TicketGrantingTicket) {
+            final Map<String, ?> services = ((TicketGrantingTicket) cached).getServices();
+            if (services != null) {
+                services.keySet().forEach(id -> invalidate(getCacheKey(id)));
+            }
+            ((TicketGrantingTicket) cached).getProxyGrantingTickets().forEach(pgt -> invalidate(getCacheKey(pgt.getId())));
+        }
+        invalidate(key);
+    }
+
+    /**
+     * Gets a copy of the cached ticket, wrapped the way the decorated registry wraps the tickets it hands out.
+     *
+     * @param key the cache key
+     * @return the ticket, or null if it is not cached
+     */
+    private Ticket getCachedTicket(final String key) {
+        final byte[] bytes = this.cache.getIfPresent(key);
+        if (bytes == null) {
+            return null;
+        }
+        final Ticket ticket = this.ticketSerializer.deserialize(bytes);
+        if (this.ticketRegistry instanceof AbstractTicketRegistry) {
+            return ((AbstractTicketRegistry) this.ticketRegistry).getProxiedTicketInstance(ticket);
+        }
+        return ticket;
+    }
+
+    /**
+     * Cache the ticket read from the decorated registry, unless its stripe was invalidated
+     * since the lookup started. The stripe is checked again once the ticket is cached, so
+     * that an invalidation racing with the lookup cannot leave an outdated copy behind.
+     *
+     * @param key          the cache key
+     * @param ticket       the ticket
+     * @param invalidation the invalidation count of the stripe when the lookup started
+     */
+    private void cache(final String key, final Ticket ticket, final long invalidation) {
+        if (getInvalidation(key) != invalidation) {
+            return;
+        }
+        final Ticket unwrapped = ticket instanceof AbstractTicketDelegator ? ((AbstractTicketDelegator<?>) ticket).getTicket() : ticket;
+        this.cache.put(key, this.ticketSerializer.serialize(unwrapped));
+        if (getInvalidation(key) != invalidation) {
+            this.cache.invalidate(key);
+        }
+    }
+
+    private long getInvalidation(final String key) {
+        return this.invalidations.get(getInvalidationStripe(key));
+    }
+
+    private static int getInvalidationStripe(final String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % INVALIDATION_STRIPES;
+    }
+
+    private boolean isCacheable(final String ticketId) {
+        return !this.cacheTicketGrantingTicketsOnly || ticketId.startsWith(TicketGrantingTicket.PREFIX);
+    }
+
+    private boolean isCacheable(final Ticket ticket) {
+        return !this.cacheTicketGrantingTicketsOnly || ticket instanceof TicketGrantingTicket;
+    }
+
+    /**
+     * Tickets are cached under the key the decorated registry stores them with,
+     * so that changes it publishes can be matched against cached copies.
+     *
+     * @param ticketId the ticket id
+     * @return the cache key
+     */
+    private String getCacheKey(final String ticketId) {
+        if (ticketId != null && this.ticketRegistry instanceof AbstractTicketRegistry) {
+            return ((AbstractTicketRegistry) this.ticketRegistry).encodeTicketId(ticketId);
+        }
+        return ticketId;
+    }
+}
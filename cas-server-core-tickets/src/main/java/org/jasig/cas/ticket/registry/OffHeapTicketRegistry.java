@@ -0,0 +1,251 @@
+package org.jasig.cas.ticket.registry;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteSource;
+import org.apache.commons.lang3.StringUtils;
+import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.Assert;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of the TicketRegistry that keeps serialized tickets in direct memory
+ * on the local node, by way of an {@link OffHeapTicketStore}. Compared to the
+ * {@link DefaultTicketRegistry}, tickets no longer occupy the Java heap, which keeps
+ * garbage collection pauses short regardless of the number of sessions, at the cost of
+ * serializing tickets as they are stored and retrieved. The amount of memory is fixed
+ * up front; tickets that no longer fit are rejected.
+ * <p>
+ * Tickets may optionally be written to a local file as the registry shuts down,
+ * and read back as it starts again, so that sessions survive a restart.
+ * <p>
+ * Since memory is allocated as soon as the registry is created, the registry is not
+ * picked up by component scanning and must be declared as a bean explicitly.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class OffHeapTicketRegistry extends AbstractTicketRegistry {
+
+    /** Default capacity in megabytes. */
+    public static final int DEFAULT_CAPACITY_IN_MEGABYTES = 256;
+
+    /** Default number of segments. */
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private final OffHeapTicketStore store;
+
+    /**
+     * File tickets are written to as the registry shuts down, and read from as it starts.
+     */
+    @Value("${offheap.ticket.registry.snapshot:}")
+    private String snapshotFile;
+
+    @Autowired(required = false)
+    @Qualifier("metrics")
+    private MetricRegistry metricRegistry;
+
+    /**
+     * Instantiates a new off-heap ticket registry.
+     */
+    public OffHeapTicketRegistry() {
+        this(DEFAULT_CAPACITY_IN_MEGABYTES, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * Instantiates a new off-heap ticket registry.
+     *
+     * @param capacityInMegabytes the amount of direct memory in megabytes the registry may use for tickets
+     * @param segments            the number of segments, which may be written to concurrently
+     */
+    @Autowired
+    public OffHeapTicketRegistry(@Value("${offheap.ticket.registry.capacity.mb:256}")
+                                 final int capacityInMegabytes,
+                                 @Value("${offheap.ticket.registry.segments:16}")
+                                 final int segments) {
+        this.store = new OffHeapTicketStore(capacityInMegabytes * BYTES_PER_MEGABYTE, segments);
+    }
+
+    @Override
+    public void addTicket(final Ticket ticket) {
+        Assert.notNull(ticket, "ticket cannot be null");
+
+        final Ticket encodedTicket = encodeTicket(ticket);
+        final byte[] value = isCipherExecutorEnabled()
+                ? ((EncodedTicket) encodedTicket).getEncoded()
+                : getTicketSerializer().serialize(ticket);
+        this.store.put(encodedTicket.getId(), getKind(ticket), TicketExpirationIndex.getEarliestExpirationTime(ticket), value);
+        logger.debug("Added ticket [{}] to registry.", ticket.getId());
+    }
+
+    @Override
+    public Ticket getTicket(final String ticketId) {
+        if (ticketId == null) {
+            return null;
+        }
+        return getProxiedTicketInstance(getStoredTicket(encodeTicketId(ticketId)));
+    }
+
+    /**
+     * Gets the ticket stored under the given key, as is.
+     *
+     * @param key the key, which is the encoded ticket id
+     * @return the ticket, or null
+     */
+    private Ticket getStoredTicket(final String key) {
+        final byte[] value = this.store.get(key);
+        return value == null ? null : deserialize(key, value);
+    }
+
+    private Ticket deserialize(final String key, final byte[] value) {
+        if (isCipherExecutorEnabled()) {
+            return decodeTicket(new EncodedTicket(ByteSource.wrap(value), key));
+        }
+        return getTicketSerializer().deserialize(value);
+    }
+
+    @Override
+    public boolean deleteSingleTicket(final String ticketId) {
+        return this.store.remove(encodeTicketId(ticketId));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Every ticket is deserialized; this should be used sparingly.
+     */
+    @Override
+    public Collection<Ticket> getTickets() {
+        final List<Ticket> tickets = new ArrayList<>();
+        for (int segment = 0; segment < this.store.getSegmentCount(); segment++) {
+            for (final byte[] value : this.store.getValues(segment)) {
+                tickets.add(isCipherExecutorEnabled()
+                        ? decodeTicket(new EncodedTicket(ByteSource.wrap(value), null))
+                        : getTicketSerializer().deserialize(value));
+            }
+        }
+        return tickets;
+    }
+
+    @Override
+    public long sessionCount() {
+        return this.store.count(OffHeapTicketStore.KIND_TICKET_GRANTING_TICKET);
+    }
+
+    @Override
+    public long serviceTicketCount() {
+        return this.store.count(OffHeapTicketStore.KIND_SERVICE_TICKET);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only tickets whose earliest expiration time has passed are deserialized.
+     */
+    @Override
+    protected int cleanupExpiredTickets() {
+        final long start = System.currentTimeMillis();
+        int count = 0;
+        for (int segment = 0; segment < this.store.getSegmentCount(); segment++) {
+            final List<String> due = this.store.getDueKeys(segment, start);
+            for (final List<String> keys : Lists.partition(due, getCleanerBatchSize())) {
+                logger.debug("Examining {} ticket(s) that may have expired", keys.size());
+                final List<Ticket> expired = keys.stream()
+                        .map(this::getStoredTicket)
+                        .filter(Objects::nonNull)
+                        .filter(Ticket::isExpired)
+                        .collect(Collectors.toList());
+                count += cleanupExpiredTickets(expired);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    protected void updateTicket(final Ticket ticket) {
+        addTicket(ticket);
+    }
+
+    @Override
+    protected boolean needsCallback() {
+        return true;
+    }
+
+    /**
+     * Read the tickets written to the snapshot file, if any. The file is removed
+     * once read, such that tickets removed afterwards do not reappear after a crash.
+     *
+     * @throws IOException if the snapshot cannot be read
+     */
+    @PostConstruct
+    public void loadSnapshot() throws IOException {
+        final Path file = getSnapshotPath();
+        if (file != null && Files.exists(file)) {
+            final long start = System.currentTimeMillis();
+            final long count = this.store.readSnapshot(file);
+            Files.delete(file);
+            logger.info("Read {} ticket(s) from {} in {} ms", count, file, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Write all tickets to the snapshot file, if one is configured.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    @PreDestroy
+    public void saveSnapshot() throws IOException {
+        final Path file = getSnapshotPath();
+        if (file != null) {
+            final long start = System.currentTimeMillis();
+            final long count = this.store.writeSnapshot(file);
+            logger.info("Wrote {} ticket(s) to {} in {} ms", count, file, System.currentTimeMillis() - start);
+        }
+    }
+
+    private Path getSnapshotPath() {
+        return StringUtils.isBlank(this.snapshotFile) ? null : Paths.get(this.snapshotFile);
+    }
+
+    public void setSnapshotFile(final String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    @Override
+    public void registerMetrics() {
+        super.registerMetrics();
+        if (this.metricRegistry != null) {
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "OFF_HEAP_USED_BYTES"),
+                    (Gauge<Long>) this.store::getUsedBytes);
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "OFF_HEAP_CAPACITY_BYTES"),
+                    (Gauge<Long>) this.store::getCapacity);
+        }
+    }
+
+    private static byte getKind(final Ticket ticket) {
+        if (ticket instanceof TicketGrantingTicket) {
+            return OffHeapTicketStore.KIND_TICKET_GRANTING_TICKET;
+        }
+        if (ticket instanceof ServiceTicket) {
+            return OffHeapTicketStore.KIND_SERVICE_TICKET;
+        }
+        return OffHeapTicketStore.KIND_OTHER;
+    }
+}
@@ -0,0 +1,609 @@
+package org.jasig.cas.ticket.registry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps serialized tickets in direct memory, outside of the Java heap, such that
+ * the number of tickets does not add to the work of the garbage collector.
+ * <p>
+ * The store is split into segments, each of which owns a fixed-size slab of memory
+ * to which entries are appended, and an open-addressing index of the entries keyed by
+ * the hash of their key. Replaced and removed entries leave holes in the slab, which
+ * are reclaimed by compacting the slab in place once it fills up. Each entry records
+ * the kind of ticket it holds and the time at which it becomes due for examination by
+ * the cleaner, so that neither counting nor cleaning requires deserializing tickets.
+ * Once a segment cannot make room for an entry, it is rejected: the capacity of the
+ * store is bounded.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class OffHeapTicketStore {
+
+    /** Kind of entries that hold neither ticket-granting nor service tickets. */
+    public static final byte KIND_OTHER = 0;
+
+    /** Kind of entries that hold ticket-granting tickets, including proxy-granting tickets. */
+    public static final byte KIND_TICKET_GRANTING_TICKET = 1;
+
+    /** Kind of entries that hold service tickets, including proxy tickets. */
+    public static final byte KIND_SERVICE_TICKET = 2;
+
+    private static final int KINDS = 3;
+
+    /*
+     * Entry layout: total length (negative once the entry is dead), key hash,
+     * due time, kind, key length and value length, followed by the key and value.
+     */
+    private static final int HASH_OFFSET = 4;
+
+    private static final int DUE_TIME_OFFSET = 8;
+
+    private static final int KIND_OFFSET = 16;
+
+    private static final int KEY_LENGTH_OFFSET = 17;
+
+    private static final int VALUE_LENGTH_OFFSET = 21;
+
+    private static final int HEADER_SIZE = 25;
+
+    /* Index slots hold the key hash and the entry offset plus one; zero marks an empty slot. */
+    private static final int SLOT_SIZE = 8;
+
+    private static final int REF_OFFSET = 4;
+
+    private static final int EMPTY = 0;
+
+    private static final int TOMBSTONE = -1;
+
+    private static final int INITIAL_SLOTS = 1024;
+
+    private static final float MAX_LOAD_FACTOR = 0.75f;
+
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    private static final int HASH_SHIFT = 16;
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private static final int SNAPSHOT_MAGIC = 0x43415354;
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final Segment[] segments;
+
+    /**
+     * Instantiates a new store.
+     *
+     * @param capacity     the number of bytes of direct memory the store may use for entries
+     * @param segmentCount the number of segments, which may be written to concurrently
+     */
+    public OffHeapTicketStore(final long capacity, final int segmentCount) {
+        if (segmentCount <= 0) {
+            throw new IllegalArgumentException("The number of segments must be positive");
+        }
+        final long segmentCapacity = capacity / segmentCount;
+        if (segmentCapacity <= HEADER_SIZE || segmentCapacity > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The capacity of each segment must be between "
+                    + HEADER_SIZE + " and " + Integer.MAX_VALUE + " bytes");
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment((int) segmentCapacity);
+        }
+    }
+
+    /**
+     * Store the value under the given key, replacing any previous value.
+     *
+     * @param key     the key
+     * @param kind    the kind of ticket held by the value
+     * @param dueTime the time in milliseconds at which the entry becomes due for examination
+     * @param value   the value
+     * @return true, if the key was not present before
+     * @throws IllegalStateException if there is no room left for the entry
+     */
+    public boolean put(final String key, final byte kind, final long dueTime, final byte[] value) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(keyBytes);
+        return segmentFor(hash).put(keyBytes, hash, kind, dueTime, value);
+    }
+
+    /**
+     * Gets the value stored under the given key.
+     *
+     * @param key the key
+     * @return the value, or null
+     */
+    public byte[] get(final String key) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(keyBytes);
+        return segmentFor(hash).get(keyBytes, hash);
+    }
+
+    /**
+     * Remove the value stored under the given key.
+     *
+     * @param key the key
+     * @return true, if the key was present
+     */
+    public boolean remove(final String key) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(keyBytes);
+        return segmentFor(hash).remove(keyBytes, hash);
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        for (final Segment segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return the size
+     */
+    public long size() {
+        long size = 0;
+        for (final Segment segment : this.segments) {
+            size += segment.count(-1);
+        }
+        return size;
+    }
+
+    /**
+     * Gets the number of entries of the given kind.
+     *
+     * @param kind the kind
+     * @return the number of entries
+     */
+    public long count(final byte kind) {
+        long count = 0;
+        for (final Segment segment : this.segments) {
+            count += segment.count(kind);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of bytes taken up by entries, including the holes left by
+     * replaced and removed entries that have not been compacted yet.
+     *
+     * @return the used bytes
+     */
+    public long getUsedBytes() {
+        long used = 0;
+        for (final Segment segment : this.segments) {
+            used += segment.getUsedBytes();
+        }
+        return used;
+    }
+
+    /**
+     * Gets the number of bytes the store may use for entries.
+     *
+     * @return the capacity
+     */
+    public long getCapacity() {
+        return (long) this.segments[0].data.capacity() * this.segments.length;
+    }
+
+    public int getSegmentCount() {
+        return this.segments.length;
+    }
+
+    /**
+     * Gets the keys of the entries of a segment that are due for examination at the given time.
+     *
+     * @param segment the segment index
+     * @param now     the current time in milliseconds
+     * @return the due keys
+     */
+    public List<String> getDueKeys(final int segment, final long now) {
+        final List<String> keys = new ArrayList<>();
+        this.segments[segment].forEach(offset -> {
+            if (this.segments[segment].data.getLong(offset + DUE_TIME_OFFSET) <= now) {
+                keys.add(new String(this.segments[segment].readKey(offset), StandardCharsets.UTF_8));
+            }
+        });
+        return keys;
+    }
+
+    /**
+     * Gets the values of all entries of a segment.
+     *
+     * @param segment the segment index
+     * @return the values
+     */
+    public List<byte[]> getValues(final int segment) {
+        final List<byte[]> values = new ArrayList<>();
+        this.segments[segment].forEach(offset -> values.add(this.segments[segment].readValue(offset)));
+        return values;
+    }
+
+    /**
+     * Write all entries to the given file, replacing it once complete.
+     *
+     * @param file the file
+     * @return the number of entries written
+     * @throws IOException if the file cannot be written
+     */
+    public long writeSnapshot(final Path file) throws IOException {
+        final Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        long count = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            for (final Segment segment : this.segments) {
+                count += segment.writeTo(out);
+            }
+            out.writeInt(-1);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Read the entries of a snapshot written by {@link #writeSnapshot(Path)} into the store.
+     *
+     * @param file the file
+     * @return the number of entries read
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public long readSnapshot(final Path file) throws IOException {
+        long count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() > SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported snapshot format in " + file);
+            }
+            for (int keyLength = in.readInt(); keyLength >= 0; keyLength = in.readInt()) {
+                final byte[] key = new byte[keyLength];
+                in.readFully(key);
+                final byte kind = in.readByte();
+                final long dueTime = in.readLong();
+                final byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                final int hash = hash(key);
+                segmentFor(hash).put(key, hash, kind, dueTime, value);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Segment segmentFor(final int hash) {
+        return this.segments[(hash >>> HASH_SHIFT) % this.segments.length];
+    }
+
+    private static int hash(final byte[] key) {
+        final int hash = Arrays.hashCode(key) * HASH_MULTIPLIER;
+        return hash ^ (hash >>> HASH_SHIFT);
+    }
+
+    /**
+     * Visits the offsets of the live entries of a segment.
+     */
+    @FunctionalInterface
+    private interface EntryVisitor {
+        void visit(int offset) throws IOException;
+    }
+
+    /**
+     * A slab of entries along with their index, guarded by a read-write lock.
+     */
+    private static final class Segment {
+
+        private final ByteBuffer data;
+
+        private final Lock readLock;
+
+        private final Lock writeLock;
+
+        private final int[] kindCounts = new int[KINDS];
+
+        private ByteBuffer index;
+
+        private int mask;
+
+        private int usedSlots;
+
+        private int size;
+
+        private int writePosition;
+
+        Segment(final int capacity) {
+            this.data = ByteBuffer.allocateDirect(capacity);
+            final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+            this.readLock = lock.readLock();
+            this.writeLock = lock.writeLock();
+            resetIndex(INITIAL_SLOTS);
+        }
+
+        boolean put(final byte[] key, final int hash, final byte kind, final long dueTime, final byte[] value) {
+            final long entrySize = (long) HEADER_SIZE + key.length + value.length;
+            this.writeLock.lock();
+            try {
+                if (this.writePosition + entrySize > this.data.capacity()) {
+                    compact();
+                    if (this.writePosition + entrySize > this.data.capacity()) {
+                        throw new IllegalStateException("No room left in the off-heap ticket store for an entry of "
+                                + entrySize + " bytes");
+                    }
+                }
+                final int offset = this.writePosition;
+                this.data.putInt(offset, (int) entrySize);
+                this.data.putInt(offset + HASH_OFFSET, hash);
+                this.data.putLong(offset + DUE_TIME_OFFSET, dueTime);
+                this.data.put(offset + KIND_OFFSET, kind);
+                this.data.putInt(offset + KEY_LENGTH_OFFSET, key.length);
+                this.data.putInt(offset + VALUE_LENGTH_OFFSET, value.length);
+                final ByteBuffer target = this.data.duplicate();
+                target.position(offset + HEADER_SIZE);
+                target.put(key);
+                target.put(value);
+                this.writePosition += (int) entrySize;
+                this.kindCounts[kind]++;
+
+                final int slot = find(key, hash);
+                if (slot >= 0) {
+                    release(getRef(slot) - 1);
+                    setRef(slot, offset + 1);
+                    return false;
+                }
+                if (this.usedSlots + 1 > (this.mask + 1) * MAX_LOAD_FACTOR) {
+                    rehash(Math.max(INITIAL_SLOTS, Integer.highestOneBit((this.size + 1) * 2) << 1));
+                }
+                insert(hash, offset + 1);
+                this.size++;
+                return true;
+            } finally {
+                this.writeLock.unlock();
+            }
+        }
+
+        byte[] get(final byte[] key, final int hash) {
+            this.readLock.lock();
+            try {
+                final int slot = find(key, hash);
+                return slot < 0 ? null : readValue(getRef(slot) - 1);
+            } finally {
+                this.readLock.unlock();
+            }
+        }
+
+        boolean remove(final byte[] key, final int hash) {
+            this.writeLock.lock();
+            try {
+                final int slot = find(key, hash);
+                if (slot < 0) {
+                    return false;
+                }
+                release(getRef(slot) - 1);
+                setRef(slot, TOMBSTONE);
+                this.size--;
+                if (this.size == 0) {
+                    this.writePosition = 0;
+                }
+                return true;
+            } finally {
+                this.writeLock.unlock();
+            }
+        }
+
+        void clear() {
+            this.writeLock.lock();
+            try {
+                this.writePosition = 0;
+                this.size = 0;
+                Arrays.fill(this.kindCounts, 0);
+                resetIndex(INITIAL_SLOTS);
+            } finally {
+                this.writeLock.unlock();
+            }
+        }
+
+        int count(final int kind) {
+            this.readLock.lock();
+            try {
+                return kind < 0 ? this.size : this.kindCounts[kind];
+            } finally {
+                this.readLock.unlock();
+            }
+        }
+
+        int getUsedBytes() {
+            this.readLock.lock();
+            try {
+                return this.writePosition;
+            } finally {
+                this.readLock.unlock();
+            }
+        }
+
+        void forEach(final EntryVisitor visitor) {
+            this.readLock.lock();
+            try {
+                for (int offset = 0; offset < this.writePosition; offset += Math.abs(this.data.getInt(offset))) {
+                    if (this.data.getInt(offset) > 0) {
+                        visitor.visit(offset);
+                    }
+                }
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                this.readLock.unlock();
+            }
+        }
+
+        long writeTo(final DataOutputStream out) throws IOException {
+            final long[] count = new long[1];
+            try {
+                forEach(offset -> {
+                    final byte[] key = readKey(offset);
+                    out.writeInt(key.length);
+                    out.write(key);
+                    out.writeByte(this.data.get(offset + KIND_OFFSET));
+                    out.writeLong(this.data.getLong(offset + DUE_TIME_OFFSET));
+                    final byte[] value = readValue(offset);
+                    out.writeInt(value.length);
+                    out.write(value);
+                    count[0]++;
+                });
+            } catch (final IllegalStateException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            }
+            return count[0];
+        }
+
+        byte[] readKey(final int offset) {
+            final byte[] key = new byte[this.data.getInt(offset + KEY_LENGTH_OFFSET)];
+            final ByteBuffer source = this.data.duplicate();
+            source.position(offset + HEADER_SIZE);
+            source.get(key);
+            return key;
+        }
+
+        byte[] readValue(final int offset) {
+            final byte[] value = new byte[this.data.getInt(offset + VALUE_LENGTH_OFFSET)];
+            final ByteBuffer source = this.data.duplicate();
+            source.position(offset + HEADER_SIZE + this.data.getInt(offset + KEY_LENGTH_OFFSET));
+            source.get(value);
+            return value;
+        }
+
+        private int find(final byte[] key, final int hash) {
+            for (int slot = hash & this.mask;; slot = (slot + 1) & this.mask) {
+                final int ref = getRef(slot);
+                if (ref == EMPTY) {
+                    return -1;
+                }
+                if (ref != TOMBSTONE && this.index.getInt(slot * SLOT_SIZE) == hash && keyEquals(ref - 1, key)) {
+                    return slot;
+                }
+            }
+        }
+
+        private boolean keyEquals(final int offset, final byte[] key) {
+            if (this.data.getInt(offset + KEY_LENGTH_OFFSET) != key.length) {
+                return false;
+            }
+            final int start = offset + HEADER_SIZE;
+            for (int i = 0; i < key.length; i++) {
+                if (this.data.get(start + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void insert(final int hash, final int ref) {
+            int slot = hash & this.mask;
+            while (getRef(slot) != EMPTY && getRef(slot) != TOMBSTONE) {
+                slot = (slot + 1) & this.mask;
+            }
+            if (getRef(slot) == EMPTY) {
+                this.usedSlots++;
+            }
+            this.index.putInt(slot * SLOT_SIZE, hash);
+            setRef(slot, ref);
+        }
+
+        private void release(final int offset) {
+            final int length = this.data.getInt(offset);
+            this.data.putInt(offset, -length);
+            this.kindCounts[this.data.get(offset + KIND_OFFSET)]--;
+        }
+
+        /**
+         * Slide live entries towards the start of the slab, over the holes left by dead entries,
+         * and point the index at their new offsets.
+         */
+        private void compact() {
+            final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int write = 0;
+            int read = 0;
+            while (read < this.writePosition) {
+                final int length = this.data.getInt(read);
+                if (length < 0) {
+                    read -= length;
+                    continue;
+                }
+                if (read != write) {
+                    move(read, write, length, buffer);
+                    relink(this.data.getInt(write + HASH_OFFSET), read + 1, write + 1);
+                }
+                read += length;
+                write += length;
+            }
+            this.writePosition = write;
+        }
+
+        private void move(final int from, final int to, final int length, final byte[] buffer) {
+            final ByteBuffer source = this.data.duplicate();
+            final ByteBuffer target = this.data.duplicate();
+            source.position(from);
+            target.position(to);
+            for (int remaining = length; remaining > 0;) {
+                final int count = Math.min(remaining, buffer.length);
+                source.get(buffer, 0, count);
+                target.put(buffer, 0, count);
+                remaining -= count;
+            }
+        }
+
+        private void relink(final int hash, final int oldRef, final int newRef) {
+            int slot = hash & this.mask;
+            while (getRef(slot) != oldRef) {
+                slot = (slot + 1) & this.mask;
+            }
+            setRef(slot, newRef);
+        }
+
+        private void rehash(final int slots) {
+            final ByteBuffer previous = this.index;
+            final int previousSlots = this.mask + 1;
+            resetIndex(slots);
+            for (int slot = 0; slot < previousSlots; slot++) {
+                final int ref = previous.getInt(slot * SLOT_SIZE + REF_OFFSET);
+                if (ref > 0) {
+                    insert(previous.getInt(slot * SLOT_SIZE), ref);
+                }
+            }
+        }
+
+        private void resetIndex(final int slots) {
+            this.index = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+            this.mask = slots - 1;
+            this.usedSlots = 0;
+        }
+
+        private int getRef(final int slot) {
+            return this.index.getInt(slot * SLOT_SIZE + REF_OFFSET);
+        }
+
+        private void setRef(final int slot, final int ref) {
+            this.index.putInt(slot * SLOT_SIZE + REF_OFFSET, ref);
+        }
+    }
+}
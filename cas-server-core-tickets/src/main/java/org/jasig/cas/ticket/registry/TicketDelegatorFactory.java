@@ -0,0 +1,26 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.ticket.Ticket;
+
+/**
+ * Creates the {@link AbstractTicketDelegator} that wraps a ticket
+ * retrieved from a ticket registry. Implementations are typically
+ * constructor references of the delegator classes.
+ *
+ * @param <T> the ticket type
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+@FunctionalInterface
+public interface TicketDelegatorFactory<T extends Ticket> {
+
+    /**
+     * Wrap the given ticket in a delegator.
+     *
+     * @param ticketRegistry the ticket registry that owns the ticket
+     * @param ticket         the ticket
+     * @param callback       whether the delegator should call back into the registry
+     * @return the ticket delegator
+     */
+    AbstractTicketDelegator<T> create(AbstractTicketRegistry ticketRegistry, T ticket, boolean callback);
+}
@@ -0,0 +1,174 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.ticket.ExpirationPolicy;
+import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.ticket.TicketState;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Keeps the identifiers of the tickets held by a registry ordered by the earliest
+ * time at which each ticket could have expired, as reported by
+ * {@link ExpirationPolicy#getEarliestExpirationTime(TicketState)}. The registry cleaner
+ * can then poll only those tickets that are due for examination, rather than walking
+ * every ticket in the registry. Tickets whose earliest expiration time cannot be
+ * determined are due as soon as they are indexed.
+ * <p>
+ * The index is lock-free. Each ticket has at most one current entry; entries that were
+ * superseded by a concurrent update are discarded when they are polled.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class TicketExpirationIndex {
+
+    private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    private final Map<String, Long> expirationTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Index the ticket, so that it becomes due once it could have expired.
+     *
+     * @param ticket the ticket
+     */
+    public void add(final Ticket ticket) {
+        add(ticket, System.currentTimeMillis());
+    }
+
+    /**
+     * Index the ticket, so that it becomes due once it could have expired
+     * but no sooner than the given time. Re-indexing a ticket replaces its previous entry.
+     *
+     * @param ticket    the ticket
+     * @param notBefore the time in milliseconds before which the ticket should not be due
+     */
+    public void add(final Ticket ticket, final long notBefore) {
+        final long time = Math.max(getEarliestExpirationTime(ticket), notBefore);
+        final String id = ticket.getId();
+        final Long previous = this.expirationTimes.put(id, time);
+        if (previous != null) {
+            if (previous == time) {
+                return;
+            }
+            this.entries.remove(new Entry(previous, id));
+        }
+        this.entries.add(new Entry(time, id));
+    }
+
+    /**
+     * Remove the ticket from the index.
+     *
+     * @param ticketId the ticket id
+     */
+    public void remove(final String ticketId) {
+        final Long previous = this.expirationTimes.remove(ticketId);
+        if (previous != null) {
+            this.entries.remove(new Entry(previous, ticketId));
+        }
+    }
+
+    /**
+     * Remove and return the identifiers of tickets that are due at the given time,
+     * earliest first. Callers are expected to {@link #add(Ticket, long) re-index}
+     * polled tickets that turn out not to have expired.
+     *
+     * @param now        the current time in milliseconds
+     * @param maxTickets the maximum number of ticket ids to return
+     * @return the due ticket ids
+     */
+    public List<String> poll(final long now, final int maxTickets) {
+        final List<String> due = new ArrayList<>(Math.min(maxTickets, this.expirationTimes.size()));
+        while (due.size() < maxTickets) {
+            final Entry entry = this.entries.pollFirst();
+            if (entry == null) {
+                break;
+            }
+            if (entry.time > now) {
+                this.entries.add(entry);
+                break;
+            }
+            if (this.expirationTimes.remove(entry.ticketId, entry.time)) {
+                due.add(entry.ticketId);
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Gets the time at which the earliest indexed ticket becomes due.
+     *
+     * @return the time in milliseconds, or {@link Long#MAX_VALUE} if the index is empty
+     */
+    public long getEarliestDueTime() {
+        final Entry first = this.entries.isEmpty() ? null : this.entries.first();
+        return first == null ? Long.MAX_VALUE : first.time;
+    }
+
+    /**
+     * Gets the number of indexed tickets.
+     *
+     * @return the size
+     */
+    public int size() {
+        return this.expirationTimes.size();
+    }
+
+    /**
+     * Remove all tickets from the index.
+     */
+    public void clear() {
+        this.expirationTimes.clear();
+        this.entries.clear();
+    }
+
+    /**
+     * Gets the earliest time at which the ticket could have expired.
+     *
+     * @param ticket the ticket
+     * @return the time in milliseconds, or {@link Long#MIN_VALUE} if it cannot be determined
+     */
+    static long getEarliestExpirationTime(final Ticket ticket) {
+        final ExpirationPolicy policy = ticket.getExpirationPolicy();
+        if (policy == null || !(ticket instanceof TicketState)) {
+            return Long.MIN_VALUE;
+        }
+        final ZonedDateTime time = policy.getEarliestExpirationTime((TicketState) ticket);
+        return time == null ? Long.MIN_VALUE : time.toInstant().toEpochMilli();
+    }
+
+    /**
+     * An indexed ticket, ordered by expiration time and then by id.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        private final long time;
+
+        private final String ticketId;
+
+        Entry(final long time, final String ticketId) {
+            this.time = time;
+            this.ticketId = ticketId;
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            final int result = Long.compare(this.time, other.time);
+            return result != 0 ? result : this.ticketId.compareTo(other.ticketId);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof Entry && compareTo((Entry) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.time) * 31 + this.ticketId.hashCode();
+        }
+    }
+}
@@ -55,7 +55,7 @@ public class TicketGrantingTicketDelegator<T extends TicketGrantingTicket> exten
                                             final boolean onlyTrackMostRecentSession) {
         final ServiceTicket t = this.getTicket().grantServiceTicket(id, service,
                 expirationPolicy, credentialsProvided, onlyTrackMostRecentSession);
-        updateTicket();
+        getTicketRegistry().updateTicketGrantingTicket(this.getTicket(), t.getId(), service, onlyTrackMostRecentSession);
         return t;
     }
 
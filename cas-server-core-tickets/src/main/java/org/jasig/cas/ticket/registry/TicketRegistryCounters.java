@@ -0,0 +1,118 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of the number of tickets held by a ticket registry, per concrete
+ * ticket type. Counters are striped so that concurrent updates from many request
+ * threads do not contend, and reading them does not require walking the registry.
+ * Registries are expected to call {@link #increment(Ticket)} and {@link #decrement(Ticket)}
+ * as tickets are added, and as they are removed, expire or get evicted.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class TicketRegistryCounters {
+
+    private final Map<Class<? extends Ticket>, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Record a ticket that was added to the registry.
+     *
+     * @param ticket the ticket
+     */
+    public void increment(final Ticket ticket) {
+        if (ticket != null) {
+            increment(ticket.getClass());
+        }
+    }
+
+    /**
+     * Record a ticket of the given type that was added to the registry,
+     * for registries that know the type of a ticket without having the ticket at hand.
+     *
+     * @param type the ticket type
+     */
+    public void increment(final Class<? extends Ticket> type) {
+        if (type != null) {
+            getCounter(type).increment();
+        }
+    }
+
+    /**
+     * Record a ticket that was removed from the registry.
+     *
+     * @param ticket the ticket
+     */
+    public void decrement(final Ticket ticket) {
+        if (ticket != null) {
+            decrement(ticket.getClass());
+        }
+    }
+
+    /**
+     * Record a ticket of the given type that was removed from the registry.
+     *
+     * @param type the ticket type
+     */
+    public void decrement(final Class<? extends Ticket> type) {
+        if (type != null) {
+            getCounter(type).decrement();
+        }
+    }
+
+    /**
+     * Reset all counters, typically when the registry is cleared.
+     */
+    public void reset() {
+        this.counters.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * Count the tickets of the given type, including its subtypes.
+     *
+     * @param type the ticket type
+     * @return the number of tickets
+     */
+    public long count(final Class<? extends Ticket> type) {
+        long count = 0;
+        for (final Map.Entry<Class<? extends Ticket>, LongAdder> entry : this.counters.entrySet()) {
+            if (type.isAssignableFrom(entry.getKey())) {
+                count += entry.getValue().sum();
+            }
+        }
+        return Math.max(count, 0);
+    }
+
+    /**
+     * Count the ticket-granting tickets, and thus sessions.
+     *
+     * @return the number of sessions
+     */
+    public long sessionCount() {
+        return count(TicketGrantingTicket.class);
+    }
+
+    /**
+     * Count the service tickets.
+     *
+     * @return the number of service tickets
+     */
+    public long serviceTicketCount() {
+        return count(ServiceTicket.class);
+    }
+
+    private LongAdder getCounter(final Class<? extends Ticket> type) {
+        final LongAdder counter = this.counters.get(type);
+        if (counter != null) {
+            return counter;
+        }
+        return this.counters.computeIfAbsent(type, k -> new LongAdder());
+    }
+}
@@ -0,0 +1,29 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.ticket.Ticket;
+
+/**
+ * Converts tickets to and from the bytes that ticket registries store,
+ * for instance when tickets are encrypted before they leave the server.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public interface TicketSerializer {
+
+    /**
+     * Serialize the ticket.
+     *
+     * @param ticket the ticket
+     * @return the serialized ticket
+     */
+    byte[] serialize(Ticket ticket);
+
+    /**
+     * Deserialize a ticket.
+     *
+     * @param bytes the serialized ticket
+     * @return the ticket
+     */
+    Ticket deserialize(byte[] bytes);
+}
@@ -66,6 +66,14 @@ public final class HardTimeoutExpirationPolicy extends AbstractCasExpirationPoli
           .plus(this.timeToKillInMilliSeconds, ChronoUnit.MILLIS).isBefore(ZonedDateTime.now(ZoneOffset.UTC));
     }
 
+    @Override
+    public ZonedDateTime getEarliestExpirationTime(final TicketState ticketState) {
+        if (ticketState == null) {
+            return null;
+        }
+        return ticketState.getCreationTime().plus(this.timeToKillInMilliSeconds, ChronoUnit.MILLIS);
+    }
+
     @Override
     public Long getTimeToLive() {
         return this.timeToKillInMilliSeconds;
@@ -11,6 +11,7 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
+import java.time.ZonedDateTime;
 
 /**
  * Delegates to different expiration policies depending on whether remember me
@@ -77,6 +78,19 @@ public final class RememberMeDelegatingExpirationPolicy extends AbstractCasExpir
         return false;
     }
 
+    @Override
+    public ZonedDateTime getEarliestExpirationTime(final TicketState ticketState) {
+        if (this.rememberMeExpirationPolicy != null && this.sessionExpirationPolicy != null) {
+            final Boolean b = (Boolean) ticketState.getAuthentication().getAttributes().
+                    get(RememberMeCredential.AUTHENTICATION_ATTRIBUTE_REMEMBER_ME);
+            if (b == null || b.equals(Boolean.FALSE)) {
+                return this.sessionExpirationPolicy.getEarliestExpirationTime(ticketState);
+            }
+            return this.rememberMeExpirationPolicy.getEarliestExpirationTime(ticketState);
+        }
+        return null;
+    }
+
     @Override
     public Long getTimeToLive() {
         if (this.rememberMeExpirationPolicy != null) {
@@ -84,6 +84,23 @@ public final class TicketGrantingTicketExpirationPolicy extends AbstractCasExpir
         return false;
     }
 
+    @Override
+    public ZonedDateTime getEarliestExpirationTime(final TicketState ticketState) {
+        if (ticketState == null) {
+            return null;
+        }
+        final ZonedDateTime creationTime = ticketState.getCreationTime();
+        final ZonedDateTime slidingWindowEnd = creationTime.plus(this.timeToKillInMilliSeconds, ChronoUnit.MILLIS);
+        if (ticketState.getLastTimeUsed().isAfter(slidingWindowEnd)) {
+            // used after the sliding window closed, so the ticket has expired already
+            return slidingWindowEnd;
+        }
+        // the ticket is reindexed as it is used, so it cannot expire before it has been idle for the time to kill
+        final ZonedDateTime idleExpirationTime = ticketState.getLastTimeUsed().plus(this.timeToKillInMilliSeconds, ChronoUnit.MILLIS);
+        final ZonedDateTime hardExpirationTime = creationTime.plus(this.maxTimeToLiveInMilliSeconds, ChronoUnit.MILLIS);
+        return idleExpirationTime.isBefore(hardExpirationTime) ? idleExpirationTime : hardExpirationTime;
+    }
+
     @Override
     public Long getTimeToLive() {
         return this.maxTimeToLiveInMilliSeconds;
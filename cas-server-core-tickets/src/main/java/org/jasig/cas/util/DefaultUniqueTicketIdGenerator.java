@@ -10,8 +10,8 @@ import org.springframework.stereotype.Component;
 
 /**
  * Default implementation of {@link UniqueTicketIdGenerator}. Implementation
- * utilizes a DefaultLongNumericGeneraor and a DefaultRandomStringGenerator to
- * construct the ticket id.
+ * utilizes a {@link StripedLongNumericGenerator} and a {@link BufferedRandomStringGenerator}
+ * to construct the ticket id, so that ids can be generated from many threads without contention.
  * <p>
  * Tickets are of the form [PREFIX]-[SEQUENCE NUMBER]-[RANDOM STRING]-[SUFFIX]
  * </p>
@@ -38,7 +38,7 @@ public class DefaultUniqueTicketIdGenerator implements UniqueTicketIdGenerator {
 
     /**
      * Creates an instance of DefaultUniqueTicketIdGenerator with default values
-     * including a {@link DefaultLongNumericGenerator} with a starting value of
+     * including a {@link StripedLongNumericGenerator} with a starting value of
      * 1.
      */
     public DefaultUniqueTicketIdGenerator() {
@@ -119,8 +119,8 @@ public class DefaultUniqueTicketIdGenerator implements UniqueTicketIdGenerator {
      * @param maxLength the max length
      */
     public void setMaxLength(final int maxLength) {
-        this.randomStringGenerator = new DefaultRandomStringGenerator(maxLength);
-        this.numericGenerator = new DefaultLongNumericGenerator(1);
+        this.randomStringGenerator = new BufferedRandomStringGenerator(maxLength);
+        this.numericGenerator = new StripedLongNumericGenerator(1);
     }
 
     /**
@@ -11,7 +11,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -239,4 +241,26 @@ public abstract class AbstractTicketRegistryTests {
         }
     }
 
+    @Test
+    public void verifyBulkOperations() {
+        final List<Ticket> tickets = new ArrayList<>();
+        final List<String> tgtIds = new ArrayList<>();
+        for (int i = 0; i < TICKETS_IN_REGISTRY; i++) {
+            final TicketGrantingTicket tgt = new TicketGrantingTicketImpl("TGT-BULK" + i,
+                    org.jasig.cas.authentication.TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy());
+            tickets.add(tgt);
+            tickets.add(tgt.grantServiceTicket("ST-BULK" + i, org.jasig.cas.services.TestUtils.getService(),
+                    new NeverExpiresExpirationPolicy(), false, true));
+            tgtIds.add(tgt.getId());
+        }
+        this.ticketRegistry.addTickets(tickets);
+
+        assertEquals(2, this.ticketRegistry.getTickets(Arrays.asList("TGT-BULK0", "ST-BULK1", "UNKNOWN")).size());
+        assertEquals(TICKETS_IN_REGISTRY, this.ticketRegistry.getTickets(tgtIds).size());
+
+        assertEquals(TICKETS_IN_REGISTRY, this.ticketRegistry.deleteTickets(tgtIds));
+        assertTrue(this.ticketRegistry.getTickets(tgtIds).isEmpty());
+        assertNull(this.ticketRegistry.getTicket("ST-BULK0"));
+        assertEquals(0, this.ticketRegistry.deleteTickets(tgtIds));
+    }
 }
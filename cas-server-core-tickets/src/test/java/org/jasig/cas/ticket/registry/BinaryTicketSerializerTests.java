@@ -0,0 +1,132 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.authentication.TestUtils;
+import org.jasig.cas.authentication.principal.Service;
+import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.jasig.cas.ticket.TicketGrantingTicketImpl;
+import org.jasig.cas.ticket.proxy.ProxyGrantingTicket;
+import org.jasig.cas.ticket.support.HardTimeoutExpirationPolicy;
+import org.jasig.cas.ticket.support.MultiTimeUseOrTimeoutExpirationPolicy;
+import org.jasig.cas.ticket.support.NeverExpiresExpirationPolicy;
+import org.jasig.cas.ticket.support.RememberMeDelegatingExpirationPolicy;
+import org.jasig.cas.ticket.support.TicketGrantingTicketExpirationPolicy;
+import org.jasig.cas.util.SerializationUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link BinaryTicketSerializer}.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class BinaryTicketSerializerTests {
+
+    private final BinaryTicketSerializer serializer = new BinaryTicketSerializer();
+
+    @Test
+    public void verifyTicketGrantingTicketRoundTrip() {
+        final TicketGrantingTicket tgt = newTicketGrantingTicket();
+        final Service service = org.jasig.cas.services.TestUtils.getService();
+        tgt.grantServiceTicket("ST-1", service, new NeverExpiresExpirationPolicy(), true, false);
+        tgt.grantServiceTicket("ST-2", service, new NeverExpiresExpirationPolicy(), false, false);
+
+        final TicketGrantingTicket result = (TicketGrantingTicket) roundTrip(tgt);
+        assertEquals(tgt, result);
+        assertEquals(tgt.getAuthentication(), result.getAuthentication());
+        assertEquals(tgt.getAuthentication().getPrincipal().getAttributes(),
+                result.getAuthentication().getPrincipal().getAttributes());
+        assertEquals(tgt.getServices(), result.getServices());
+        assertEquals(tgt.getCreationTime(), result.getCreationTime());
+        assertEquals(tgt.getCountOfUses(), result.getCountOfUses());
+        assertEquals(TicketGrantingTicketExpirationPolicy.class, result.getExpirationPolicy().getClass());
+        assertFalse(result.isExpired());
+    }
+
+    @Test
+    public void verifyServiceTicketRoundTrip() {
+        final TicketGrantingTicket tgt = newTicketGrantingTicket();
+        final ServiceTicket st = tgt.grantServiceTicket("ST-1", org.jasig.cas.services.TestUtils.getService(),
+                new MultiTimeUseOrTimeoutExpirationPolicy.ServiceTicketExpirationPolicy(1, TimeUnit.MINUTES.toMillis(1)),
+                true, false);
+
+        final ServiceTicket result = (ServiceTicket) roundTrip(st);
+        assertEquals(st, result);
+        assertEquals(st.getService(), result.getService());
+        assertTrue(result.isFromNewLogin());
+        assertEquals(tgt, result.getGrantingTicket());
+        assertFalse(result.isExpired());
+        assertTrue(result.isValidFor(st.getService()));
+    }
+
+    @Test
+    public void verifyProxyGrantingTicketGraphRoundTrip() {
+        final TicketGrantingTicket tgt = newTicketGrantingTicket();
+        final ServiceTicket st = tgt.grantServiceTicket("ST-1", org.jasig.cas.services.TestUtils.getService(),
+                new NeverExpiresExpirationPolicy(), true, false);
+        final ProxyGrantingTicket pgt = st.grantProxyGrantingTicket("PGT-1", TestUtils.getAuthentication(),
+                new HardTimeoutExpirationPolicy(1, TimeUnit.HOURS));
+
+        final ProxyGrantingTicket result = (ProxyGrantingTicket) roundTrip(pgt);
+        assertEquals(pgt, result);
+        assertEquals(tgt, result.getGrantingTicket());
+        assertEquals(st.getService(), result.getProxiedBy());
+        assertSame(result, result.getGrantingTicket().getProxyGrantingTickets().iterator().next());
+        assertFalse(result.isExpired());
+    }
+
+    @Test
+    public void verifyDelegatingExpirationPolicyRoundTrip() {
+        final RememberMeDelegatingExpirationPolicy policy = new RememberMeDelegatingExpirationPolicy();
+        policy.setRememberMeExpirationPolicy(new HardTimeoutExpirationPolicy(1, TimeUnit.DAYS));
+        policy.setSessionExpirationPolicy(new HardTimeoutExpirationPolicy(-1, TimeUnit.MINUTES));
+        final TicketGrantingTicket tgt = new TicketGrantingTicketImpl("TGT-1", TestUtils.getAuthentication(), policy);
+
+        final TicketGrantingTicket result = (TicketGrantingTicket) roundTrip(tgt);
+        assertEquals(RememberMeDelegatingExpirationPolicy.class, result.getExpirationPolicy().getClass());
+        assertTrue(result.isExpired());
+    }
+
+    @Test
+    public void verifyJavaSerializedTicketsAreRead() {
+        final TicketGrantingTicket tgt = newTicketGrantingTicket();
+        assertEquals(tgt, this.serializer.deserialize(SerializationUtils.serialize(tgt)));
+        assertEquals(tgt, this.serializer.deserialize(new DefaultTicketSerializer().serialize(tgt)));
+    }
+
+    @Test
+    public void verifyPayloadIsSmallerThanJavaSerialization() {
+        final TicketGrantingTicket tgt = newTicketGrantingTicket();
+        for (int i = 0; i < 5; i++) {
+            tgt.grantServiceTicket("ST-" + i, org.jasig.cas.services.TestUtils.getService(),
+                    new NeverExpiresExpirationPolicy(), false, false);
+        }
+        final int binarySize = this.serializer.serialize(tgt).length;
+        final int javaSize = SerializationUtils.serialize(tgt).length;
+        assertTrue("Binary payload of " + binarySize + " bytes is not smaller than " + javaSize, binarySize * 2 < javaSize);
+    }
+
+    private Ticket roundTrip(final Ticket ticket) {
+        return this.serializer.deserialize(this.serializer.serialize(ticket));
+    }
+
+    private static TicketGrantingTicket newTicketGrantingTicket() {
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("mail", "casuser@example.org");
+        attributes.put("memberOf", new ArrayList<>(Arrays.asList("staff", "faculty")));
+        attributes.put("uidNumber", 1000);
+        return new TicketGrantingTicketImpl("TGT-1",
+                TestUtils.getAuthentication(TestUtils.getPrincipal("casuser", attributes), Collections.emptyMap()),
+                new TicketGrantingTicketExpirationPolicy(8, 2, TimeUnit.HOURS));
+    }
+}
@@ -1,6 +1,18 @@
 package org.jasig.cas.ticket.registry;
 
+import org.jasig.cas.authentication.TestUtils;
+import org.jasig.cas.logout.LogoutManager;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.TicketGrantingTicketImpl;
+import org.jasig.cas.ticket.support.HardTimeoutExpirationPolicy;
+import org.jasig.cas.ticket.support.NeverExpiresExpirationPolicy;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 /**
  * Test case to test the DefaultTicketRegistry based on test cases to test all
@@ -19,4 +31,78 @@ public class DefaultTicketRegistryTests extends AbstractTicketRegistryTests {
     public void verifyOtherConstructor() {
         assertNotNull(new DefaultTicketRegistry(10, 10F, 5));
     }
+
+    @Test
+    public void verifyTicketsAreHandedOutByReference() {
+        final DefaultTicketRegistry registry = new DefaultTicketRegistry();
+        final TicketGrantingTicket tgt = new TicketGrantingTicketImpl("TGT-1",
+                TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy());
+        registry.addTicket(tgt);
+        assertSame(tgt, registry.getTicket(tgt.getId()));
+        assertSame(tgt, registry.getTicket(tgt.getId(), TicketGrantingTicket.class));
+    }
+
+    @Test
+    public void verifyTicketCounts() {
+        final DefaultTicketRegistry registry = new DefaultTicketRegistry();
+        final TicketGrantingTicket tgt = new TicketGrantingTicketImpl("TGT-1",
+                TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy());
+        registry.addTicket(tgt);
+        registry.addTicket(tgt);
+        registry.addTicket(tgt.grantServiceTicket("ST-1", org.jasig.cas.services.TestUtils.getService(),
+                new NeverExpiresExpirationPolicy(), true, false));
+
+        assertEquals(1, registry.sessionCount());
+        assertEquals(1, registry.serviceTicketCount());
+
+        registry.deleteTicket(tgt.getId());
+        assertEquals(0, registry.sessionCount());
+        assertEquals(0, registry.serviceTicketCount());
+    }
+
+    @Test
+    public void verifyCleanupOfIndexedTickets() {
+        final DefaultTicketRegistry registry = new DefaultTicketRegistry();
+        final TicketGrantingTicket tgt = new TicketGrantingTicketImpl("TGT-1",
+                TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy());
+        final ServiceTicket expired = tgt.grantServiceTicket("ST-1", org.jasig.cas.services.TestUtils.getService(),
+                new HardTimeoutExpirationPolicy(-1, TimeUnit.MINUTES), true, false);
+        final ServiceTicket valid = tgt.grantServiceTicket("ST-2", org.jasig.cas.services.TestUtils.getService(),
+                new HardTimeoutExpirationPolicy(1, TimeUnit.HOURS), true, false);
+        final ServiceTicket unknown = tgt.grantServiceTicket("ST-3", org.jasig.cas.services.TestUtils.getService(),
+                new NeverExpiresExpirationPolicy(), true, false);
+        registry.addTicket(expired);
+        registry.addTicket(valid);
+        registry.addTicket(unknown);
+
+        assertTrue(registry.getCleanerLag() > 0);
+        registry.cleanupTickets();
+        assertNull(registry.getTicket(expired.getId()));
+        assertNotNull(registry.getTicket(valid.getId()));
+        assertNotNull(registry.getTicket(unknown.getId()));
+        assertEquals(2, registry.serviceTicketCount());
+
+        registry.cleanupTickets();
+        assertEquals(2, registry.serviceTicketCount());
+    }
+
+    @Test
+    public void verifyCleanupPerformsLogoutForExpiredSessions() {
+        final LogoutManager logoutManager = mock(LogoutManager.class);
+        final DefaultTicketRegistry registry = new DefaultTicketRegistry();
+        registry.setLogoutManager(logoutManager);
+        for (int i = 0; i < 10; i++) {
+            final TicketGrantingTicket tgt = new TicketGrantingTicketImpl("TGT-" + i,
+                    TestUtils.getAuthentication(), new HardTimeoutExpirationPolicy(-1, TimeUnit.MINUTES));
+            registry.addTicket(tgt);
+            registry.addTicket(tgt.grantServiceTicket("ST-" + i, org.jasig.cas.services.TestUtils.getService(),
+                    new NeverExpiresExpirationPolicy(), true, false));
+        }
+
+        registry.cleanupTickets();
+        verify(logoutManager, times(10)).performLogout(any(TicketGrantingTicket.class));
+        assertTrue(registry.getTickets().isEmpty());
+        assertEquals(0, registry.sessionCount());
+        registry.shutdownLogoutExecutor();
+    }
 }
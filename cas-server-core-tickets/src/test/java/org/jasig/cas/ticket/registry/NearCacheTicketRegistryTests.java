@@ -0,0 +1,89 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.authentication.TestUtils;
+import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.jasig.cas.ticket.TicketGrantingTicketImpl;
+import org.jasig.cas.ticket.support.NeverExpiresExpirationPolicy;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit test for {@link NearCacheTicketRegistry}.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class NearCacheTicketRegistryTests {
+
+    private TicketRegistry backingRegistry;
+
+    private NearCacheTicketRegistry registry;
+
+    private TicketGrantingTicket tgt;
+
+    private ServiceTicket st;
+
+    @Before
+    public void setUp() {
+        this.tgt = new TicketGrantingTicketImpl("TGT-1", TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy());
+        this.st = this.tgt.grantServiceTicket("ST-1", org.jasig.cas.services.TestUtils.getService(),
+                new NeverExpiresExpirationPolicy(), true, false);
+
+        this.backingRegistry = mock(TicketRegistry.class);
+        when(this.backingRegistry.getTicket(this.tgt.getId())).thenReturn(this.tgt);
+        when(this.backingRegistry.getTicket(this.st.getId())).thenReturn(this.st);
+
+        this.registry = new NearCacheTicketRegistry(this.backingRegistry);
+        this.registry.initialize();
+    }
+
+    @Test
+    public void verifyTicketGrantingTicketsAreCached() {
+        assertSame(this.tgt, this.registry.getTicket(this.tgt.getId(), TicketGrantingTicket.class));
+        final TicketGrantingTicket cached = this.registry.getTicket(this.tgt.getId(), TicketGrantingTicket.class);
+        assertEquals(this.tgt, cached);
+        assertNotSame(this.tgt, cached);
+        assertNotSame(cached, this.registry.getTicket(this.tgt.getId()));
+        verify(this.backingRegistry, times(1)).getTicket(this.tgt.getId());
+
+        assertSame(this.st, this.registry.getTicket(this.st.getId()));
+        assertSame(this.st, this.registry.getTicket(this.st.getId()));
+        verify(this.backingRegistry, times(2)).getTicket(this.st.getId());
+        assertEquals(2.0 / 3, this.registry.getHitRatio(), 0.001);
+    }
+
+    @Test
+    public void verifyAllTicketsCachedWhenConfigured() {
+        this.registry.setCacheTicketGrantingTicketsOnly(false);
+        this.registry.initialize();
+
+        this.registry.getTicket(this.st.getId());
+        this.registry.getTicket(this.st.getId());
+        verify(this.backingRegistry, times(1)).getTicket(this.st.getId());
+    }
+
+    @Test
+    public void verifyCachedTicketsAreInvalidated() {
+        this.registry.getTicket(this.tgt.getId());
+        this.registry.invalidate(this.tgt.getId());
+        this.registry.getTicket(this.tgt.getId());
+        verify(this.backingRegistry, times(2)).getTicket(this.tgt.getId());
+
+        when(this.backingRegistry.deleteTicket(this.tgt.getId())).thenReturn(true);
+        assertTrue(this.registry.deleteTicket(this.tgt.getId()));
+        when(this.backingRegistry.getTicket(this.tgt.getId())).thenReturn(null);
+        assertNull(this.registry.getTicket(this.tgt.getId()));
+    }
+
+    @Test
+    public void verifyLookupRacingWithUpdateIsNotCached() {
+        doAnswer(invocation -> this.registry.getTicket(this.tgt.getId())).when(this.backingRegistry).addTicket(this.tgt);
+        this.registry.addTicket(this.tgt);
+        this.registry.getTicket(this.tgt.getId());
+        verify(this.backingRegistry, times(2)).getTicket(this.tgt.getId());
+    }
+}
@@ -0,0 +1,93 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.authentication.TestUtils;
+import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.jasig.cas.ticket.TicketGrantingTicketImpl;
+import org.jasig.cas.ticket.support.HardTimeoutExpirationPolicy;
+import org.jasig.cas.ticket.support.NeverExpiresExpirationPolicy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case to test the {@link OffHeapTicketRegistry} based on test cases to test all
+ * Ticket Registries.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class OffHeapTicketRegistryTests extends AbstractTicketRegistryTests {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Override
+    public TicketRegistry getNewTicketRegistry() throws Exception {
+        return new OffHeapTicketRegistry(1, 2);
+    }
+
+    @Test
+    public void verifyTicketsAreStoredByValue() {
+        final OffHeapTicketRegistry registry = new OffHeapTicketRegistry(1, 2);
+        final TicketGrantingTicket tgt = newTicketGrantingTicket("TGT-1");
+        registry.addTicket(tgt);
+        final TicketGrantingTicket result = registry.getTicket(tgt.getId(), TicketGrantingTicket.class);
+        assertNotSame(tgt, result);
+        assertEquals(tgt, result);
+
+        result.grantServiceTicket("ST-1", org.jasig.cas.services.TestUtils.getService(),
+                new NeverExpiresExpirationPolicy(), true, false);
+        assertEquals(1, registry.getTicket(tgt.getId(), TicketGrantingTicket.class).getCountOfUses());
+        assertEquals(1, registry.sessionCount());
+        assertEquals(1, registry.serviceTicketCount());
+    }
+
+    @Test
+    public void verifyCleanupOfDueTickets() {
+        final OffHeapTicketRegistry registry = new OffHeapTicketRegistry(1, 2);
+        final TicketGrantingTicket tgt = newTicketGrantingTicket("TGT-1");
+        final ServiceTicket expired = tgt.grantServiceTicket("ST-1", org.jasig.cas.services.TestUtils.getService(),
+                new HardTimeoutExpirationPolicy(-1, TimeUnit.MINUTES), true, false);
+        final ServiceTicket valid = tgt.grantServiceTicket("ST-2", org.jasig.cas.services.TestUtils.getService(),
+                new HardTimeoutExpirationPolicy(1, TimeUnit.HOURS), true, false);
+        registry.addTicket(tgt);
+        registry.addTicket(expired);
+        registry.addTicket(valid);
+
+        registry.cleanupTickets();
+        assertNull(registry.getTicket(expired.getId()));
+        assertNotNull(registry.getTicket(valid.getId()));
+        assertNotNull(registry.getTicket(tgt.getId()));
+        assertEquals(1, registry.serviceTicketCount());
+        registry.shutdownLogoutExecutor();
+    }
+
+    @Test
+    public void verifyTicketsSurviveRestartWithSnapshot() throws Exception {
+        final File snapshot = new File(this.folder.getRoot(), "tickets.bin");
+        final OffHeapTicketRegistry registry = new OffHeapTicketRegistry(1, 2);
+        registry.setSnapshotFile(snapshot.getAbsolutePath());
+        for (int i = 0; i < 100; i++) {
+            registry.addTicket(newTicketGrantingTicket("TGT-" + i));
+        }
+        registry.saveSnapshot();
+        assertTrue(snapshot.exists());
+
+        final OffHeapTicketRegistry restarted = new OffHeapTicketRegistry(1, 4);
+        restarted.setSnapshotFile(snapshot.getAbsolutePath());
+        restarted.loadSnapshot();
+        assertFalse(snapshot.exists());
+        assertEquals(100, restarted.sessionCount());
+        assertEquals("TGT-42", restarted.getTicket("TGT-42").getId());
+    }
+
+    private static TicketGrantingTicket newTicketGrantingTicket(final String id) {
+        return new TicketGrantingTicketImpl(id, TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy());
+    }
+}
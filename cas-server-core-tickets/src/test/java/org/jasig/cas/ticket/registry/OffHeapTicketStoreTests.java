@@ -0,0 +1,90 @@
+package org.jasig.cas.ticket.registry;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link OffHeapTicketStore}.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class OffHeapTicketStoreTests {
+
+    private static final int CAPACITY = 64 * 1024;
+
+    private static final int NUMBER_OF_ENTRIES = 100000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Test
+    public void verifyEntriesAreReplacedAndRemoved() {
+        final OffHeapTicketStore store = new OffHeapTicketStore(CAPACITY, 2);
+        assertTrue(store.put("TGT-1", OffHeapTicketStore.KIND_TICKET_GRANTING_TICKET, 0, bytes("first")));
+        assertFalse(store.put("TGT-1", OffHeapTicketStore.KIND_TICKET_GRANTING_TICKET, 0, bytes("second")));
+        assertTrue(store.put("ST-1", OffHeapTicketStore.KIND_SERVICE_TICKET, 0, bytes("service")));
+
+        assertEquals("second", new String(store.get("TGT-1"), StandardCharsets.UTF_8));
+        assertEquals(2, store.size());
+        assertEquals(1, store.count(OffHeapTicketStore.KIND_TICKET_GRANTING_TICKET));
+        assertEquals(1, store.count(OffHeapTicketStore.KIND_SERVICE_TICKET));
+
+        assertTrue(store.remove("ST-1"));
+        assertFalse(store.remove("ST-1"));
+        assertNull(store.get("ST-1"));
+        assertEquals(0, store.count(OffHeapTicketStore.KIND_SERVICE_TICKET));
+    }
+
+    @Test
+    public void verifyReplacedEntriesAreCompacted() {
+        final OffHeapTicketStore store = new OffHeapTicketStore(CAPACITY, 1);
+        final byte[] value = new byte[1024];
+        for (int i = 0; i < CAPACITY; i++) {
+            store.put("TGT-" + (i % 10), OffHeapTicketStore.KIND_TICKET_GRANTING_TICKET, i, value);
+        }
+        assertEquals(10, store.size());
+        assertTrue(store.getUsedBytes() <= store.getCapacity());
+        assertArrayEquals(value, store.get("TGT-5"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void verifyCapacityIsBounded() {
+        final OffHeapTicketStore store = new OffHeapTicketStore(CAPACITY, 1);
+        for (int i = 0; i < CAPACITY; i++) {
+            store.put("TGT-" + i, OffHeapTicketStore.KIND_TICKET_GRANTING_TICKET, 0, new byte[1024]);
+        }
+    }
+
+    @Test
+    public void verifyDueKeys() {
+        final OffHeapTicketStore store = new OffHeapTicketStore(CAPACITY, 1);
+        store.put("TGT-due", OffHeapTicketStore.KIND_TICKET_GRANTING_TICKET, 10, bytes("due"));
+        store.put("TGT-later", OffHeapTicketStore.KIND_TICKET_GRANTING_TICKET, 100, bytes("later"));
+        assertEquals(Collections.singletonList("TGT-due"), store.getDueKeys(0, 50));
+    }
+
+    @Test
+    public void verifyManyEntries() {
+        final OffHeapTicketStore store = new OffHeapTicketStore(64L * 1024 * 1024, 16);
+        final byte[] value = new byte[256];
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < NUMBER_OF_ENTRIES; i++) {
+            store.put("TGT-" + i, OffHeapTicketStore.KIND_TICKET_GRANTING_TICKET, 0, value);
+        }
+        for (int i = 0; i < NUMBER_OF_ENTRIES; i++) {
+            assertNotNull(store.get("TGT-" + i));
+        }
+        logger.info("Stored and read {} entries in {} ms", NUMBER_OF_ENTRIES, System.currentTimeMillis() - start);
+        assertEquals(NUMBER_OF_ENTRIES, store.size());
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
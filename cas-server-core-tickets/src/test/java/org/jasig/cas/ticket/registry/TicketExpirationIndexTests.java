@@ -0,0 +1,76 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.authentication.TestUtils;
+import org.jasig.cas.ticket.ExpirationPolicy;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.jasig.cas.ticket.TicketGrantingTicketImpl;
+import org.jasig.cas.ticket.support.HardTimeoutExpirationPolicy;
+import org.jasig.cas.ticket.support.NeverExpiresExpirationPolicy;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link TicketExpirationIndex}.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class TicketExpirationIndexTests {
+
+    @Test
+    public void verifyOnlyDueTicketsArePolled() {
+        final TicketExpirationIndex index = new TicketExpirationIndex();
+        final TicketGrantingTicket later = newTicket("TGT-later", new HardTimeoutExpirationPolicy(1, TimeUnit.HOURS));
+        final TicketGrantingTicket expired = newTicket("TGT-expired", new HardTimeoutExpirationPolicy(-1, TimeUnit.MINUTES));
+        final TicketGrantingTicket unknown = newTicket("TGT-unknown", new NeverExpiresExpirationPolicy());
+        index.add(later);
+        index.add(expired);
+        index.add(unknown);
+
+        assertEquals(3, index.size());
+        assertEquals(Arrays.asList(expired.getId(), unknown.getId()), index.poll(System.currentTimeMillis(), 10));
+        assertEquals(1, index.size());
+        assertTrue(index.poll(System.currentTimeMillis(), 10).isEmpty());
+        assertEquals(Collections.singletonList(later.getId()),
+                index.poll(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(2), 10));
+    }
+
+    @Test
+    public void verifyPollingIsBounded() {
+        final TicketExpirationIndex index = new TicketExpirationIndex();
+        for (int i = 0; i < 5; i++) {
+            index.add(newTicket("TGT-" + i, new NeverExpiresExpirationPolicy()));
+        }
+        final long now = System.currentTimeMillis();
+        assertEquals(2, index.poll(now, 2).size());
+        assertEquals(2, index.poll(now, 2).size());
+        assertEquals(1, index.poll(now, 2).size());
+        assertTrue(index.poll(now, 2).isEmpty());
+    }
+
+    @Test
+    public void verifyReindexAndRemove() {
+        final TicketExpirationIndex index = new TicketExpirationIndex();
+        final TicketGrantingTicket ticket = newTicket("TGT-1", new NeverExpiresExpirationPolicy());
+        final long now = System.currentTimeMillis();
+        index.add(ticket, now);
+        index.add(ticket, now + TimeUnit.MINUTES.toMillis(1));
+        assertEquals(1, index.size());
+        assertEquals(now + TimeUnit.MINUTES.toMillis(1), index.getEarliestDueTime());
+        assertTrue(index.poll(now, 10).isEmpty());
+
+        index.remove(ticket.getId());
+        assertEquals(0, index.size());
+        assertEquals(Long.MAX_VALUE, index.getEarliestDueTime());
+        assertTrue(index.poll(Long.MAX_VALUE, 10).isEmpty());
+    }
+
+    private static TicketGrantingTicket newTicket(final String id, final ExpirationPolicy policy) {
+        return new TicketGrantingTicketImpl(id, TestUtils.getAuthentication(), policy);
+    }
+}
@@ -2,6 +2,7 @@ package org.jasig.cas.ticket.support;
 
 import org.jasig.cas.ticket.TicketGrantingTicket;
 import org.jasig.cas.ticket.TicketGrantingTicketImpl;
+import org.jasig.cas.ticket.TicketState;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -12,6 +13,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 /**
  * @author William G. Thompson, Jr.
@@ -82,4 +84,20 @@ public class TicketGrantingTicketExpirationPolicyTests {
 
     }
 
+    @Test
+    public void verifyEarliestExpirationTimeOfOldTgtFollowsLastUse() {
+        final TicketGrantingTicketExpirationPolicy policy = new TicketGrantingTicketExpirationPolicy(8, 2, TimeUnit.HOURS);
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        final TicketState ticketState = mock(TicketState.class);
+        when(ticketState.getCreationTime()).thenReturn(now.minusHours(3));
+        when(ticketState.getLastTimeUsed()).thenReturn(now.minusHours(3).plusMinutes(90));
+
+        assertFalse(policy.isExpired(ticketState));
+        assertEquals(now.minusHours(3).plusMinutes(90).plusHours(2), policy.getEarliestExpirationTime(ticketState));
+        assertTrue(policy.getEarliestExpirationTime(ticketState).isAfter(now));
+
+        when(ticketState.getLastTimeUsed()).thenReturn(now.minusMinutes(1));
+        assertTrue(policy.isExpired(ticketState));
+        assertFalse(policy.getEarliestExpirationTime(ticketState).isAfter(now));
+    }
 }
@@ -0,0 +1,54 @@
+package org.jasig.cas;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jasig.cas.util.AesGcmCipherExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This is {@link GcmTicketCipherExecutor} that handles the encryption
+ * of tickets during replication using AES-GCM authenticated encryption.
+ * It produces smaller payloads than {@link DefaultTicketCipherExecutor}
+ * and requires no separate signing key.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+@Component("gcmTicketCipherExecutor")
+public class GcmTicketCipherExecutor extends AesGcmCipherExecutor {
+
+    /**
+     * Instantiates a new GCM ticket cipher executor.
+     *
+     * @param encryptionSecretKey the encryption secret key
+     * @param encryptionKeyId     the encryption key id
+     * @param rotatedSecretKeys   the rotated secret keys, as comma-separated {@code id:key} pairs
+     */
+    @Autowired
+    public GcmTicketCipherExecutor(@Value("${ticket.encryption.secretkey:}")
+                                   final String encryptionSecretKey,
+                                   @Value("${ticket.encryption.keyid:0}")
+                                   final int encryptionKeyId,
+                                   @Value("${ticket.encryption.rotated.secretkeys:}")
+                                   final String rotatedSecretKeys) {
+        super(encryptionSecretKey, encryptionKeyId);
+        setRotatedKeys(parseRotatedKeys(rotatedSecretKeys));
+    }
+
+    private static Map<Integer, String> parseRotatedKeys(final String rotatedSecretKeys) {
+        final Map<Integer, String> keys = new HashMap<>();
+        for (final String entry : StringUtils.split(StringUtils.defaultString(rotatedSecretKeys), ',')) {
+            final String id = StringUtils.substringBefore(entry, ":").trim();
+            final String key = StringUtils.substringAfter(entry, ":").trim();
+            if (StringUtils.isBlank(key)) {
+                throw new IllegalArgumentException("Rotated secret key " + id + " must be defined as id:key");
+            }
+            keys.put(Integer.valueOf(id), key);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,162 @@
+package org.jasig.cas.util;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A binary cipher that encrypts and authenticates values in a single
+ * AES-GCM pass over raw bytes. Unlike {@link BinaryCipherExecutor}, no separate
+ * signature or base64 encoding is applied; the GCM tag guards both the ciphertext
+ * and the header.
+ * <p>
+ * Encoded values are laid out as {@code [version][key id][iv][ciphertext + tag]}.
+ * The key id selects the decryption key so that the encryption key may be
+ * rotated while values encrypted with older keys are still readable.
+ * Cipher instances are cached per thread.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class AesGcmCipherExecutor extends AbstractCipherExecutor<byte[], byte[]> {
+
+    private static final String CIPHER_TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static final String KEY_ALGORITHM = "AES";
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 2;
+
+    private static final int IV_SIZE = 12;
+
+    private static final int TAG_SIZE_BITS = 128;
+
+    private static final int ENCRYPTION_KEY_SIZE = 16;
+
+    private static final int MAX_KEY_ID = 255;
+
+    private static final int UNSIGNED_BYTE_MASK = 0xFF;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(AesGcmCipherExecutor::newCipher);
+
+    private final Map<Integer, Key> decryptionKeys = new HashMap<>();
+
+    private final int encryptionKeyId;
+
+    private final Key encryptionKey;
+
+    /**
+     * Instantiates a new cipher executor.
+     *
+     * @param encryptionSecretKey the encryption secret key, of 16, 24 or 32 bytes
+     * @param encryptionKeyId the id recorded with values encrypted by this key, between 0 and 255
+     */
+    public AesGcmCipherExecutor(final String encryptionSecretKey, final int encryptionKeyId) {
+        if (encryptionKeyId < 0 || encryptionKeyId > MAX_KEY_ID) {
+            throw new IllegalArgumentException("Encryption key id must be between 0 and " + MAX_KEY_ID);
+        }
+
+        String keyToUse = encryptionSecretKey;
+        if (StringUtils.isBlank(keyToUse)) {
+            logger.warn("No encryption key is defined. CAS will attempt to auto-generate keys");
+            keyToUse = RandomStringUtils.randomAlphanumeric(ENCRYPTION_KEY_SIZE);
+            logger.warn("Generated encryption key {} of size {}. The generated key MUST be added to CAS settings.",
+                    keyToUse, ENCRYPTION_KEY_SIZE);
+        }
+        this.encryptionKeyId = encryptionKeyId;
+        this.encryptionKey = newKey(keyToUse);
+        this.decryptionKeys.put(encryptionKeyId, this.encryptionKey);
+    }
+
+    /**
+     * Sets keys that are no longer used for encryption, but whose
+     * values may still need to be decrypted after a key rotation.
+     * The active encryption key cannot be replaced.
+     *
+     * @param rotatedKeys the rotated keys, mapped by key id
+     */
+    public void setRotatedKeys(final Map<Integer, String> rotatedKeys) {
+        rotatedKeys.forEach((id, key) -> {
+            if (id != this.encryptionKeyId) {
+                this.decryptionKeys.put(id, newKey(key));
+            }
+        });
+    }
+
+    @Override
+    public byte[] encode(final byte[] value) {
+        try {
+            final byte[] result = new byte[HEADER_SIZE + IV_SIZE + value.length + TAG_SIZE_BITS / Byte.SIZE];
+            result[0] = FORMAT_VERSION;
+            result[1] = (byte) this.encryptionKeyId;
+
+            final byte[] iv = new byte[IV_SIZE];
+            RANDOM.nextBytes(iv);
+            System.arraycopy(iv, 0, result, HEADER_SIZE, IV_SIZE);
+
+            final Cipher cipher = this.ciphers.get();
+            cipher.init(Cipher.ENCRYPT_MODE, this.encryptionKey, new GCMParameterSpec(TAG_SIZE_BITS, iv));
+            cipher.updateAAD(result, 0, HEADER_SIZE);
+            cipher.doFinal(value, 0, value.length, result, HEADER_SIZE + IV_SIZE);
+            return result;
+        } catch (final Exception e) {
+            logger.error(e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public byte[] decode(final byte[] value) {
+        if (value.length < HEADER_SIZE + IV_SIZE || value[0] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Value was not encoded by this cipher");
+        }
+        final int keyId = value[1] & UNSIGNED_BYTE_MASK;
+        final Key key = this.decryptionKeys.get(keyId);
+        if (key == null) {
+            throw new IllegalArgumentException("No decryption key is defined for key id " + keyId);
+        }
+
+        try {
+            final Cipher cipher = this.ciphers.get();
+            cipher.init(Cipher.DECRYPT_MODE, key,
+                    new GCMParameterSpec(TAG_SIZE_BITS, Arrays.copyOfRange(value, HEADER_SIZE, HEADER_SIZE + IV_SIZE)));
+            cipher.updateAAD(value, 0, HEADER_SIZE);
+            return cipher.doFinal(value, HEADER_SIZE + IV_SIZE, value.length - HEADER_SIZE - IV_SIZE);
+        } catch (final Exception e) {
+            logger.error(e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Key newKey(final String secretKey) {
+        final byte[] bytes = secretKey.getBytes(StandardCharsets.UTF_8);
+        try {
+            Cipher.getInstance(CIPHER_TRANSFORMATION).init(Cipher.ENCRYPT_MODE, new SecretKeySpec(bytes, KEY_ALGORITHM),
+                    new GCMParameterSpec(TAG_SIZE_BITS, new byte[IV_SIZE]));
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid AES encryption key of size " + bytes.length, e);
+        }
+        return new SecretKeySpec(bytes, KEY_ALGORITHM);
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(CIPHER_TRANSFORMATION);
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
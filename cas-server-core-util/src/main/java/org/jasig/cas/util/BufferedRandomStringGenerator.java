@@ -0,0 +1,168 @@
+package org.jasig.cas.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Implementation of the RandomStringGenerator that is meant for generating
+ * large volumes of ids from many threads at once. Each thread owns its own
+ * {@link SecureRandom} instance and pulls bytes from a pre-filled buffer, so
+ * threads never contend on a shared generator.
+ * <p>
+ * Strings are drawn from the same characters as {@link DefaultRandomStringGenerator}.
+ * Bytes that would not map uniformly onto those characters are discarded
+ * rather than folded with a modulo, so every character is equally likely.
+ * </p>
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class BufferedRandomStringGenerator implements RandomStringGenerator {
+
+    /** The default algorithm of the per-thread generators. */
+    public static final String DEFAULT_ALGORITHM = "SHA1PRNG";
+
+    private static final char[] PRINTABLE_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ012345679"
+        .toCharArray();
+
+    /** Mask selecting the smallest power of two range that covers all printable characters. */
+    private static final int INDEX_MASK = 0x3F;
+
+    private static final int BYTE_VALUES = 256;
+
+    private static final int UNSIGNED_BYTE_MASK = 0xFF;
+
+    private static final int CHAR_CARRY_SHIFT = 16;
+
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    /**
+     * Maps every byte to a printable character, or to {@code 0} when the
+     * byte falls outside the range that maps without bias.
+     */
+    private static final char[] LOOKUP_TABLE = new char[BYTE_VALUES];
+
+    static {
+        for (int i = 0; i < BYTE_VALUES; i++) {
+            final int index = i & INDEX_MASK;
+            LOOKUP_TABLE[i] = index < PRINTABLE_CHARACTERS.length ? PRINTABLE_CHARACTERS[index] : 0;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BufferedRandomStringGenerator.class);
+
+    private final ThreadLocal<RandomBuffer> buffers;
+
+    private final int maximumRandomLength;
+
+    /**
+     * Instantiates a new generator with length set to
+     * {@link DefaultRandomStringGenerator#DEFAULT_MAX_RANDOM_LENGTH}.
+     */
+    public BufferedRandomStringGenerator() {
+        this(DefaultRandomStringGenerator.DEFAULT_MAX_RANDOM_LENGTH);
+    }
+
+    /**
+     * Instantiates a new generator.
+     *
+     * @param maxRandomLength the max random length
+     */
+    public BufferedRandomStringGenerator(final int maxRandomLength) {
+        this(maxRandomLength, DEFAULT_ALGORITHM, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Instantiates a new generator.
+     *
+     * @param maxRandomLength the max random length
+     * @param algorithm the algorithm of the per-thread {@link SecureRandom} instances
+     * @param bufferSize the number of random bytes each thread fetches at once
+     */
+    public BufferedRandomStringGenerator(final int maxRandomLength, final String algorithm, final int bufferSize) {
+        this.maximumRandomLength = maxRandomLength;
+        this.buffers = ThreadLocal.withInitial(() -> new RandomBuffer(newSecureRandom(algorithm), bufferSize));
+    }
+
+    @Override
+    public int getMinLength() {
+        return this.maximumRandomLength;
+    }
+
+    @Override
+    public int getMaxLength() {
+        return this.maximumRandomLength;
+    }
+
+    @Override
+    public String getNewString() {
+        final RandomBuffer buffer = this.buffers.get();
+        final char[] output = new char[this.maximumRandomLength];
+        int length = 0;
+        while (length < output.length) {
+            final char c = LOOKUP_TABLE[buffer.next() & UNSIGNED_BYTE_MASK];
+            output[length] = c;
+            // advance only for mapped characters; rejected bytes are overwritten by the next draw
+            length += (c + Character.MAX_VALUE) >>> CHAR_CARRY_SHIFT;
+        }
+        return new String(output);
+    }
+
+    @Override
+    public byte[] getNewStringAsBytes() {
+        final byte[] random = new byte[this.maximumRandomLength];
+        this.buffers.get().nextBytes(random);
+        return random;
+    }
+
+    private static SecureRandom newSecureRandom(final String algorithm) {
+        try {
+            return SecureRandom.getInstance(algorithm);
+        } catch (final NoSuchAlgorithmException e) {
+            LOGGER.warn("Secure random algorithm {} is not available. Falling back to the platform default", algorithm);
+            return new SecureRandom();
+        }
+    }
+
+    /**
+     * Random bytes owned by a single thread.
+     */
+    private static final class RandomBuffer {
+        private final SecureRandom random;
+
+        private final byte[] bytes;
+
+        private int position;
+
+        RandomBuffer(final SecureRandom random, final int size) {
+            this.random = random;
+            this.bytes = new byte[size];
+            this.position = size;
+        }
+
+        byte next() {
+            if (this.position == this.bytes.length) {
+                this.random.nextBytes(this.bytes);
+                this.position = 0;
+            }
+            return this.bytes[this.position++];
+        }
+
+        void nextBytes(final byte[] output) {
+            int offset = 0;
+            while (offset < output.length) {
+                if (this.position == this.bytes.length) {
+                    this.random.nextBytes(this.bytes);
+                    this.position = 0;
+                }
+                final int count = Math.min(output.length - offset, this.bytes.length - this.position);
+                System.arraycopy(this.bytes, this.position, output, offset, count);
+                this.position += count;
+                offset += count;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.jasig.cas.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A numeric generator for generating unique long values from many threads at once.
+ * Rather than incrementing a shared counter for every value, each thread reserves
+ * a block of consecutive values and hands them out locally. Values are unique,
+ * but are only increasing per thread. Like {@link DefaultLongNumericGenerator},
+ * the count wraps once the maximum is reached.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class StripedLongNumericGenerator implements LongNumericGenerator {
+
+    /** The default number of values each thread reserves at once. */
+    public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+    private static final int MAX_STRING_LENGTH = Long.toString(Long.MAX_VALUE).length();
+
+    private static final int MIN_STRING_LENGTH = 1;
+
+    private final AtomicLong count;
+
+    private final int blockSize;
+
+    private final ThreadLocal<long[]> blocks = ThreadLocal.withInitial(() -> new long[2]);
+
+    /**
+     * Instantiates a new generator.
+     *
+     * @param initialValue the initial value
+     */
+    public StripedLongNumericGenerator(final long initialValue) {
+        this(initialValue, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Instantiates a new generator.
+     *
+     * @param initialValue the initial value
+     * @param blockSize the number of values each thread reserves at once
+     */
+    public StripedLongNumericGenerator(final long initialValue, final int blockSize) {
+        this.count = new AtomicLong(initialValue);
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public long getNextLong() {
+        // block[0] is the next value of this thread, block[1] the end of its reservation
+        final long[] block = this.blocks.get();
+        while (block[0] >= block[1]) {
+            reserveBlock(block);
+        }
+        return block[0]++;
+    }
+
+    @Override
+    public String getNextNumberAsString() {
+        return Long.toString(getNextLong());
+    }
+
+    @Override
+    public int maxLength() {
+        return MAX_STRING_LENGTH;
+    }
+
+    @Override
+    public int minLength() {
+        return MIN_STRING_LENGTH;
+    }
+
+    private void reserveBlock(final long[] block) {
+        while (true) {
+            final long start = this.count.get();
+            final boolean wraps = start > Long.MAX_VALUE - this.blockSize;
+            final long end = wraps ? Long.MAX_VALUE : start + this.blockSize;
+            if (this.count.compareAndSet(start, wraps ? 0 : end)) {
+                block[0] = start;
+                block[1] = end;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.jasig.cas.util;
+
+import org.jasig.cas.CipherExecutor;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link AesGcmCipherExecutor}.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class AesGcmCipherExecutorTests {
+
+    private static final String VALUE = "ThisIsATestValueThatIsGoingToBeEncodedAndDecodedAgainAndAgain";
+
+    private final CipherExecutor<byte[], byte[]> cipher = new AesGcmCipherExecutor("1234567890123456", 1);
+
+    @Test
+    public void verifyEncodingDecoding() {
+        final byte[] encoded = this.cipher.encode(VALUE.getBytes());
+        assertEquals(VALUE, new String(this.cipher.decode(encoded)));
+        assertEquals(1, encoded[1]);
+        assertFalse(new String(encoded).contains(VALUE));
+    }
+
+    @Test
+    public void verifyPayloadIsSmallerThanSignedCipher() {
+        final CipherExecutor<byte[], byte[]> signed = new BinaryCipherExecutor("1234567890123456",
+                "szxK-5_eJjs-aUj-64MpUZ-GPPzGLhYPLGl0wrYjYNVAGva2P0lLe6UGKGM7k8dWxsOVGutZWgvmY3l5oVPO3w");
+        assertTrue(this.cipher.encode(VALUE.getBytes()).length < signed.encode(VALUE.getBytes()).length);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void verifyTamperedValueIsRejected() {
+        final byte[] encoded = this.cipher.encode(VALUE.getBytes());
+        encoded[encoded.length - 1] ^= 1;
+        this.cipher.decode(encoded);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void verifyBadKeySize() {
+        new AesGcmCipherExecutor("0000", 0);
+    }
+
+    @Test
+    public void verifyRotatedKeysDecode() {
+        final byte[] encoded = this.cipher.encode(VALUE.getBytes());
+        final AesGcmCipherExecutor rotated = new AesGcmCipherExecutor("6543210987654321", 2);
+        rotated.setRotatedKeys(Collections.singletonMap(1, "1234567890123456"));
+        assertEquals(VALUE, new String(rotated.decode(encoded)));
+        assertEquals(2, rotated.encode(VALUE.getBytes())[1]);
+
+        try {
+            this.cipher.decode(rotated.encode(VALUE.getBytes()));
+            fail("Value encrypted with an unknown key id should not be decoded");
+        } catch (final IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("2"));
+        }
+    }
+
+    @Test
+    public void verifyConcurrentEncodeDecode() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Callable<String>> tasks = IntStream.range(0, 100)
+                    .mapToObj(i -> (Callable<String>) () -> new String(this.cipher.decode(this.cipher.encode((VALUE + i).getBytes()))))
+                    .collect(Collectors.toList());
+            final List<Future<String>> results = executor.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(VALUE + i, results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
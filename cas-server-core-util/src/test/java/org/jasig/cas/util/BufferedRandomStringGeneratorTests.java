@@ -0,0 +1,80 @@
+package org.jasig.cas.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link BufferedRandomStringGenerator}.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class BufferedRandomStringGeneratorTests {
+
+    private static final int LENGTH = 35;
+
+    private static final String PRINTABLE_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ012345679";
+
+    private final RandomStringGenerator randomStringGenerator = new BufferedRandomStringGenerator(LENGTH, "SHA1PRNG", 64);
+
+    @Test
+    public void verifyLength() {
+        assertEquals(LENGTH, this.randomStringGenerator.getMaxLength());
+        assertEquals(LENGTH, this.randomStringGenerator.getMinLength());
+        assertEquals(LENGTH, this.randomStringGenerator.getNewString().length());
+        assertEquals(LENGTH, this.randomStringGenerator.getNewStringAsBytes().length);
+    }
+
+    @Test
+    public void verifyCharactersMatchDefaultGenerator() {
+        final int[] counts = new int[PRINTABLE_CHARACTERS.length()];
+        for (int i = 0; i < 2000; i++) {
+            for (final char c : this.randomStringGenerator.getNewString().toCharArray()) {
+                final int index = PRINTABLE_CHARACTERS.indexOf(c);
+                assertTrue("Unexpected character " + c, index >= 0);
+                counts[index]++;
+            }
+        }
+        for (final int count : counts) {
+            assertTrue(count > 0);
+        }
+    }
+
+    @Test
+    public void verifyUnknownAlgorithmFallsBack() {
+        assertEquals(LENGTH, new BufferedRandomStringGenerator(LENGTH, "unknown", 16).getNewString().length());
+    }
+
+    @Test
+    public void verifyUniqueStringsAcrossThreads() throws Exception {
+        final Set<String> values = ConcurrentHashMap.newKeySet();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        assertTrue(values.add(this.randomStringGenerator.getNewString()));
+                    }
+                    return null;
+                });
+            }
+            for (final Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(8000, values.size());
+    }
+}
@@ -0,0 +1,61 @@
+package org.jasig.cas.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for {@link StripedLongNumericGenerator}.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class StripedLongNumericGeneratorTests {
+
+    @Test
+    public void verifyInitialValueAndIncrement() {
+        final StripedLongNumericGenerator g = new StripedLongNumericGenerator(10L);
+        assertEquals(10L, g.getNextLong());
+        assertEquals("11", g.getNextNumberAsString());
+    }
+
+    @Test
+    public void verifyWrap() {
+        final StripedLongNumericGenerator g = new StripedLongNumericGenerator(Long.MAX_VALUE - 1, 10);
+        assertEquals(Long.MAX_VALUE - 1, g.getNextLong());
+        assertEquals(0, g.getNextLong());
+    }
+
+    @Test
+    public void verifyUniqueValuesAcrossThreads() throws Exception {
+        final StripedLongNumericGenerator g = new StripedLongNumericGenerator(0, 10);
+        final Set<Long> values = ConcurrentHashMap.newKeySet();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        assertTrue(values.add(g.getNextLong()));
+                    }
+                    return null;
+                });
+            }
+            for (final Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(8000, values.size());
+    }
+}
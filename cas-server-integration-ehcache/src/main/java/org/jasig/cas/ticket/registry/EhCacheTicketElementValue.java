@@ -0,0 +1,52 @@
+package org.jasig.cas.ticket.registry;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.jasig.cas.ticket.Ticket;
+
+import java.io.Serializable;
+
+/**
+ * The value of a cache element stored by the {@link EhCacheTicketRegistry}: the ticket,
+ * which may be encoded, along with the type of the ticket as created by CAS. The type
+ * lets the registry count tickets as the cache notifies it of changes, including those
+ * replicated from peers, without decoding the ticket. Nodes that predate this class
+ * expect the ticket itself and cannot share a replicated cache with nodes that store it.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+final class EhCacheTicketElementValue implements Serializable {
+
+    private static final long serialVersionUID = -3259713845317352906L;
+
+    private final Class<? extends Ticket> type;
+
+    private final Ticket ticket;
+
+    /**
+     * Instantiates a new element value.
+     *
+     * @param type   the type of the ticket as created by CAS
+     * @param ticket the ticket to store, which may be encoded
+     */
+    EhCacheTicketElementValue(final Class<? extends Ticket> type, final Ticket ticket) {
+        this.type = type;
+        this.ticket = ticket;
+    }
+
+    public Class<? extends Ticket> getType() {
+        return this.type;
+    }
+
+    public Ticket getTicket() {
+        return this.ticket;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("type", this.type.getSimpleName())
+                .append("ticket", this.ticket)
+                .toString();
+    }
+}
@@ -1,12 +1,12 @@
 package org.jasig.cas.ticket.registry;
 
 import net.sf.ehcache.Cache;
+import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
 import org.apache.commons.lang3.builder.ToStringBuilder;
-import org.jasig.cas.ticket.ServiceTicket;
 import org.jasig.cas.ticket.Ticket;
-import org.jasig.cas.ticket.TicketGrantingTicket;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
@@ -38,6 +38,12 @@ public final class EhCacheTicketRegistry extends AbstractTicketRegistry {
      **/
     private boolean supportRegistryState = true;
 
+    /**
+     * Number of tickets in the cache per ticket type, maintained
+     * through cache event notifications.
+     */
+    private final TicketRegistryCounters counters = new TicketRegistryCounters();
+
     /**
      * Instantiates a new EhCache ticket registry.
      */
@@ -68,7 +74,7 @@ public final class EhCacheTicketRegistry extends AbstractTicketRegistry {
     @Override
     public void addTicket(final Ticket ticketToAdd) {
         final Ticket ticket = encodeTicket(ticketToAdd);
-        final Element element = new Element(ticket.getId(), ticket);
+        final Element element = new Element(ticket.getId(), new EhCacheTicketElementValue(ticketToAdd.getClass(), ticket));
         
         final int idleValue = ticketToAdd.getExpirationPolicy().getTimeToIdle().intValue();
         element.setTimeToIdle(idleValue);
@@ -113,7 +119,7 @@ public final class EhCacheTicketRegistry extends AbstractTicketRegistry {
             logger.debug("No ticket by id [{}] is found in the registry", ticketId);
             return null;
         }
-        final Ticket proxiedTicket = decodeTicket((Ticket) element.getObjectValue());
+        final Ticket proxiedTicket = decodeTicket(getTicketFrom(element));
         final Ticket ticket = getProxiedTicketInstance(proxiedTicket);
         
         final CacheConfiguration config = new CacheConfiguration();
@@ -135,7 +141,7 @@ public final class EhCacheTicketRegistry extends AbstractTicketRegistry {
         final Collection<Element> cacheTickets = this.ehcacheTicketsCache.getAll(
                 this.ehcacheTicketsCache.getKeysWithExpiryCheck()).values();
         final Collection<Ticket> allTickets = new HashSet<>(cacheTickets.size());
-        cacheTickets.stream().forEach(ticket -> allTickets.add(getProxiedTicketInstance((Ticket) ticket.getObjectValue())));
+        cacheTickets.stream().forEach(ticket -> allTickets.add(getProxiedTicketInstance(getTicketFrom(ticket))));
         return decodeTickets(allTickets);
     }
 
@@ -153,13 +159,12 @@ public final class EhCacheTicketRegistry extends AbstractTicketRegistry {
     /**
      * Flag to indicate whether this registry instance should participate in reporting its state with
      * default value set to {@code true}.
-     * Based on the <a href="http://ehcache.org/apidocs/net/sf/ehcache/Ehcache.html#getKeysWithExpiryCheck()">EhCache documentation</a>,
-     * determining the number of service tickets and the total session count from the cache can be considered
-     * an expensive operation with the time taken as O(n), where n is the number of elements in the cache.
+     * The number of service tickets and the total session count are tracked through cache event
+     * notifications and reported in constant time. Since expired elements are only noticed by the cache
+     * when they are accessed or evicted, counts may include tickets that have expired but are not yet removed.
      *
-     * <p>Therefore, the flag provides a level of flexibility such that depending on the cache and environment
-     * settings, reporting statistics
-     * can be set to false and disabled.</p>
+     * <p>The flag provides a level of flexibility such that depending on the cache and environment
+     * settings, reporting statistics can be set to false and disabled.</p>
      *
      * @param supportRegistryState true, if the registry is to support registry state
      * @see #sessionCount()
@@ -188,6 +193,15 @@ public final class EhCacheTicketRegistry extends AbstractTicketRegistry {
             logger.debug("TicketCache.timeToIdle={}", config.getTimeToIdleSeconds());
             logger.debug("TicketCache.cacheManager={}", this.ehcacheTicketsCache.getCacheManager().getName());
         }
+
+        if (this.supportRegistryState) {
+            this.ehcacheTicketsCache.getAll(this.ehcacheTicketsCache.getKeys()).values().stream()
+                    .filter(element -> element != null)
+                    .forEach(element -> this.counters.increment(getTicketTypeFrom(element)));
+            this.ehcacheTicketsCache.getCacheEventNotificationService().registerListener(new TicketCountingCacheEventListener());
+            logger.debug("Tracking ticket counts of {} starting at {} sessions and {} service tickets",
+                    this.ehcacheTicketsCache.getName(), sessionCount(), serviceTicketCount());
+        }
     }
 
     public void setEhcacheTicketsCache(final Cache ehcacheTicketsCache) {
@@ -196,12 +210,73 @@ public final class EhCacheTicketRegistry extends AbstractTicketRegistry {
 
     @Override
     public long sessionCount() {
-        return getTickets().stream().filter(t -> t instanceof TicketGrantingTicket).count();
+        return this.supportRegistryState ? this.counters.sessionCount() : super.sessionCount();
     }
 
     @Override
     public long serviceTicketCount() {
-        return getTickets().stream().filter(t -> t instanceof ServiceTicket).count();
+        return this.supportRegistryState ? this.counters.serviceTicketCount() : super.serviceTicketCount();
+    }
+
+    /**
+     * Gets the ticket, which may be encoded, stored in the element.
+     * Elements stored before ticket types were kept along with tickets hold the ticket itself.
+     *
+     * @param element the element
+     * @return the ticket
+     */
+    private static Ticket getTicketFrom(final Element element) {
+        final Object value = element.getObjectValue();
+        if (value instanceof EhCacheTicketElementValue) {
+            return ((EhCacheTicketElementValue) value).getTicket();
+        }
+        return (Ticket) value;
+    }
+
+    /**
+     * Gets the type of the ticket stored in the element, without decoding the ticket.
+     *
+     * @param element the element, or null
+     * @return the ticket type, or null
+     */
+    private static Class<? extends Ticket> getTicketTypeFrom(final Element element) {
+        if (element == null || !(element.getObjectValue() instanceof EhCacheTicketElementValue)) {
+            return null;
+        }
+        return ((EhCacheTicketElementValue) element.getObjectValue()).getType();
+    }
+
+    /**
+     * Keeps the ticket counters in sync with additions, removals,
+     * expirations and evictions observed by the cache, including
+     * those replicated from peers. Tickets are counted by the type
+     * stored along with them, and are never decoded.
+     */
+    private final class TicketCountingCacheEventListener extends CacheEventListenerAdapter {
+        @Override
+        public void notifyElementPut(final Ehcache cache, final Element element) {
+            counters.increment(getTicketTypeFrom(element));
+        }
+
+        @Override
+        public void notifyElementRemoved(final Ehcache cache, final Element element) {
+            counters.decrement(getTicketTypeFrom(element));
+        }
+
+        @Override
+        public void notifyElementExpired(final Ehcache cache, final Element element) {
+            counters.decrement(getTicketTypeFrom(element));
+        }
+
+        @Override
+        public void notifyElementEvicted(final Ehcache cache, final Element element) {
+            counters.decrement(getTicketTypeFrom(element));
+        }
+
+        @Override
+        public void notifyRemoveAll(final Ehcache cache) {
+            counters.reset();
+        }
     }
 
     @Override
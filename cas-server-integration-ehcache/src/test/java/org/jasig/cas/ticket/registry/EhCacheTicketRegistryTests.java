@@ -248,6 +248,23 @@ public final class EhCacheTicketRegistryTests {
         assertNull(this.ticketRegistry.getTicket("ST3", ServiceTicket.class));
     }
 
+    @Test
+    public void verifyTicketCounts() {
+        final TicketRegistryState state = (TicketRegistryState) this.ticketRegistry;
+        this.ticketRegistry.addTicket(new TicketGrantingTicketImpl(
+                "TGT-COUNT", TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy()));
+        final TicketGrantingTicket tgt = this.ticketRegistry.getTicket("TGT-COUNT", TicketGrantingTicket.class);
+        this.ticketRegistry.addTicket(tgt.grantServiceTicket("ST-COUNT",
+                org.jasig.cas.services.TestUtils.getService(), new NeverExpiresExpirationPolicy(), true, false));
+
+        assertEquals(1, state.sessionCount());
+        assertEquals(1, state.serviceTicketCount());
+
+        this.ticketRegistry.deleteTicket(tgt.getId());
+        assertEquals(0, state.sessionCount());
+        assertEquals(0, state.serviceTicketCount());
+    }
+
 
     /**
      * Cleaning ticket registry to start afresh, after newing up the instance.
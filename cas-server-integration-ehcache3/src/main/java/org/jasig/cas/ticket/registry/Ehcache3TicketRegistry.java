@@ -0,0 +1,391 @@
+package org.jasig.cas.ticket.registry;
+
+import com.google.common.io.ByteSource;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.ValueSupplier;
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheEventListenerConfigurationBuilder;
+import org.ehcache.config.builders.CacheManagerBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.event.CacheEvent;
+import org.ehcache.event.CacheEventListener;
+import org.ehcache.event.EventType;
+import org.ehcache.expiry.Duration;
+import org.ehcache.expiry.Expiry;
+import org.jasig.cas.ticket.Ticket;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ticket registry backed by an <a href="http://www.ehcache.org/">Ehcache 3</a> cache
+ * on the local node, with a heap tier in front of an off-heap tier and, optionally, a disk tier
+ * that keeps tickets across restarts.
+ * <p>
+ * Tickets are stored as {@link EhcacheTicketEntry entries} that the cache writes with the
+ * {@link EhcacheTicketEntrySerializer}, and that hold the ticket as serialized by the
+ * {@link BinaryTicketSerializer} or, if tickets are encrypted, by the cipher executor.
+ * Each entry expires on its own, once the time to live or idle of the expiration policy of the ticket
+ * has passed, plus a grace period that leaves the cleaner time to notice the ticket and
+ * send logout notifications. Looking up, adding and removing tickets only ever touch the given key;
+ * tickets are counted as the cache notifies the registry of changes, and the cleaner only visits
+ * tickets that may have expired.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+@Component("ehcache3TicketRegistry")
+public final class Ehcache3TicketRegistry extends AbstractTicketRegistry {
+
+    /** Name of the cache that holds tickets. */
+    public static final String CACHE_NAME = "ticketsCache";
+
+    /** Default number of entries held on the heap. */
+    public static final long DEFAULT_HEAP_ENTRIES = 10000;
+
+    /** Default size of the off-heap tier in megabytes. */
+    public static final long DEFAULT_OFF_HEAP_MEGABYTES = 256;
+
+    /** Default time in seconds entries are kept once their ticket could have expired. */
+    public static final long DEFAULT_EXPIRY_GRACE_PERIOD = 300;
+
+    private final CacheManager cacheManager;
+
+    private final Cache<String, EhcacheTicketEntry> ticketsCache;
+
+    private final TicketExpirationIndex expirationIndex = new TicketExpirationIndex();
+
+    private final LongAdder sessions = new LongAdder();
+
+    private final LongAdder serviceTickets = new LongAdder();
+
+    /**
+     * Time in seconds entries are kept once their ticket could have expired.
+     */
+    @Value("${ehcache3.ticket.registry.expiry.grace:300}")
+    private long expiryGracePeriod = DEFAULT_EXPIRY_GRACE_PERIOD;
+
+    /**
+     * Serializes tickets that are not encrypted.
+     */
+    @Autowired(required = false)
+    @Qualifier("binaryTicketSerializer")
+    private TicketSerializer binaryTicketSerializer = new BinaryTicketSerializer();
+
+    /**
+     * Instantiates a new registry that keeps tickets in memory only.
+     */
+    public Ehcache3TicketRegistry() {
+        this(DEFAULT_HEAP_ENTRIES, DEFAULT_OFF_HEAP_MEGABYTES, 0, null);
+    }
+
+    /**
+     * Instantiates a new registry.
+     *
+     * @param heapEntries       the maximum number of tickets kept on the heap
+     * @param offHeapMegabytes  the size of the off-heap tier in megabytes, or 0 for none
+     * @param diskMegabytes     the size of the disk tier in megabytes, or 0 for none
+     * @param diskDirectory     the directory of the disk tier, where tickets are kept across restarts
+     */
+    @Autowired
+    public Ehcache3TicketRegistry(@Value("${ehcache3.ticket.registry.heap.entries:10000}")
+                                  final long heapEntries,
+                                  @Value("${ehcache3.ticket.registry.offheap.mb:256}")
+                                  final long offHeapMegabytes,
+                                  @Value("${ehcache3.ticket.registry.disk.mb:0}")
+                                  final long diskMegabytes,
+                                  @Value("${ehcache3.ticket.registry.disk.dir:}")
+                                  final String diskDirectory) {
+        ResourcePoolsBuilder resourcePools = ResourcePoolsBuilder.newResourcePoolsBuilder().heap(heapEntries, EntryUnit.ENTRIES);
+        if (offHeapMegabytes > 0) {
+            resourcePools = resourcePools.offheap(offHeapMegabytes, MemoryUnit.MB);
+        }
+        final CacheManagerBuilder<? extends CacheManager> builder;
+        if (diskMegabytes > 0) {
+            Assert.hasText(diskDirectory, "A directory is required for the disk tier");
+            resourcePools = resourcePools.disk(diskMegabytes, MemoryUnit.MB, true);
+            builder = CacheManagerBuilder.newCacheManagerBuilder().with(CacheManagerBuilder.persistence(diskDirectory));
+        } else {
+            builder = CacheManagerBuilder.newCacheManagerBuilder();
+        }
+
+        final CacheConfiguration<String, EhcacheTicketEntry> cacheConfiguration = CacheConfigurationBuilder
+                .newCacheConfigurationBuilder(String.class, EhcacheTicketEntry.class, resourcePools)
+                .withExpiry(new TicketEntryExpiry())
+                .withValueSerializer(new EhcacheTicketEntrySerializer())
+                .add(CacheEventListenerConfigurationBuilder
+                        .newEventListenerConfiguration(new TicketCountingCacheEventListener(),
+                                EventType.CREATED, EventType.REMOVED, EventType.EXPIRED, EventType.EVICTED)
+                        .unordered().asynchronous().build())
+                .build();
+
+        this.cacheManager = builder.withCache(CACHE_NAME, cacheConfiguration).build(true);
+        this.ticketsCache = this.cacheManager.getCache(CACHE_NAME, String.class, EhcacheTicketEntry.class);
+    }
+
+    @Override
+    public void addTicket(final Ticket ticket) {
+        Assert.notNull(ticket, "ticket cannot be null");
+
+        final Ticket encodedTicket = encodeTicket(ticket);
+        final byte[] payload = isCipherExecutorEnabled()
+                ? ((EncodedTicket) encodedTicket).getEncoded()
+                : this.binaryTicketSerializer.serialize(ticket);
+        this.ticketsCache.put(encodedTicket.getId(), EhcacheTicketEntry.of(ticket, payload));
+        this.expirationIndex.add(ticket);
+        logger.debug("Added ticket [{}] to registry.", ticket.getId());
+    }
+
+    @Override
+    public Ticket getTicket(final String ticketId) {
+        if (ticketId == null) {
+            return null;
+        }
+        return getProxiedTicketInstance(getStoredTicket(encodeTicketId(ticketId)));
+    }
+
+    /**
+     * Gets the ticket stored under the given key, as is.
+     *
+     * @param key the key, which is the encoded ticket id
+     * @return the ticket, or null
+     */
+    private Ticket getStoredTicket(final String key) {
+        final EhcacheTicketEntry entry = this.ticketsCache.get(key);
+        return entry == null ? null : deserialize(key, entry);
+    }
+
+    private Ticket deserialize(final String key, final EhcacheTicketEntry entry) {
+        if (isCipherExecutorEnabled()) {
+            return decodeTicket(new EncodedTicket(ByteSource.wrap(entry.getPayload()), key));
+        }
+        return this.binaryTicketSerializer.deserialize(entry.getPayload());
+    }
+
+    @Override
+    public boolean deleteSingleTicket(final String ticketId) {
+        final String key = encodeTicketId(ticketId);
+        this.expirationIndex.remove(ticketId);
+        if (!this.ticketsCache.containsKey(key)) {
+            return false;
+        }
+        this.ticketsCache.remove(key);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Every ticket is deserialized; this should be used sparingly.
+     */
+    @Override
+    public Collection<Ticket> getTickets() {
+        final List<Ticket> tickets = new ArrayList<>();
+        for (final Cache.Entry<String, EhcacheTicketEntry> entry : this.ticketsCache) {
+            tickets.add(deserialize(entry.getKey(), entry.getValue()));
+        }
+        return tickets;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Tickets are counted as the cache notifies the registry, which happens asynchronously.
+     * Since expired entries are only noticed by the cache as they are accessed, counts may
+     * include tickets that have expired but are not yet removed.
+     */
+    @Override
+    public long sessionCount() {
+        return this.sessions.sum();
+    }
+
+    @Override
+    public long serviceTicketCount() {
+        return this.serviceTickets.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only tickets whose earliest expiration time has passed are deserialized.
+     */
+    @Override
+    protected int cleanupExpiredTickets() {
+        final long start = System.currentTimeMillis();
+        final int batchSize = getCleanerBatchSize();
+        int count = 0;
+
+        List<String> batch = this.expirationIndex.poll(start, batchSize);
+        while (!batch.isEmpty()) {
+            logger.debug("Examining {} ticket(s) that may have expired", batch.size());
+            final List<Ticket> expired = new ArrayList<>(batch.size());
+            for (final String ticketId : batch) {
+                final Ticket ticket = getStoredTicket(encodeTicketId(ticketId));
+                if (ticket != null) {
+                    if (ticket.isExpired()) {
+                        expired.add(ticket);
+                    } else {
+                        // Look at the ticket again once it could have expired, but not during this run
+                        this.expirationIndex.add(ticket, start + 1);
+                    }
+                }
+            }
+            count += cleanupExpiredTickets(expired);
+            batch = this.expirationIndex.poll(start, batchSize);
+        }
+        return count;
+    }
+
+    @Override
+    protected long getCleanerLag() {
+        final long earliestDueTime = this.expirationIndex.getEarliestDueTime();
+        return Math.max(System.currentTimeMillis() - earliestDueTime, 0);
+    }
+
+    @Override
+    protected void updateTicket(final Ticket ticket) {
+        addTicket(ticket);
+    }
+
+    @Override
+    protected boolean needsCallback() {
+        return true;
+    }
+
+    /**
+     * Index and count the tickets kept on disk since the last time the registry ran.
+     */
+    @PostConstruct
+    public void init() {
+        final long start = System.currentTimeMillis();
+        for (final Cache.Entry<String, EhcacheTicketEntry> entry : this.ticketsCache) {
+            increment(entry.getValue());
+            this.expirationIndex.add(deserialize(entry.getKey(), entry.getValue()));
+        }
+        if (this.expirationIndex.size() > 0) {
+            logger.info("Found {} ticket(s) in {} in {} ms", this.expirationIndex.size(), CACHE_NAME,
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Close the cache, which writes the tickets held in memory to the disk tier, if any.
+     */
+    @PreDestroy
+    public void destroy() {
+        logger.info("Closing the cache manager of the Ehcache 3 ticket registry");
+        this.cacheManager.close();
+    }
+
+    public void setExpiryGracePeriod(final long expiryGracePeriod) {
+        this.expiryGracePeriod = expiryGracePeriod;
+    }
+
+    public void setBinaryTicketSerializer(final TicketSerializer binaryTicketSerializer) {
+        this.binaryTicketSerializer = binaryTicketSerializer;
+    }
+
+    private void increment(final EhcacheTicketEntry entry) {
+        final LongAdder counter = getCounter(entry);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    private void decrement(final EhcacheTicketEntry entry) {
+        final LongAdder counter = getCounter(entry);
+        if (counter != null) {
+            counter.decrement();
+        }
+    }
+
+    private LongAdder getCounter(final EhcacheTicketEntry entry) {
+        if (entry == null) {
+            return null;
+        }
+        switch (entry.getKind()) {
+            case EhcacheTicketEntry.KIND_TICKET_GRANTING_TICKET:
+                return this.sessions;
+            case EhcacheTicketEntry.KIND_SERVICE_TICKET:
+                return this.serviceTickets;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Expires entries once the time to live of their ticket has passed since it was created,
+     * or once the ticket has not been used for its time to idle, whichever comes first,
+     * plus the grace period. Entries of tickets without either never expire in the cache
+     * and are left to the cleaner.
+     */
+    private final class TicketEntryExpiry implements Expiry<String, EhcacheTicketEntry> {
+        @Override
+        public Duration getExpiryForCreation(final String key, final EhcacheTicketEntry entry) {
+            return getExpiry(entry);
+        }
+
+        @Override
+        public Duration getExpiryForAccess(final String key, final ValueSupplier<? extends EhcacheTicketEntry> value) {
+            final EhcacheTicketEntry entry = value.value();
+            return entry.getTimeToIdle() > 0 ? getExpiry(entry) : null;
+        }
+
+        @Override
+        public Duration getExpiryForUpdate(final String key, final ValueSupplier<? extends EhcacheTicketEntry> oldValue,
+                                           final EhcacheTicketEntry newValue) {
+            return getExpiry(newValue);
+        }
+
+        private Duration getExpiry(final EhcacheTicketEntry entry) {
+            long expiry = Long.MAX_VALUE;
+            if (entry.getTimeToLive() > 0) {
+                expiry = entry.getTimeToLive() - (System.currentTimeMillis() - entry.getCreationTime());
+            }
+            if (entry.getTimeToIdle() > 0) {
+                expiry = Math.min(expiry, entry.getTimeToIdle());
+            }
+            final long gracePeriod = TimeUnit.SECONDS.toMillis(expiryGracePeriod);
+            if (expiry >= Long.MAX_VALUE - gracePeriod) {
+                return Duration.INFINITE;
+            }
+            return Duration.of(Math.max(expiry, 0) + gracePeriod, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Keeps the ticket counts in sync with additions, removals,
+     * expirations and evictions observed by the cache.
+     */
+    private final class TicketCountingCacheEventListener implements CacheEventListener<String, EhcacheTicketEntry> {
+        @Override
+        public void onEvent(final CacheEvent<String, EhcacheTicketEntry> event) {
+            if (event.getType() == EventType.CREATED) {
+                increment(event.getNewValue());
+            } else {
+                decrement(event.getOldValue());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .appendSuper(super.toString())
+                .append("cacheName", CACHE_NAME)
+                .append("expiryGracePeriod", this.expiryGracePeriod)
+                .toString();
+    }
+}
@@ -0,0 +1,138 @@
+package org.jasig.cas.ticket.registry;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.jasig.cas.ticket.ExpirationPolicy;
+import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A ticket stored by the {@link Ehcache3TicketRegistry}, in serialized form,
+ * along with the few properties of the ticket the cache needs to know about:
+ * its type, so that tickets can be counted, and the times to live and idle of its
+ * expiration policy, so that the cache can expire the entry on its own.
+ * These remain available when the ticket itself is encrypted.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class EhcacheTicketEntry {
+
+    /** Kind of all other tickets. */
+    public static final byte KIND_OTHER = 0;
+
+    /** Kind of ticket-granting tickets, including proxy-granting tickets. */
+    public static final byte KIND_TICKET_GRANTING_TICKET = 1;
+
+    /** Kind of service tickets, including proxy tickets. */
+    public static final byte KIND_SERVICE_TICKET = 2;
+
+    private final byte kind;
+
+    private final long creationTime;
+
+    private final long timeToLive;
+
+    private final long timeToIdle;
+
+    private final byte[] payload;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param kind         the kind of ticket
+     * @param creationTime the creation time of the ticket in milliseconds
+     * @param timeToLive   the time to live of the ticket in milliseconds, or 0 if it has none
+     * @param timeToIdle   the time to idle of the ticket in milliseconds, or 0 if it has none
+     * @param payload      the serialized ticket
+     */
+    public EhcacheTicketEntry(final byte kind, final long creationTime, final long timeToLive,
+                              final long timeToIdle, final byte[] payload) {
+        this.kind = kind;
+        this.creationTime = creationTime;
+        this.timeToLive = timeToLive;
+        this.timeToIdle = timeToIdle;
+        this.payload = payload;
+    }
+
+    /**
+     * Create an entry for the given ticket.
+     *
+     * @param ticket  the ticket, as created by CAS
+     * @param payload the serialized, and possibly encrypted, ticket
+     * @return the entry
+     */
+    public static EhcacheTicketEntry of(final Ticket ticket, final byte[] payload) {
+        final ExpirationPolicy policy = ticket.getExpirationPolicy();
+        final long timeToLive = policy == null ? 0 : toMillis(policy.getTimeToLive());
+        final long timeToIdle = policy == null ? 0 : toMillis(policy.getTimeToIdle());
+        return new EhcacheTicketEntry(getKind(ticket), ticket.getCreationTime().toInstant().toEpochMilli(),
+                timeToLive, timeToIdle, payload);
+    }
+
+    public byte getKind() {
+        return this.kind;
+    }
+
+    public long getCreationTime() {
+        return this.creationTime;
+    }
+
+    public long getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    public long getTimeToIdle() {
+        return this.timeToIdle;
+    }
+
+    public byte[] getPayload() {
+        return this.payload;
+    }
+
+    private static long toMillis(final Long seconds) {
+        return seconds == null || seconds <= 0 ? 0 : TimeUnit.SECONDS.toMillis(seconds);
+    }
+
+    private static byte getKind(final Ticket ticket) {
+        if (ticket instanceof TicketGrantingTicket) {
+            return KIND_TICKET_GRANTING_TICKET;
+        }
+        if (ticket instanceof ServiceTicket) {
+            return KIND_SERVICE_TICKET;
+        }
+        return KIND_OTHER;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof EhcacheTicketEntry)) {
+            return false;
+        }
+        final EhcacheTicketEntry entry = (EhcacheTicketEntry) other;
+        return this.kind == entry.kind
+                && this.creationTime == entry.creationTime
+                && this.timeToLive == entry.timeToLive
+                && this.timeToIdle == entry.timeToIdle
+                && Arrays.equals(this.payload, entry.payload);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.payload);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("kind", this.kind)
+                .append("creationTime", this.creationTime)
+                .append("timeToLive", this.timeToLive)
+                .append("timeToIdle", this.timeToIdle)
+                .append("size", this.payload.length)
+                .toString();
+    }
+}
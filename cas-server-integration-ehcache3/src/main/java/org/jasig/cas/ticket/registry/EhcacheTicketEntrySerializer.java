@@ -0,0 +1,50 @@
+package org.jasig.cas.ticket.registry;
+
+import org.ehcache.spi.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Ehcache {@link Serializer} for {@link EhcacheTicketEntry ticket entries}, used by
+ * the off-heap and disk tiers of the {@link Ehcache3TicketRegistry}. Entries are written as
+ * a fixed header holding the kind, creation time and times to live and idle of the ticket,
+ * followed by the ticket as serialized by the registry. Tickets are never deserialized here.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class EhcacheTicketEntrySerializer implements Serializer<EhcacheTicketEntry> {
+
+    /** The kind, followed by the creation time and the times to live and idle. */
+    private static final int HEADER_SIZE = Byte.BYTES + Long.BYTES + Long.BYTES + Long.BYTES;
+
+    @Override
+    public ByteBuffer serialize(final EhcacheTicketEntry entry) {
+        final byte[] payload = entry.getPayload();
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.put(entry.getKind())
+                .putLong(entry.getCreationTime())
+                .putLong(entry.getTimeToLive())
+                .putLong(entry.getTimeToIdle())
+                .put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public EhcacheTicketEntry read(final ByteBuffer binary) {
+        final ByteBuffer buffer = binary.duplicate();
+        final byte kind = buffer.get();
+        final long creationTime = buffer.getLong();
+        final long timeToLive = buffer.getLong();
+        final long timeToIdle = buffer.getLong();
+        final byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+        return new EhcacheTicketEntry(kind, creationTime, timeToLive, timeToIdle, payload);
+    }
+
+    @Override
+    public boolean equals(final EhcacheTicketEntry entry, final ByteBuffer binary) {
+        return entry.equals(read(binary));
+    }
+}
@@ -0,0 +1,104 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.authentication.TestUtils;
+import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.jasig.cas.ticket.TicketGrantingTicketImpl;
+import org.jasig.cas.ticket.support.HardTimeoutExpirationPolicy;
+import org.jasig.cas.ticket.support.NeverExpiresExpirationPolicy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case to test the {@link Ehcache3TicketRegistry} based on test cases to test all
+ * Ticket Registries.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class Ehcache3TicketRegistryTests extends AbstractTicketRegistryTests {
+
+    private static final int NUMBER_OF_TICKETS = 50;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Override
+    public TicketRegistry getNewTicketRegistry() throws Exception {
+        return new Ehcache3TicketRegistry(2, 1, 0, null);
+    }
+
+    @Test
+    public void verifyTicketsAreReadFromOffHeap() {
+        final Ehcache3TicketRegistry registry = new Ehcache3TicketRegistry(2, 1, 0, null);
+        for (int i = 0; i < NUMBER_OF_TICKETS; i++) {
+            registry.addTicket(newTicketGrantingTicket("TGT-" + i));
+        }
+        for (int i = 0; i < NUMBER_OF_TICKETS; i++) {
+            final TicketGrantingTicket result = registry.getTicket("TGT-" + i, TicketGrantingTicket.class);
+            assertEquals("TGT-" + i, result.getId());
+            assertEquals(TestUtils.getAuthentication().getPrincipal(), result.getAuthentication().getPrincipal());
+        }
+        registry.destroy();
+    }
+
+    @Test
+    public void verifyCleanupOfDueTickets() {
+        final Ehcache3TicketRegistry registry = new Ehcache3TicketRegistry(2, 1, 0, null);
+        final TicketGrantingTicket tgt = newTicketGrantingTicket("TGT-1");
+        final ServiceTicket expired = tgt.grantServiceTicket("ST-1", org.jasig.cas.services.TestUtils.getService(),
+                new HardTimeoutExpirationPolicy(-1, TimeUnit.MINUTES), true, false);
+        final ServiceTicket valid = tgt.grantServiceTicket("ST-2", org.jasig.cas.services.TestUtils.getService(),
+                new HardTimeoutExpirationPolicy(1, TimeUnit.HOURS), true, false);
+        registry.addTicket(tgt);
+        registry.addTicket(expired);
+        registry.addTicket(valid);
+
+        registry.cleanupTickets();
+        assertNull(registry.getTicket(expired.getId()));
+        assertNotNull(registry.getTicket(valid.getId()));
+        assertNotNull(registry.getTicket(tgt.getId()));
+        registry.shutdownLogoutExecutor();
+        registry.destroy();
+    }
+
+    @Test
+    public void verifyTicketsSurviveRestartOnDisk() throws Exception {
+        final String directory = this.folder.getRoot().getAbsolutePath();
+        final Ehcache3TicketRegistry registry = new Ehcache3TicketRegistry(2, 1, 2, directory);
+        registry.init();
+        for (int i = 0; i < NUMBER_OF_TICKETS; i++) {
+            registry.addTicket(newTicketGrantingTicket("TGT-" + i));
+        }
+        registry.destroy();
+
+        final Ehcache3TicketRegistry restarted = new Ehcache3TicketRegistry(2, 1, 2, directory);
+        restarted.init();
+        assertEquals(NUMBER_OF_TICKETS, restarted.sessionCount());
+        assertEquals("TGT-42", restarted.getTicket("TGT-42").getId());
+        restarted.destroy();
+    }
+
+    @Test
+    public void verifyEntriesAreSerialized() throws Exception {
+        final TicketGrantingTicket tgt = newTicketGrantingTicket("TGT-1");
+        final EhcacheTicketEntry entry = EhcacheTicketEntry.of(tgt, new BinaryTicketSerializer().serialize(tgt));
+        assertEquals(EhcacheTicketEntry.KIND_TICKET_GRANTING_TICKET, entry.getKind());
+        assertEquals(TimeUnit.SECONDS.toMillis(Integer.MAX_VALUE), entry.getTimeToLive());
+
+        final EhcacheTicketEntrySerializer serializer = new EhcacheTicketEntrySerializer();
+        final EhcacheTicketEntry result = serializer.read(serializer.serialize(entry));
+        assertEquals(entry, result);
+        assertTrue(serializer.equals(entry, serializer.serialize(entry)));
+        assertEquals(tgt, new BinaryTicketSerializer().deserialize(result.getPayload()));
+    }
+
+    private static TicketGrantingTicket newTicketGrantingTicket(final String id) {
+        return new TicketGrantingTicketImpl(id, TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy());
+    }
+}
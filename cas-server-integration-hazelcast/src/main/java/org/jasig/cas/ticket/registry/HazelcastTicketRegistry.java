@@ -1,8 +1,18 @@
 package org.jasig.cas.ticket.registry;
 
+import com.hazelcast.core.EntryEvent;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
+import com.hazelcast.map.AbstractEntryProcessor;
+import com.hazelcast.map.EntryBackupProcessor;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import org.jasig.cas.authentication.principal.Service;
 import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.jasig.cas.ticket.support.NeverExpiresExpirationPolicy;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -11,8 +21,16 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Hazelcast-based implementation of a {@link TicketRegistry}.
@@ -62,6 +80,27 @@ public class HazelcastTicketRegistry extends AbstractTicketRegistry implements D
         addTicket(ticket);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>Unless tickets are encrypted, the grant is applied on the member that owns the
+     * ticket, so that only the granted service crosses the network and concurrent grants
+     * on the same ticket do not overwrite each other.</p>
+     */
+    @Override
+    protected void updateTicketGrantingTicket(final TicketGrantingTicket ticket, final String serviceTicketId,
+                                              final Service service, final boolean onlyTrackMostRecentSession) {
+        if (isCipherExecutorEnabled()) {
+            updateTicket(ticket);
+            return;
+        }
+        final Object applied = this.registry.executeOnKey(ticket.getId(),
+                new GrantServiceTicketEntryProcessor(serviceTicketId, service, onlyTrackMostRecentSession));
+        if (!Boolean.TRUE.equals(applied)) {
+            logger.debug("Ticket [{}] could not be updated in place; updating the whole ticket", ticket.getId());
+            updateTicket(ticket);
+        }
+    }
+
     @Override
     protected boolean needsCallback() {
         return false;
@@ -88,11 +127,52 @@ public class HazelcastTicketRegistry extends AbstractTicketRegistry implements D
     }
 
 
+    @Override
+    public void addTickets(final Collection<Ticket> tickets) {
+        final List<Future<Ticket>> results = new ArrayList<>(tickets.size());
+        for (final Ticket ticket : tickets) {
+            logger.debug("Adding ticket [{}] with ttl [{}s]", ticket.getId(), ticket.getExpirationPolicy().getTimeToLive());
+            final Ticket encTicket = encodeTicket(ticket);
+            results.add(this.registry.putAsync(encTicket.getId(), encTicket,
+                    ticket.getExpirationPolicy().getTimeToLive(), TimeUnit.SECONDS));
+        }
+        for (final Future<Ticket> result : results) {
+            try {
+                result.get();
+            } catch (final Exception e) {
+                logger.error("Failed adding ticket: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public Collection<Ticket> getTickets(final Collection<String> ticketIds) {
+        final Set<String> encTicketIds = ticketIds.stream().map(this::encodeTicketId).collect(Collectors.toSet());
+        return this.registry.getAll(encTicketIds).values().stream()
+                .filter(Objects::nonNull)
+                .map(this::decodeTicket)
+                .map(this::getProxiedTicketInstance)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    protected int deleteSingleTickets(final Collection<String> ticketIds) {
+        final Set<String> encTicketIds = ticketIds.stream().map(this::encodeTicketId).collect(Collectors.toSet());
+        final Map<String, Object> results = this.registry.executeOnKeys(encTicketIds, new RemoveTicketEntryProcessor());
+        return (int) results.values().stream().filter(Boolean.TRUE::equals).count();
+    }
+
     @Override
     public Collection<Ticket> getTickets() {
         return decodeTickets(this.registry.values());
     }
 
+    @Override
+    public boolean addTicketChangeListener(final Consumer<String> listener) {
+        this.registry.addEntryListener(new TicketChangeListener(listener), false);
+        return true;
+    }
+
     /**
      * Make sure we shutdown HazelCast when the context is destroyed.
      */
@@ -106,4 +186,109 @@ public class HazelcastTicketRegistry extends AbstractTicketRegistry implements D
     public void destroy() throws Exception {
         shutdown();
     }
+
+    /**
+     * Removes tickets on the members that own them, so that a batch
+     * of tickets is removed with a single operation per partition.
+     */
+    private static final class RemoveTicketEntryProcessor extends AbstractEntryProcessor<String, Ticket> {
+        private static final long serialVersionUID = -7371052924395442437L;
+
+        @Override
+        public Object process(final Map.Entry<String, Ticket> entry) {
+            if (entry.getValue() == null) {
+                return Boolean.FALSE;
+            }
+            entry.setValue(null);
+            return Boolean.TRUE;
+        }
+    }
+
+    /**
+     * Records a service ticket grant on the ticket-granting ticket held by the member that owns the ticket.
+     * The grant is not applied again on backups, which would record their own time of use; backups are
+     * given the ticket as updated on the owning member instead.
+     */
+    private static final class GrantServiceTicketEntryProcessor implements EntryProcessor<String, Ticket> {
+        private static final long serialVersionUID = 2410768935431185604L;
+
+        private final String serviceTicketId;
+
+        private final Service service;
+
+        private final boolean onlyTrackMostRecentSession;
+
+        private transient Ticket updatedTicket;
+
+        GrantServiceTicketEntryProcessor(final String serviceTicketId, final Service service,
+                                         final boolean onlyTrackMostRecentSession) {
+            this.serviceTicketId = serviceTicketId;
+            this.service = service;
+            this.onlyTrackMostRecentSession = onlyTrackMostRecentSession;
+        }
+
+        @Override
+        public Object process(final Map.Entry<String, Ticket> entry) {
+            if (!(entry.getValue() instanceof TicketGrantingTicket)) {
+                return Boolean.FALSE;
+            }
+            final TicketGrantingTicket ticket = (TicketGrantingTicket) entry.getValue();
+            // the granted service ticket is stored separately; granting it again only updates this ticket
+            ticket.grantServiceTicket(this.serviceTicketId, this.service, new NeverExpiresExpirationPolicy(),
+                    false, this.onlyTrackMostRecentSession);
+            entry.setValue(ticket);
+            this.updatedTicket = ticket;
+            return Boolean.TRUE;
+        }
+
+        @Override
+        public EntryBackupProcessor<String, Ticket> getBackupProcessor() {
+            return this.updatedTicket == null ? null : new UpdatedTicketBackupProcessor(this.updatedTicket);
+        }
+    }
+
+    /**
+     * Stores the ticket as updated on the member that owns it on a backup.
+     */
+    private static final class UpdatedTicketBackupProcessor implements EntryBackupProcessor<String, Ticket> {
+        private static final long serialVersionUID = -5318622519626407254L;
+
+        private final Ticket ticket;
+
+        UpdatedTicketBackupProcessor(final Ticket ticket) {
+            this.ticket = ticket;
+        }
+
+        @Override
+        public void processBackup(final Map.Entry<String, Ticket> entry) {
+            entry.setValue(this.ticket);
+        }
+    }
+
+    /**
+     * Relays updates, removals and evictions of tickets, on any member, to a listener.
+     */
+    private static final class TicketChangeListener implements EntryUpdatedListener<String, Ticket>,
+            EntryRemovedListener<String, Ticket>, EntryEvictedListener<String, Ticket> {
+        private final Consumer<String> listener;
+
+        TicketChangeListener(final Consumer<String> listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void entryUpdated(final EntryEvent<String, Ticket> event) {
+            this.listener.accept(event.getKey());
+        }
+
+        @Override
+        public void entryRemoved(final EntryEvent<String, Ticket> event) {
+            this.listener.accept(event.getKey());
+        }
+
+        @Override
+        public void entryEvicted(final EntryEvent<String, Ticket> event) {
+            this.listener.accept(event.getKey());
+        }
+    }
 }
@@ -8,6 +8,7 @@ import org.jasig.cas.ticket.ServiceTicket;
 import org.jasig.cas.ticket.TicketGrantingTicket;
 import org.jasig.cas.ticket.TicketGrantingTicketImpl;
 import org.jasig.cas.ticket.proxy.ProxyGrantingTicket;
+import org.jasig.cas.ticket.support.HardTimeoutExpirationPolicy;
 import org.jasig.cas.ticket.support.NeverExpiresExpirationPolicy;
 import org.jasig.cas.util.DateTimeUtils;
 import org.junit.After;
@@ -16,6 +17,7 @@ import org.junit.Test;
 import org.springframework.context.support.FileSystemXmlApplicationContext;
 
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -103,6 +105,49 @@ public class HazelcastTicketRegistryTests {
         assertNull(this.hzTicketRegistry1.getTicket("ST3", ServiceTicket.class));
     }
 
+    @Test
+    public void verifyBulkOperationsAcrossMembers() throws Exception {
+        final TicketGrantingTicket tgt = new TicketGrantingTicketImpl(
+                "TGT-BULK", org.jasig.cas.authentication.TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy());
+        final ServiceTicket st = tgt.grantServiceTicket("ST-BULK", TestUtils.getService(),
+                new NeverExpiresExpirationPolicy(), true, false);
+        this.hzTicketRegistry1.addTickets(Arrays.asList(tgt, st));
+
+        assertEquals(2, this.hzTicketRegistry2.getTickets(Arrays.asList("TGT-BULK", "ST-BULK", "ST-UNKNOWN")).size());
+        assertEquals(1, this.hzTicketRegistry2.deleteTickets(Collections.singletonList("TGT-BULK")));
+        assertTrue(this.hzTicketRegistry1.getTickets(Arrays.asList("TGT-BULK", "ST-BULK")).isEmpty());
+    }
+
+    @Test
+    public void verifyServiceTicketGrantsAreNotLost() throws Exception {
+        this.hzTicketRegistry1.addTicket(new TicketGrantingTicketImpl(
+                "TGT-GRANT", org.jasig.cas.authentication.TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy()));
+        final TicketGrantingTicket tgt1 = this.hzTicketRegistry1.getTicket("TGT-GRANT", TicketGrantingTicket.class);
+        final TicketGrantingTicket tgt2 = this.hzTicketRegistry2.getTicket("TGT-GRANT", TicketGrantingTicket.class);
+
+        tgt1.grantServiceTicket("ST-GRANT1", TestUtils.getService("service1"), new NeverExpiresExpirationPolicy(), true, false);
+        tgt2.grantServiceTicket("ST-GRANT2", TestUtils.getService("service2"), new NeverExpiresExpirationPolicy(), true, false);
+
+        final TicketGrantingTicket result = this.hzTicketRegistry1.getTicket("TGT-GRANT", TicketGrantingTicket.class);
+        assertEquals(2, result.getServices().size());
+        assertEquals(2, result.getCountOfUses());
+        assertEquals("service2", result.getServices().get("ST-GRANT2").getId());
+    }
+
+    @Test
+    public void verifyServiceTicketGrantKeepsTimeToLive() throws Exception {
+        // the registry takes the time to live of the expiration policy in seconds
+        this.hzTicketRegistry1.addTicket(new TicketGrantingTicketImpl(
+                "TGT-TTL", org.jasig.cas.authentication.TestUtils.getAuthentication(), new HardTimeoutExpirationPolicy(2)));
+        final TicketGrantingTicket tgt = this.hzTicketRegistry2.getTicket("TGT-TTL", TicketGrantingTicket.class);
+        tgt.grantServiceTicket("ST-TTL", TestUtils.getService(), new NeverExpiresExpirationPolicy(), true, false);
+        assertEquals(1, this.hzTicketRegistry1.getTicket("TGT-TTL", TicketGrantingTicket.class).getCountOfUses());
+
+        Thread.sleep(3000);
+        assertNull(this.hzTicketRegistry1.getTicket("TGT-TTL"));
+        assertNull(this.hzTicketRegistry2.getTicket("TGT-TTL"));
+    }
+
     private TicketGrantingTicket newTestTgt() {
         return new MockTgt();
     }
@@ -7,6 +7,7 @@ import org.apache.ignite.configuration.CacheConfiguration;
 import org.apache.ignite.configuration.IgniteConfiguration;
 import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
 import org.apache.ignite.spi.discovery.tcp.ipfinder.vm.TcpDiscoveryVmIpFinder;
+import org.jasig.cas.ticket.registry.IgniteTicketDocument;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -82,6 +83,7 @@ public class IgniteTicketRegistryConfiguration {
         ticketsCache.setAtomicityMode(this.atomicityMode);
         ticketsCache.setWriteSynchronizationMode(this.writeSynchronizationMode);
         ticketsCache.setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(new Duration(TimeUnit.SECONDS, this.timeout)));
+        ticketsCache.setIndexedTypes(String.class, IgniteTicketDocument.class);
 
         configurations.add(ticketsCache);
 
@@ -0,0 +1,102 @@
+package org.jasig.cas.ticket.registry;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.ignite.cache.query.annotations.QuerySqlField;
+import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.Ticket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+
+import java.io.Serializable;
+
+/**
+ * Wraps a ticket stored by the {@link IgniteTicketRegistry} along with a few of its
+ * properties, exposed as indexed SQL fields so that tickets can be counted and found
+ * by Ignite without deserializing every ticket in the cluster.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public final class IgniteTicketDocument implements Serializable {
+
+    /** Type of ticket-granting tickets, including proxy-granting tickets. */
+    public static final String TYPE_TICKET_GRANTING_TICKET = "TGT";
+
+    /** Type of service tickets, including proxy tickets. */
+    public static final String TYPE_SERVICE_TICKET = "ST";
+
+    /** Type of all other tickets. */
+    public static final String TYPE_OTHER = "OTHER";
+
+    private static final long serialVersionUID = 4164377315325640185L;
+
+    @QuerySqlField(index = true)
+    private final String type;
+
+    @QuerySqlField(index = true)
+    private final long creationTime;
+
+    @QuerySqlField(index = true)
+    private final String principal;
+
+    /** The earliest time at which the ticket could have expired. */
+    @QuerySqlField(index = true)
+    private final long expirationTime;
+
+    private final Ticket ticket;
+
+    /**
+     * Instantiates a new document.
+     *
+     * @param original       the ticket, as created by CAS
+     * @param stored         the ticket to store, which may be encoded
+     * @param principal      the id of the principal the ticket belongs to, or null
+     * @param expirationTime the earliest time in milliseconds at which the ticket could have expired
+     */
+    public IgniteTicketDocument(final Ticket original, final Ticket stored, final String principal, final long expirationTime) {
+        this.type = getType(original);
+        this.creationTime = original.getCreationTime().toInstant().toEpochMilli();
+        this.principal = principal;
+        this.expirationTime = expirationTime;
+        this.ticket = stored;
+    }
+
+    public String getType() {
+        return this.type;
+    }
+
+    public long getCreationTime() {
+        return this.creationTime;
+    }
+
+    public String getPrincipal() {
+        return this.principal;
+    }
+
+    public long getExpirationTime() {
+        return this.expirationTime;
+    }
+
+    public Ticket getTicket() {
+        return this.ticket;
+    }
+
+    private static String getType(final Ticket ticket) {
+        if (ticket instanceof TicketGrantingTicket) {
+            return TYPE_TICKET_GRANTING_TICKET;
+        }
+        if (ticket instanceof ServiceTicket) {
+            return TYPE_SERVICE_TICKET;
+        }
+        return TYPE_OTHER;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("type", this.type)
+                .append("creationTime", this.creationTime)
+                .append("expirationTime", this.expirationTime)
+                .append("ticket", this.ticket)
+                .toString();
+    }
+}
@@ -8,10 +8,14 @@ import org.apache.ignite.IgniteState;
 import org.apache.ignite.Ignition;
 import org.apache.ignite.cache.query.QueryCursor;
 import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+import org.apache.ignite.configuration.CacheConfiguration;
 import org.apache.ignite.configuration.IgniteConfiguration;
 import org.apache.ignite.lang.IgniteBiPredicate;
 import org.apache.ignite.ssl.SslContextFactory;
-import org.jasig.cas.ticket.ServiceTicket;
+import com.google.common.collect.Lists;
+import org.jasig.cas.authentication.Authentication;
+import org.jasig.cas.ticket.ExpirationPolicy;
 import org.jasig.cas.ticket.Ticket;
 import org.jasig.cas.ticket.TicketGrantingTicket;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,9 +29,16 @@ import javax.cache.Cache;
 import javax.cache.expiry.Duration;
 import javax.cache.expiry.ExpiryPolicy;
 import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * <p>
@@ -42,6 +53,13 @@ import java.util.concurrent.TimeUnit;
  *   <li>Monitoring : follow separately the number of TGT and ST.</li>
  * </ul>
  *
+ * <p>
+ * Tickets are stored as {@link IgniteTicketDocument}s, whose type, creation time, principal and
+ * earliest expiration time are indexed SQL fields. Counting tickets and finding those that may
+ * have expired are thus indexed queries that run on the Ignite nodes, rather than scans that
+ * deserialize every ticket.
+ * </p>
+ *
  * @author Timur Duehr timur.duehr@nccgroup.trust
  * @since 5.0.0`
  */
@@ -82,7 +100,14 @@ public final class IgniteTicketRegistry extends AbstractTicketRegistry {
     @Qualifier("igniteConfiguration")
     private IgniteConfiguration igniteConfiguration;
 
-    private IgniteCache<String, Ticket> ticketIgniteCache;
+    private IgniteCache<String, IgniteTicketDocument> ticketIgniteCache;
+
+    /**
+     * Projections of the cache that apply the time to live and idle of an expiration policy, one per distinct
+     * policy, rather than a new projection for every ticket.
+     */
+    private final Map<TicketExpiryPolicy, IgniteCache<String, IgniteTicketDocument>> expiryProjections =
+            new ConcurrentHashMap<>();
     
     private Ignite ignite;
 
@@ -101,32 +126,34 @@ public final class IgniteTicketRegistry extends AbstractTicketRegistry {
     public void addTicket(final Ticket ticketToAdd) {
         final Ticket ticket = encodeTicket(ticketToAdd);
         logger.debug("Adding ticket {} to the cache {}", ticket.getId(), this.ticketIgniteCache.getName());
-        this.ticketIgniteCache.withExpiryPolicy(new ExpiryPolicy() {
-            @Override
-            public Duration getExpiryForCreation() {
-                return new Duration(TimeUnit.SECONDS, ticket.getExpirationPolicy().getTimeToLive());
-            }
-
-            @Override
-            public Duration getExpiryForAccess() {
-                return new Duration(TimeUnit.SECONDS, ticket.getExpirationPolicy().getTimeToIdle());
-            }
-
-            @Override
-            public Duration getExpiryForUpdate() {
-                return new Duration(TimeUnit.SECONDS, ticket.getExpirationPolicy().getTimeToLive());
-            }
-        }).put(ticket.getId(), ticket);
+        final ExpirationPolicy policy = ticketToAdd.getExpirationPolicy();
+        final TicketExpiryPolicy expiryPolicy = new TicketExpiryPolicy(policy.getTimeToLive(), policy.getTimeToIdle());
+        final IgniteCache<String, IgniteTicketDocument> cache =
+                this.expiryProjections.computeIfAbsent(expiryPolicy, this.ticketIgniteCache::withExpiryPolicy);
+        cache.put(ticket.getId(), new IgniteTicketDocument(ticketToAdd, ticket, getPrincipal(ticketToAdd),
+                TicketExpirationIndex.getEarliestExpirationTime(ticketToAdd)));
     }
 
+    /**
+     * Gets the id of the principal the ticket belongs to. Principals are not exposed
+     * when tickets are encrypted.
+     *
+     * @param ticket the ticket
+     * @return the principal id, or null
+     */
+    private String getPrincipal(final Ticket ticket) {
+        if (isCipherExecutorEnabled()) {
+            return null;
+        }
+        final TicketGrantingTicket grantingTicket = ticket instanceof TicketGrantingTicket
+                ? (TicketGrantingTicket) ticket : ticket.getGrantingTicket();
+        final Authentication authentication = grantingTicket == null ? null : grantingTicket.getAuthentication();
+        return authentication == null ? null : authentication.getPrincipal().getId();
+    }
 
     @Override
     public boolean deleteSingleTicket(final String ticketId) {
-        final Ticket ticket = getTicket(ticketId);
-        if (ticket != null) {
-            return this.ticketIgniteCache.remove(ticket.getId());
-        }
-        return true;
+        return this.ticketIgniteCache.remove(encodeTicketId(ticketId));
     }
 
     @Override
@@ -136,29 +163,69 @@ public final class IgniteTicketRegistry extends AbstractTicketRegistry {
             return null;
         }
 
-        final Ticket ticket = this.ticketIgniteCache.get(ticketId);
-        if (ticket == null) {
+        final IgniteTicketDocument document = this.ticketIgniteCache.get(ticketId);
+        if (document == null) {
             logger.debug("No ticket by id [{}] is found in the registry", ticketId);
             return null;
         }
 
-        final Ticket proxiedTicket = decodeTicket(ticket);
+        final Ticket proxiedTicket = decodeTicket(document.getTicket());
         return getProxiedTicketInstance(proxiedTicket);
     }
 
     @Override
     public Collection<Ticket> getTickets() {
-        final IgniteBiPredicate<String, Ticket> filter = (IgniteBiPredicate<String, Ticket>) (key, t) -> !t.isExpired();
-        final QueryCursor<Cache.Entry<String, Ticket>> cursor = this.ticketIgniteCache.query(new ScanQuery<>(filter));
-        final Collection<Cache.Entry<String, Ticket>> cacheTickets = cursor.getAll();
+        final IgniteBiPredicate<String, IgniteTicketDocument> filter =
+                (IgniteBiPredicate<String, IgniteTicketDocument>) (key, document) ->
+                        document.getTicket() instanceof EncodedTicket || !document.getTicket().isExpired();
+        final QueryCursor<Cache.Entry<String, IgniteTicketDocument>> cursor = this.ticketIgniteCache.query(new ScanQuery<>(filter));
+        final Collection<Cache.Entry<String, IgniteTicketDocument>> cacheTickets = cursor.getAll();
         
         final Collection<Ticket> allTickets = new HashSet<>(cacheTickets.size());
-        cacheTickets.stream().forEach(entry -> allTickets.add(getProxiedTicketInstance(entry.getValue())));
+        cacheTickets.stream().forEach(entry -> allTickets.add(getProxiedTicketInstance(entry.getValue().getTicket())));
         return decodeTickets(allTickets);
     }
 
-    public void setTicketIgniteCache(final IgniteCache<String, Ticket> ticketIgniteCache) {
+    /**
+     * {@inheritDoc}
+     * Only tickets whose earliest expiration time has passed are retrieved, as found by an indexed query.
+     */
+    @Override
+    protected int cleanupExpiredTickets() {
+        final List<String> keys = queryFields("select _key from IgniteTicketDocument where expirationTime <= ?",
+                System.currentTimeMillis()).stream()
+                .map(row -> (String) row.get(0))
+                .collect(Collectors.toList());
+        int count = 0;
+        for (final List<String> batch : Lists.partition(keys, getCleanerBatchSize())) {
+            logger.debug("Examining {} ticket(s) that may have expired", batch.size());
+            final List<Ticket> expired = this.ticketIgniteCache.getAll(new HashSet<>(batch)).values().stream()
+                    .filter(Objects::nonNull)
+                    .map(document -> decodeTicket(document.getTicket()))
+                    .filter(Ticket::isExpired)
+                    .collect(Collectors.toList());
+            count += cleanupExpiredTickets(expired);
+        }
+        return count;
+    }
+
+    private List<List<?>> queryFields(final String sql, final Object... args) {
+        try (QueryCursor<List<?>> cursor = this.ticketIgniteCache.query(new SqlFieldsQuery(sql).setArgs(args))) {
+            return cursor.getAll();
+        }
+    }
+
+    private long countTickets(final String type) {
+        if (!this.supportRegistryState) {
+            return Long.MIN_VALUE;
+        }
+        final List<List<?>> result = queryFields("select count(*) from IgniteTicketDocument where type = ?", type);
+        return ((Number) result.get(0).get(0)).longValue();
+    }
+
+    public void setTicketIgniteCache(final IgniteCache<String, IgniteTicketDocument> ticketIgniteCache) {
         this.ticketIgniteCache = ticketIgniteCache;
+        this.expiryProjections.clear();
     }
 
     public void setIgniteConfiguration(final IgniteConfiguration igniteConfiguration){
@@ -233,6 +300,7 @@ public final class IgniteTicketRegistry extends AbstractTicketRegistry {
         logger.info("Setting up Ignite Ticket Registry...");
 
         configureSecureTransport();
+        configureIndexedTypes();
 
         if (logger.isDebugEnabled()) {
             logger.debug("igniteConfiguration.cacheConfiguration={}", igniteConfiguration.getCacheConfiguration());
@@ -246,18 +314,32 @@ public final class IgniteTicketRegistry extends AbstractTicketRegistry {
             ignite = Ignition.ignite();
         }
 
-        ticketIgniteCache = ignite.getOrCreateCache(cacheName);
-        
+        final CacheConfiguration<String, IgniteTicketDocument> cacheConfiguration = new CacheConfiguration<>(cacheName);
+        cacheConfiguration.setIndexedTypes(String.class, IgniteTicketDocument.class);
+        setTicketIgniteCache(ignite.getOrCreateCache(cacheConfiguration));
+    }
+
+    /**
+     * Index the SQL fields of the tickets cache, unless the configuration of the cache already specifies
+     * which types are indexed.
+     */
+    private void configureIndexedTypes() {
+        final CacheConfiguration[] configurations = this.igniteConfiguration.getCacheConfiguration();
+        if (configurations != null) {
+            Arrays.stream(configurations)
+                    .filter(configuration -> this.cacheName.equals(configuration.getName()) && configuration.getIndexedTypes() == null)
+                    .forEach(configuration -> configuration.setIndexedTypes(String.class, IgniteTicketDocument.class));
+        }
     }
 
     @Override
     public long sessionCount() {
-        return getTickets().stream().filter(t -> t instanceof TicketGrantingTicket).count();
+        return countTickets(IgniteTicketDocument.TYPE_TICKET_GRANTING_TICKET);
     }
 
     @Override
     public long serviceTicketCount() {
-        return getTickets().stream().filter(t -> t instanceof ServiceTicket).count();
+        return countTickets(IgniteTicketDocument.TYPE_SERVICE_TICKET);
     }
 
     /**
@@ -292,4 +374,51 @@ public final class IgniteTicketRegistry extends AbstractTicketRegistry {
                 .append("supportRegistryState", supportRegistryState)
                 .toString();
     }
+
+    /**
+     * Expires tickets after the time to live and idle of their expiration policy.
+     * Policies with the same times are equal, so that they can share a cache projection.
+     */
+    private static final class TicketExpiryPolicy implements ExpiryPolicy, Serializable {
+
+        private static final long serialVersionUID = -3452941932452781573L;
+
+        private final long timeToLive;
+
+        private final long timeToIdle;
+
+        TicketExpiryPolicy(final long timeToLive, final long timeToIdle) {
+            this.timeToLive = timeToLive;
+            this.timeToIdle = timeToIdle;
+        }
+
+        @Override
+        public Duration getExpiryForCreation() {
+            return new Duration(TimeUnit.SECONDS, this.timeToLive);
+        }
+
+        @Override
+        public Duration getExpiryForAccess() {
+            return new Duration(TimeUnit.SECONDS, this.timeToIdle);
+        }
+
+        @Override
+        public Duration getExpiryForUpdate() {
+            return new Duration(TimeUnit.SECONDS, this.timeToLive);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof TicketExpiryPolicy)) {
+                return false;
+            }
+            final TicketExpiryPolicy policy = (TicketExpiryPolicy) other;
+            return this.timeToLive == policy.timeToLive && this.timeToIdle == policy.timeToIdle;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.timeToLive, this.timeToIdle);
+        }
+    }
 }
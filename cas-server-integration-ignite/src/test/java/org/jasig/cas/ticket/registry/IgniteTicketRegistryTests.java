@@ -249,6 +249,29 @@ public final class IgniteTicketRegistryTests {
         assertNull(this.ticketRegistry.getTicket("ST3", ServiceTicket.class));
     }
 
+    @Test
+    public void verifyTicketsAreCountedByType() {
+        final TicketGrantingTicket tgt = new TicketGrantingTicketImpl("TGT-COUNT",
+                TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy());
+        this.ticketRegistry.addTicket(tgt);
+        this.ticketRegistry.addTicket(new TicketGrantingTicketImpl("TGT-COUNT-2",
+                TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy()));
+        this.ticketRegistry.addTicket(tgt.grantServiceTicket("ST-COUNT", org.jasig.cas.services.TestUtils.getService(),
+                new NeverExpiresExpirationPolicy(), false, true));
+
+        final TicketRegistryState state = (TicketRegistryState) this.ticketRegistry;
+        assertEquals(2, state.sessionCount());
+        assertEquals(1, state.serviceTicketCount());
+    }
+
+    @Test
+    public void verifyCleanupKeepsValidTickets() {
+        this.ticketRegistry.addTicket(new TicketGrantingTicketImpl("TGT-VALID",
+                TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy()));
+        ((IgniteTicketRegistry) this.ticketRegistry).cleanupTickets();
+        assertNotNull(this.ticketRegistry.getTicket("TGT-VALID", TicketGrantingTicket.class));
+    }
+
 
     /**
      * Cleaning ticket registry to start afresh, after newing up the instance.
@@ -3,11 +3,16 @@ package org.jasig.cas.ticket.registry;
 import org.jasig.cas.ticket.Ticket;
 
 import org.infinispan.Cache;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.util.Collection;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -90,7 +95,44 @@ public final class InfinispanTicketRegistry extends AbstractTicketRegistry {
         return decodeTickets(this.cache.values().stream().map(this::getProxiedTicketInstance).collect(Collectors.toList()));
     }
 
+    @Override
+    public boolean addTicketChangeListener(final Consumer<String> listener) {
+        this.cache.addListener(new TicketChangeListener(listener));
+        return true;
+    }
+
     public void setCache(final Cache<String, Ticket> cache) {
         this.cache = cache;
     }
+
+    /**
+     * Relays modifications and removals of tickets, on any node of the cluster, to a listener.
+     * Infinispan requires listener classes to be public.
+     */
+    @Listener(clustered = true)
+    public static final class TicketChangeListener {
+        private final Consumer<String> listener;
+
+        /**
+         * Instantiates a new ticket change listener.
+         *
+         * @param listener the listener to relay changed ticket ids to
+         */
+        public TicketChangeListener(final Consumer<String> listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Relay the id of a modified or removed ticket.
+         *
+         * @param event the event
+         */
+        @CacheEntryModified
+        @CacheEntryRemoved
+        public void onTicketChanged(final CacheEntryEvent<String, Ticket> event) {
+            if (!event.isPre()) {
+                this.listener.accept(event.getKey());
+            }
+        }
+    }
 }
@@ -11,9 +11,14 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 /**
  * Key-value ticket registry implementation that stores tickets in memcached keyed on the ticket ID.
@@ -122,6 +127,76 @@ public final class MemCacheTicketRegistry extends AbstractTicketRegistry impleme
         return false;
     }
 
+    @Override
+    public void addTickets(final Collection<Ticket> ticketsToAdd) {
+        if (this.client == null) {
+            logger.debug("No memcached client is configured.");
+            return;
+        }
+
+        // Issue all operations before waiting on any of them, so they are pipelined by the client
+        final List<Ticket> tickets = new ArrayList<>(ticketsToAdd.size());
+        final List<Future<Boolean>> results = new ArrayList<>(ticketsToAdd.size());
+        for (final Ticket ticketToAdd : ticketsToAdd) {
+            final Ticket ticket = encodeTicket(ticketToAdd);
+            logger.debug("Adding ticket {}", ticket);
+            tickets.add(ticket);
+            results.add(this.client.add(ticket.getId(), getTimeout(ticket), ticket));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                if (!results.get(i).get()) {
+                    logger.error("Failed adding {}", tickets.get(i));
+                }
+            } catch (final Exception e) {
+                logger.error("Failed adding {}", tickets.get(i), e);
+            }
+        }
+    }
+
+    @Override
+    protected int deleteSingleTickets(final Collection<String> ticketIds) {
+        if (this.client == null) {
+            logger.debug("No memcached client is configured.");
+            return 0;
+        }
+
+        final List<Future<Boolean>> results = new ArrayList<>(ticketIds.size());
+        for (final String ticketId : ticketIds) {
+            results.add(this.client.delete(encodeTicketId(ticketId)));
+        }
+        int count = 0;
+        for (final Future<Boolean> result : results) {
+            try {
+                if (result.get()) {
+                    count++;
+                }
+            } catch (final Exception e) {
+                logger.error("Ticket not found or is already removed. Failed deleting ticket", e);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Collection<Ticket> getTickets(final Collection<String> ticketIds) {
+        if (this.client == null) {
+            logger.debug("No memcached client is configured.");
+            return Collections.emptyList();
+        }
+
+        final List<String> encTicketIds = ticketIds.stream().map(this::encodeTicketId).collect(Collectors.toList());
+        try {
+            final Map<String, Object> tickets = this.client.getBulk(encTicketIds);
+            return tickets.values().stream()
+                    .map(t -> getProxiedTicketInstance(decodeTicket((Ticket) t)))
+                    .collect(Collectors.toList());
+        } catch (final Exception e) {
+            logger.error("Failed fetching {} ", encTicketIds, e);
+        }
+        return Collections.emptyList();
+    }
+
     @Override
     public Ticket getTicket(final String ticketIdToGet) {
         if (this.client == null) {
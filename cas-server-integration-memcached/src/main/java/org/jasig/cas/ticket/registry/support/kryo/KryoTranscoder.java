@@ -4,6 +4,7 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.pool.KryoPool;
 import com.esotericsoftware.kryo.serializers.DefaultSerializers;
 import de.javakaffee.kryoserializers.CollectionsEmptyListSerializer;
 import de.javakaffee.kryoserializers.CollectionsEmptyMapSerializer;
@@ -23,12 +24,17 @@ import net.spy.memcached.CachedData;
 import net.spy.memcached.transcoders.Transcoder;
 import org.jasig.cas.authentication.BasicCredentialMetaData;
 import org.jasig.cas.authentication.DefaultAuthentication;
+import org.jasig.cas.DefaultMessageDescriptor;
 import org.jasig.cas.authentication.DefaultHandlerResult;
+import org.jasig.cas.authentication.HttpBasedServiceCredential;
+import org.jasig.cas.authentication.RememberMeUsernamePasswordCredential;
 import org.jasig.cas.authentication.UsernamePasswordCredential;
 import org.jasig.cas.authentication.principal.SimplePrincipal;
 import org.jasig.cas.authentication.principal.SimpleWebApplicationServiceImpl;
 import org.jasig.cas.services.RegexRegisteredService;
 import org.jasig.cas.services.RegisteredServiceImpl;
+import org.jasig.cas.ticket.ProxyGrantingTicketImpl;
+import org.jasig.cas.ticket.ProxyTicketImpl;
 import org.jasig.cas.ticket.ServiceTicketImpl;
 import org.jasig.cas.ticket.TicketGrantingTicketImpl;
 import org.jasig.cas.ticket.registry.support.kryo.serial.RegisteredServiceSerializer;
@@ -43,15 +49,16 @@ import org.jasig.cas.ticket.support.ThrottledUseAndTimeoutExpirationPolicy;
 import org.jasig.cas.ticket.support.TicketGrantingTicketExpirationPolicy;
 import org.jasig.cas.ticket.support.TimeoutExpirationPolicy;
 import org.slf4j.impl.CasDelegatingLogger;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.net.URI;
 import java.net.URL;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.EnumSet;
@@ -65,6 +72,12 @@ import java.util.regex.Pattern;
 /**
  * {@link net.spy.memcached.MemcachedClient} transcoder implementation based on Kryo fast serialization framework
  * suited for efficient serialization of tickets.
+ * <p>
+ * Kryo instances are not thread-safe, so each encode and decode borrows an instance from a pool,
+ * and writes into a buffer that is reused by the calling thread. Ticket, authentication and service
+ * types are registered in a fixed order, so that their ids, which are part of the encoded form, remain
+ * the same across versions. When registration is required, encoding an unregistered type fails
+ * rather than writing its class name, which keeps payloads small.
  *
  * @author Marvin S. Addison
  * @since 3.0.0
@@ -73,16 +86,34 @@ import java.util.regex.Pattern;
 @Component("kryoTranscoder")
 public class KryoTranscoder implements Transcoder<Object> {
 
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    /**
+     * Output buffers, reused by each memcached client thread.
+     */
+    private final ThreadLocal<Output> outputs = ThreadLocal.withInitial(
+            () -> new Output(INITIAL_BUFFER_SIZE, CachedData.MAX_SIZE));
+
+    private final ThreadLocal<Input> inputs = ThreadLocal.withInitial(Input::new);
+
     /**
-     * Kryo serializer.
+     * Pool of configured Kryo instances.
      */
-    private final Kryo kryo = new KryoReflectionFactorySupport();
+    private KryoPool kryoPool;
 
     /**
      * Map of class to serializer that handles it.
      */
     private Map<Class<?>, Serializer> serializerMap;
 
+    /**
+     * Additional classes handled by Kryo's default serializer.
+     */
+    private Collection<Class<?>> classesToRegister;
+
+    @Value("${memcached.kryo.registration.required:false}")
+    private boolean registrationRequired;
+
     /**
      * Creates a Kryo-based transcoder.
      */
@@ -100,11 +131,127 @@ public class KryoTranscoder implements Transcoder<Object> {
     }
 
     /**
-     * Initialize and register classes with kryo.
+     * Sets additional types that should be registered with Kryo
+     * and handled by its default serializer.
+     *
+     * @param classes the classes to register
+     */
+    public void setClassesToRegister(final Collection<Class<?>> classes) {
+        this.classesToRegister = classes;
+    }
+
+    /**
+     * Sets whether types must be registered to be encoded.
+     *
+     * @param registrationRequired true, if registration is required
+     */
+    public void setRegistrationRequired(final boolean registrationRequired) {
+        this.registrationRequired = registrationRequired;
+    }
+
+    /**
+     * Initialize the pool of Kryo instances, and create one up front so
+     * that configuration errors surface on startup.
      */
     @PostConstruct
     public void initialize() {
-        // Register types we know about and do not require external configuration
+        this.kryoPool = new KryoPool.Builder(this::createKryo).softReferences().build();
+        this.kryoPool.release(this.kryoPool.borrow());
+    }
+
+    /**
+     * Asynchronous decoding is not supported.
+     *
+     * @param d Data to decode.
+     * @return False.
+     */
+    @Override
+    public boolean asyncDecode(final CachedData d) {
+        return false;
+    }
+
+    @Override
+    public CachedData encode(final Object obj) {
+        final Output output = this.outputs.get();
+        output.clear();
+        final Kryo kryo = this.kryoPool.borrow();
+        try {
+            kryo.writeClassAndObject(output, obj);
+        } finally {
+            this.kryoPool.release(kryo);
+        }
+        final byte[] bytes = output.toBytes();
+        return new CachedData(0, bytes, bytes.length);
+    }
+
+    @Override
+    public Object decode(final CachedData d) {
+        final Input input = this.inputs.get();
+        input.setBuffer(d.getData());
+        final Kryo kryo = this.kryoPool.borrow();
+        try {
+            return kryo.readClassAndObject(input);
+        } finally {
+            this.kryoPool.release(kryo);
+        }
+    }
+
+    /**
+     * Maximum size of encoded data supported by this transcoder.
+     *
+     * @return {@code net.spy.memcached.CachedData#MAX_SIZE}.
+     */
+    @Override
+    public int getMaxSize() {
+        return CachedData.MAX_SIZE;
+    }
+
+    /**
+     * Gets the pool of Kryo instances that provide encoding and decoding services for this instance.
+     *
+     * @return the Kryo pool
+     */
+    public KryoPool getKryoPool() {
+        return this.kryoPool;
+    }
+
+    /**
+     * Create and configure a Kryo instance for the pool.
+     *
+     * @return the kryo instance
+     */
+    private Kryo createKryo() {
+        final Kryo kryo = new KryoReflectionFactorySupport();
+        registerKnownTypes(kryo);
+
+        // Register other types
+        if (this.serializerMap != null) {
+            this.serializerMap.forEach(kryo::register);
+        }
+
+        // types registered since; appended so that the ids of the types above are left unchanged
+        registerAdditionalTypes(kryo);
+        if (this.classesToRegister != null) {
+            this.classesToRegister.forEach(kryo::register);
+        }
+
+        // forget unregistered class names after every write or read, since payloads are read by other instances
+        kryo.setAutoReset(true);
+        // don't replace objects by references
+        kryo.setReferences(false);
+        // Catchall for any classes not explicitly registered, unless registration is required
+        kryo.setRegistrationRequired(this.registrationRequired);
+        return kryo;
+    }
+
+    /**
+     * Register types we know about and do not require external configuration.
+     * Ids are assigned in order of registration and are part of the encoded form,
+     * so the order must not change; new types are registered by {@link #registerAdditionalTypes(Kryo)}.
+     *
+     * @param kryo the kryo instance
+     */
+    private static void registerKnownTypes(final Kryo kryo) {
         kryo.register(ArrayList.class);
         kryo.register(BasicCredentialMetaData.class);
         kryo.register(Class.class, new DefaultSerializers.ClassSerializer());
@@ -149,67 +296,20 @@ public class KryoTranscoder implements Transcoder<Object> {
         kryo.register(Collections.EMPTY_LIST.getClass(), new CollectionsEmptyListSerializer());
         kryo.register(Collections.EMPTY_MAP.getClass(), new CollectionsEmptyMapSerializer());
         kryo.register(Collections.EMPTY_SET.getClass(), new CollectionsEmptySetSerializer());
-
-        // Register other types
-        if (serializerMap != null) {
-            serializerMap.forEach(kryo::register);
-        }
-
-        // don't reinit the registered classes after every write or read
-        kryo.setAutoReset(false);
-        // don't replace objects by references
-        kryo.setReferences(false);
-        // Catchall for any classes not explicitly registered
-        kryo.setRegistrationRequired(false);
     }
 
     /**
-     * Asynchronous decoding is not supported.
+     * Register types that were not registered by earlier versions of this transcoder,
+     * unless they were already configured with a serializer of their own.
+     * New types must only ever be appended.
      *
-     * @param d Data to decode.
-     * @return False.
+     * @param kryo the kryo instance
      */
-    @Override
-    public boolean asyncDecode(final CachedData d) {
-        return false;
-    }
-
-    @Override
-    public CachedData encode(final Object obj) {
-        final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        try (final Output output = new Output(byteStream)) {
-            kryo.writeClassAndObject(output, obj);
-            output.flush();
-            final byte[] bytes = byteStream.toByteArray();
-            return new CachedData(0, bytes, bytes.length);
-        }
-    }
-
-    @Override
-    public Object decode(final CachedData d) {
-        final byte[] bytes = d.getData();
-        try (final Input input = new Input(new ByteArrayInputStream(bytes))) {
-            final Object obj = kryo.readClassAndObject(input);
-            return obj;
-        }
-    }
-
-    /**
-     * Maximum size of encoded data supported by this transcoder.
-     *
-     * @return {@code net.spy.memcached.CachedData#MAX_SIZE}.
-     */
-    @Override
-    public int getMaxSize() {
-        return CachedData.MAX_SIZE;
-    }
-
-    /**
-     * Gets the kryo object that provides encoding and decoding services for this instance.
-     *
-     * @return Underlying Kryo instance.
-     */
-    public Kryo getKryo() {
-        return kryo;
+    private static void registerAdditionalTypes(final Kryo kryo) {
+        Arrays.asList(ProxyGrantingTicketImpl.class, ProxyTicketImpl.class, HttpBasedServiceCredential.class,
+                RememberMeUsernamePasswordCredential.class, DefaultMessageDescriptor.class, String[].class, Object[].class)
+                .stream()
+                .filter(type -> kryo.getClassResolver().getRegistration(type) == null)
+                .forEach(kryo::register);
     }
 }
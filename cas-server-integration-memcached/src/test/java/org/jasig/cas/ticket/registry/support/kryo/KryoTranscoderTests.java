@@ -39,6 +39,7 @@ import java.security.GeneralSecurityException;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -47,6 +48,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -73,8 +77,7 @@ public class KryoTranscoderTests {
 
     public KryoTranscoderTests() {
         transcoder = new KryoTranscoder();
-        transcoder.getKryo().register(MockServiceTicket.class);
-        transcoder.getKryo().register(MockTicketGrantingTicket.class);
+        transcoder.setClassesToRegister(Arrays.asList(MockServiceTicket.class, MockTicketGrantingTicket.class));
         transcoder.initialize();
 
         this.principalAttributes = new HashMap<>();
@@ -213,6 +216,58 @@ public class KryoTranscoderTests {
         assertEquals(service, transcoder.decode(transcoder.encode(service)));
     }
 
+    @Test
+    public void verifyConcurrentEncodeDecode() throws Exception {
+        final TicketGrantingTicket expectedTGT = newTicketGrantingTicket();
+        final int size = transcoder.encode(expectedTGT).getData().length;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    for (int j = 0; j < 200; j++) {
+                        final CachedData data = transcoder.encode(expectedTGT);
+                        if (data.getData().length != size || !expectedTGT.equals(transcoder.decode(data))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (final Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void verifyRegistrationRequired() throws Exception {
+        final KryoTranscoder strictTranscoder = new KryoTranscoder();
+        strictTranscoder.setRegistrationRequired(true);
+        strictTranscoder.initialize();
+
+        final TicketGrantingTicket expectedTGT = newTicketGrantingTicket();
+        final CachedData data = strictTranscoder.encode(expectedTGT);
+        assertEquals(expectedTGT, strictTranscoder.decode(data));
+        assertEquals(expectedTGT, transcoder.decode(data));
+        assertTrue(data.getData().length <= transcoder.encode(expectedTGT).getData().length);
+
+        try {
+            strictTranscoder.encode(new StringBuilder(TGT_ID));
+            fail("Encoding an unregistered type should fail");
+        } catch (final IllegalArgumentException e) {
+            assertNotNull(e.getMessage());
+        }
+    }
+
+    private static TicketGrantingTicket newTicketGrantingTicket() {
+        return new TicketGrantingTicketImpl(TGT_ID, org.jasig.cas.authentication.TestUtils.getAuthentication(),
+                new NeverExpiresExpirationPolicy());
+    }
+
     private static class MockServiceTicket implements ServiceTicket {
 
         private static final long serialVersionUID = -206395373480723831L;
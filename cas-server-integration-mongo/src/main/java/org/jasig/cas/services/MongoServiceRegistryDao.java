@@ -12,7 +12,11 @@ import org.springframework.util.Assert;
 
 import javax.annotation.PostConstruct;
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * <p>Implementation of {@code ServiceRegistryDao} that uses a MongoDb repository as the backend
@@ -21,6 +25,8 @@ import java.util.List;
  * of the collection may be specified through {@link #setCollectionName(String)}.
  * It also presents the ability to drop an existing collection and start afresh
  * through the use of {@link #setDropCollection(boolean)}.</p>
+ * <p>Services are stamped with the time they are saved, such that changes
+ * can be {@link #findChangedServices(long, Collection) found} without loading every service.</p>
  * @author Misagh Moayyed
  * @since 4.1
  */
@@ -31,6 +37,10 @@ public final class MongoServiceRegistryDao implements ServiceRegistryDao {
 
     private static final String MONGODB_COLLECTION_NAME = RegisteredService.class.getSimpleName();
 
+    private static final String ID_FIELD = "_id";
+
+    private static final String LAST_MODIFIED_FIELD = "lastModified";
+
     private String collectionName = MONGODB_COLLECTION_NAME;
 
     private boolean dropCollection;
@@ -88,11 +98,24 @@ public final class MongoServiceRegistryDao implements ServiceRegistryDao {
         if (svc.getId() == AbstractRegisteredService.INITIAL_IDENTIFIER_VALUE) {
             ((AbstractRegisteredService) svc).setId(svc.hashCode());
         }
+        if (svc instanceof AbstractRegisteredService) {
+            ((AbstractRegisteredService) svc).setLastModified(System.currentTimeMillis());
+        }
         this.mongoTemplate.save(svc, this.collectionName);
         LOGGER.debug("Saved registered service: {}", svc);
         return this.findServiceById(svc.getId());
     }
 
+    @Override
+    public RegisteredServiceChanges findChangedServices(final long since, final Collection<Long> knownServiceIds) {
+        final List<RegisteredService> changed = this.mongoTemplate.find(
+                new Query(Criteria.where(LAST_MODIFIED_FIELD).gte(since)), RegisteredService.class, this.collectionName);
+        final Set<Object> ids = new HashSet<>(this.mongoTemplate.getCollection(this.collectionName).distinct(ID_FIELD));
+        final List<Long> deleted = new ArrayList<>();
+        knownServiceIds.stream().filter(id -> !ids.contains(id)).forEach(deleted::add);
+        return new RegisteredServiceChanges(changed, deleted);
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName();
@@ -1,5 +1,8 @@
 package org.jasig.cas.services;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.couchbase.client.java.AsyncBucket;
 import com.couchbase.client.java.Bucket;
 import com.couchbase.client.java.document.RawJsonDocument;
 import com.couchbase.client.java.view.DefaultView;
@@ -16,15 +19,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import rx.Observable;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.validation.constraints.NotNull;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 /**
  * This is {@link CouchbaseServiceRegistryDao}.
@@ -33,6 +43,9 @@ import java.util.List;
  * multi host NoSQL database with a memcached interface to persistent
  * storage which also is quite usable as a replicated ticket storage
  * engine for multiple front end CAS servers.
+ * <p>
+ * Services are loaded by querying the ids of all services from a view, and fetching
+ * their documents asynchronously, a bounded number at a time, before parsing them in parallel.
  *
  * @author Fredrik Jönsson "fjo@kth.se"
  * @author Misagh Moayyed
@@ -50,6 +63,8 @@ public class CouchbaseServiceRegistryDao implements ServiceRegistryDao {
 
     private static final String UTIL_DOCUMENT = "utils";
 
+    private static final int DEFAULT_LOAD_CONCURRENCY = 16;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     @NotNull
@@ -60,6 +75,22 @@ public class CouchbaseServiceRegistryDao implements ServiceRegistryDao {
     @Value("${svcreg.couchbase.query.enabled:true}")
     private boolean queryEnabled;
 
+    /**
+     * Maximum number of service documents fetched at the same time when services are loaded.
+     */
+    @Value("${svcreg.couchbase.load.concurrency:16}")
+    private int loadConcurrency = DEFAULT_LOAD_CONCURRENCY;
+
+    @Autowired(required = false)
+    @Qualifier("metrics")
+    private MetricRegistry metricRegistry;
+
+    private final Timer loadTimer = new Timer();
+
+    private final Timer fetchTimer = new Timer();
+
+    private final Timer parseTimer = new Timer();
+
     private final JsonSerializer<RegisteredService> registeredServiceJsonSerializer;
 
     /**
@@ -106,30 +137,80 @@ public class CouchbaseServiceRegistryDao implements ServiceRegistryDao {
 
     @Override
     public List<RegisteredService> load() {
+        final Timer.Context loadContext = this.loadTimer.time();
         try {
             logger.debug("Loading services");
 
             final Bucket bucket = couchbase.bucket();
             final ViewResult allKeys = bucket.query(ViewQuery.from(UTIL_DOCUMENT, ALL_SERVICES_VIEW.name()));
-            final List<RegisteredService> services = new LinkedList<>();
+            final List<String> ids = new ArrayList<>();
             for (final ViewRow row : allKeys) {
-
-                final RawJsonDocument document = row.document(RawJsonDocument.class);
-                if (document != null) {
-                    final String json = document.content();
-                    logger.debug("Found service: {}", json);
-
-                    final StringReader stringReader = new StringReader(json);
-                    services.add(registeredServiceJsonSerializer.fromJson(stringReader));
-                }
+                ids.add(row.id());
             }
+
+            final Map<String, String> documents = fetchDocuments(bucket.async(), ids, bucket.environment().kvTimeout());
+            final List<RegisteredService> services = parseDocuments(ids, documents);
+            final long elapsed = TimeUnit.NANOSECONDS.toMillis(loadContext.stop());
+            logger.debug("Loaded {} services out of {} view rows in {} ms", services.size(), ids.size(), elapsed);
             return services;
         } catch (final RuntimeException e) {
-            logger.error(e.getMessage(), e);
+            loadContext.stop();
+            if (e.getCause() instanceof TimeoutException) {
+                logger.error("Timed out fetching services", e);
+            } else {
+                logger.error(e.getMessage(), e);
+            }
             return new LinkedList<>();
         }
     }
 
+    /**
+     * Fetch the documents with the given ids, at most {@link #loadConcurrency} at a time.
+     * Asynchronous operations have no timeout of their own, so each fetch is given the
+     * key-value timeout of the environment, as blocking operations are.
+     *
+     * @param bucket  the bucket
+     * @param ids     the ids of the documents
+     * @param timeout the timeout of each fetch in milliseconds
+     * @return the JSON content of the documents that were found, by id
+     */
+    private Map<String, String> fetchDocuments(final AsyncBucket bucket, final List<String> ids, final long timeout) {
+        final Timer.Context context = this.fetchTimer.time();
+        try {
+            return Observable.from(ids)
+                    .flatMap(id -> bucket.get(id, RawJsonDocument.class).timeout(timeout, TimeUnit.MILLISECONDS),
+                            Math.max(this.loadConcurrency, 1))
+                    .toMap(RawJsonDocument::id, RawJsonDocument::content)
+                    .toBlocking()
+                    .single();
+        } finally {
+            context.stop();
+        }
+    }
+
+    /**
+     * Parse the documents in parallel, in the order of the given ids.
+     *
+     * @param ids       the ids of the documents, as returned by the view
+     * @param documents the JSON content of the documents, by id
+     * @return the registered services
+     */
+    private List<RegisteredService> parseDocuments(final List<String> ids, final Map<String, String> documents) {
+        final Timer.Context context = this.parseTimer.time();
+        try {
+            return ids.parallelStream()
+                    .map(documents::get)
+                    .filter(Objects::nonNull)
+                    .map(json -> {
+                        logger.debug("Found service: {}", json);
+                        return registeredServiceJsonSerializer.fromJson(new StringReader(json));
+                    })
+                    .collect(Collectors.toList());
+        } finally {
+            context.stop();
+        }
+    }
+
     @Override
     public RegisteredService findServiceById(final long id) {
         try {
@@ -154,6 +235,11 @@ public class CouchbaseServiceRegistryDao implements ServiceRegistryDao {
         System.setProperty("com.couchbase.queryEnabled", Boolean.toString(this.queryEnabled));
         couchbase.ensureIndexes(UTIL_DOCUMENT, ALL_VIEWS);
         couchbase.initialize();
+        if (this.metricRegistry != null) {
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "LOAD_TIMER"), this.loadTimer);
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "LOAD_FETCH_TIMER"), this.fetchTimer);
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "LOAD_PARSE_TIMER"), this.parseTimer);
+        }
     }
 
     /**
@@ -171,4 +257,8 @@ public class CouchbaseServiceRegistryDao implements ServiceRegistryDao {
     public void setCouchbaseClientFactory(final CouchbaseClientFactory couchbase) {
         this.couchbase = couchbase;
     }
+
+    public void setLoadConcurrency(final int loadConcurrency) {
+        this.loadConcurrency = loadConcurrency;
+    }
 }
@@ -1,5 +1,6 @@
 package org.jasig.cas.ticket.registry;
 
+import com.couchbase.client.java.AsyncBucket;
 import com.couchbase.client.java.document.SerializableDocument;
 import com.couchbase.client.java.view.DefaultView;
 import com.couchbase.client.java.view.View;
@@ -14,6 +15,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import rx.Observable;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -22,6 +24,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -47,6 +50,8 @@ public final class CouchbaseTicketRegistry extends AbstractTicketRegistry implem
     });
     private static final String UTIL_DOCUMENT = "statistics";
 
+    private static final int DEFAULT_BULK_CONCURRENCY = 16;
+
     @NotNull
     @Autowired
     @Qualifier("ticketRegistryCouchbaseClientFactory")
@@ -56,6 +61,12 @@ public final class CouchbaseTicketRegistry extends AbstractTicketRegistry implem
     @Value("${ticketreg.couchbase.query.enabled:true}")
     private boolean queryEnabled;
 
+    /**
+     * Maximum number of operations of a bulk add, get or delete that are in flight at the same time.
+     */
+    @Value("${ticketreg.couchbase.bulk.concurrency:16}")
+    private int bulkConcurrency = DEFAULT_BULK_CONCURRENCY;
+
     /**
      * Default constructor.
      */
@@ -110,6 +121,76 @@ public final class CouchbaseTicketRegistry extends AbstractTicketRegistry implem
         }
     }
 
+    @Override
+    public void addTickets(final Collection<Ticket> tickets) {
+        final AsyncBucket bucket = couchbase.bucket().async();
+        final long timeout = getOperationTimeout();
+        Observable.from(tickets)
+                .flatMap(ticketToAdd -> {
+                    logger.debug("Adding ticket {}", ticketToAdd);
+                    final Ticket ticket = encodeTicket(ticketToAdd);
+                    final SerializableDocument document = SerializableDocument.create(ticket.getId(),
+                            ticket.getExpirationPolicy().getTimeToLive().intValue(), ticket);
+                    return bucket.upsert(document)
+                            .timeout(timeout, TimeUnit.MILLISECONDS)
+                            .doOnError(e -> logger.error("Failed adding {}: {}", ticketToAdd, e))
+                            .onErrorResumeNext(Observable.<SerializableDocument>empty());
+                }, getBulkConcurrency())
+                .toList()
+                .toBlocking()
+                .single();
+    }
+
+    @Override
+    public Collection<Ticket> getTickets(final Collection<String> ticketIds) {
+        final AsyncBucket bucket = couchbase.bucket().async();
+        final long timeout = getOperationTimeout();
+        return Observable.from(ticketIds)
+                .map(this::encodeTicketId)
+                .flatMap(ticketId -> bucket.get(ticketId, SerializableDocument.class)
+                        .timeout(timeout, TimeUnit.MILLISECONDS)
+                        .doOnError(e -> logger.error("Failed fetching {}: {}", ticketId, e))
+                        .onErrorResumeNext(Observable.<SerializableDocument>empty()), getBulkConcurrency())
+                .map(document -> getProxiedTicketInstance(decodeTicket((Ticket) document.content())))
+                .toList()
+                .toBlocking()
+                .single();
+    }
+
+    @Override
+    protected int deleteSingleTickets(final Collection<String> ticketIds) {
+        logger.debug("Deleting tickets {}", ticketIds);
+        final AsyncBucket bucket = couchbase.bucket().async();
+        final long timeout = getOperationTimeout();
+        return Observable.from(ticketIds)
+                .map(this::encodeTicketId)
+                .flatMap(ticketId -> bucket.remove(ticketId)
+                        .timeout(timeout, TimeUnit.MILLISECONDS)
+                        .doOnError(e -> logger.debug("Failed deleting {}: {}", ticketId, e))
+                        .onErrorResumeNext(Observable.empty()), getBulkConcurrency())
+                .count()
+                .toBlocking()
+                .single();
+    }
+
+    /**
+     * Gets the timeout of each asynchronous operation of a bulk add, get or delete. Asynchronous
+     * operations have no timeout of their own, so they are given the key-value timeout of the
+     * environment, as blocking operations are. An operation that times out fails on its own.
+     *
+     * @return the timeout in milliseconds
+     */
+    private long getOperationTimeout() {
+        return couchbase.bucket().environment().kvTimeout();
+    }
+
+    private int getBulkConcurrency() {
+        return Math.max(this.bulkConcurrency, 1);
+    }
+
+    public void setBulkConcurrency(final int bulkConcurrency) {
+        this.bulkConcurrency = bulkConcurrency;
+    }
 
     /**
      * Starts the couchbase client.
@@ -5,10 +5,16 @@ import org.springframework.stereotype.Component;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Implementation of the ServiceRegistryDao based on JPA.
+ * Services are stamped with the time they are saved, such that changes
+ * can be {@link #findChangedServices(long, Collection) found} without loading every service.
  *
  * @author Scott Battaglia
  * @since 3.1
@@ -38,6 +44,9 @@ public final class JpaServiceRegistryDaoImpl implements ServiceRegistryDao {
     @Override
     public RegisteredService save(final RegisteredService registeredService) {
         final boolean isNew = registeredService.getId() == RegisteredService.INITIAL_IDENTIFIER_VALUE;
+        if (registeredService instanceof AbstractRegisteredService) {
+            ((AbstractRegisteredService) registeredService).setLastModified(System.currentTimeMillis());
+        }
 
         final RegisteredService r = this.entityManager.merge(registeredService);
 
@@ -53,6 +62,19 @@ public final class JpaServiceRegistryDaoImpl implements ServiceRegistryDao {
         return this.entityManager.find(AbstractRegisteredService.class, id);
     }
 
+    @Override
+    public RegisteredServiceChanges findChangedServices(final long since, final Collection<Long> knownServiceIds) {
+        final List<RegisteredService> changed = this.entityManager.createQuery(
+                "select r from AbstractRegisteredService r where r.lastModified >= :since", RegisteredService.class)
+                .setParameter("since", since)
+                .getResultList();
+        final Set<Long> ids = new HashSet<>(this.entityManager.createQuery(
+                "select r.id from AbstractRegisteredService r", Long.class).getResultList());
+        final List<Long> deleted = new ArrayList<>();
+        knownServiceIds.stream().filter(id -> !ids.contains(id)).forEach(deleted::add);
+        return new RegisteredServiceChanges(changed, deleted);
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName();
@@ -0,0 +1,64 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.authentication.principal.Service;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This is {@link JpaTicketGrantingTicketDelegator} that reads the services of a
+ * ticket-granting ticket from the service sessions stored by the {@link JpaTicketRegistry}.
+ * Services recorded on the ticket itself, before service sessions were stored separately,
+ * are included as well. Once the ticket is about to be removed, its service sessions
+ * can be captured, so that they remain available to a logout performed afterwards.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class JpaTicketGrantingTicketDelegator extends TicketGrantingTicketDelegator<TicketGrantingTicket> {
+
+    private static final long serialVersionUID = -2245407633870377423L;
+
+    private Map<String, Service> capturedServiceSessions;
+
+    /**
+     * Instantiates a new ticket granting ticket delegator.
+     *
+     * @param ticketRegistry       the ticket registry
+     * @param ticketGrantingTicket the ticket granting ticket
+     * @param callback             the callback
+     */
+    JpaTicketGrantingTicketDelegator(final AbstractTicketRegistry ticketRegistry,
+                                     final TicketGrantingTicket ticketGrantingTicket, final boolean callback) {
+        super(ticketRegistry, ticketGrantingTicket, callback);
+    }
+
+    @Override
+    public Map<String, Service> getServices() {
+        final Map<String, Service> services = new LinkedHashMap<>(getTicket().getServices());
+        services.putAll(this.capturedServiceSessions != null
+                ? this.capturedServiceSessions : getJpaTicketRegistry().getServiceSessions(getId()));
+        return services;
+    }
+
+    /**
+     * Use the given service sessions instead of reading them from the registry,
+     * which may have removed them by the time the services are asked for.
+     *
+     * @param serviceSessions the service sessions of the ticket, mapped by service ticket id
+     */
+    void captureServiceSessions(final Map<String, Service> serviceSessions) {
+        this.capturedServiceSessions = serviceSessions;
+    }
+
+    @Override
+    public void removeAllServices() {
+        getTicket().removeAllServices();
+        getJpaTicketRegistry().deleteServiceSessions(getId());
+    }
+
+    private JpaTicketRegistry getJpaTicketRegistry() {
+        return (JpaTicketRegistry) getTicketRegistry();
+    }
+}
@@ -1,5 +1,9 @@
 package org.jasig.cas.ticket.registry;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import org.jasig.cas.authentication.principal.Service;
 import org.jasig.cas.support.oauth.ticket.OAuthToken;
 import org.jasig.cas.support.oauth.ticket.accesstoken.AccessToken;
 import org.jasig.cas.support.oauth.ticket.code.OAuthCode;
@@ -11,19 +15,38 @@ import org.jasig.cas.ticket.TicketGrantingTicket;
 import org.jasig.cas.ticket.TicketGrantingTicketImpl;
 import org.jasig.cas.ticket.proxy.ProxyGrantingTicket;
 import org.jasig.cas.ticket.registry.support.LockingStrategy;
+import org.jasig.cas.ticket.registry.support.ServiceSession;
+import org.jasig.cas.util.Pair;
+import org.jasig.cas.ticket.ExpirationPolicy;
+import org.jasig.cas.ticket.support.MultiTimeUseOrTimeoutExpirationPolicy;
+import org.jasig.cas.ticket.support.NeverExpiresExpirationPolicy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.LockModeType;
+import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
 import javax.validation.constraints.NotNull;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * JPA implementation of a CAS {@link TicketRegistry}. This implementation of
@@ -36,6 +59,15 @@ import java.util.List;
 @Component("jpaTicketRegistry")
 public final class JpaTicketRegistry extends AbstractTicketRegistry {
 
+    /**
+     * Maximum number of ticket ids passed to a single {@code IN} clause,
+     * which keeps bulk statements within the limits of common databases.
+     */
+    private static final int MAX_IDS_PER_STATEMENT = 500;
+
+    /** Default age in seconds after which service tickets are removed by the cleaner. */
+    private static final long DEFAULT_SERVICE_TICKET_MAX_AGE = 300;
+
     @Autowired
     @Qualifier("jpaLockingStrategy")
     private LockingStrategy jpaLockingStrategy;
@@ -43,6 +75,72 @@ public final class JpaTicketRegistry extends AbstractTicketRegistry {
     @Value("${ticketreg.database.jpa.locking.tgt.enabled:true}")
     private boolean lockTgt = true;
 
+    /**
+     * Whether ticket-granting tickets are read without locks, relying on their
+     * version to detect conflicting updates. Takes precedence over {@link #lockTgt}.
+     */
+    @Value("${ticketreg.database.jpa.locking.tgt.optimistic:false}")
+    private boolean optimisticLocking;
+
+    /** Number of times a conflicting update of a ticket-granting ticket is retried. */
+    @Value("${ticketreg.database.jpa.locking.tgt.optimistic.retries:3}")
+    private int optimisticLockingRetries = 3;
+
+    /**
+     * Whether services granted by ticket-granting tickets are stored as rows of their own,
+     * rather than as part of the serialized ticket.
+     */
+    @Value("${ticketreg.database.jpa.services.normalized:false}")
+    private boolean normalizedServiceSessions;
+
+    /**
+     * Number of partitions the cleaner splits tickets into by the hash of their id,
+     * so that several nodes can clean up at once. With a single partition,
+     * one node at a time cleans up all tickets under the cleanup lock.
+     */
+    @Value("${ticketreg.database.jpa.cleaner.partitions:1}")
+    private int cleanerPartitions = 1;
+
+    /** The partition this node cleans up, starting at zero. Must be different on each node. */
+    @Value("${ticketreg.database.jpa.cleaner.partition:0}")
+    private int cleanerPartition;
+
+    /**
+     * Age in seconds after which service and proxy tickets are removed without being loaded.
+     * Raised at startup to the longest time to kill of service and proxy tickets.
+     */
+    @Value("${ticketreg.database.jpa.cleaner.st.maxage:300}")
+    private long serviceTicketMaxAge = DEFAULT_SERVICE_TICKET_MAX_AGE;
+
+    /**
+     * Time in seconds a ticket-granting ticket must have been idle before the cleaner examines it.
+     * Can be set to the shortest idle timeout of ticket-granting tickets; zero examines every ticket.
+     */
+    @Value("${ticketreg.database.jpa.cleaner.tgt.minidle:0}")
+    private long ticketGrantingTicketMinIdle;
+
+    private boolean cleanupLockAcquired;
+
+    @Autowired
+    @Qualifier("ticketTransactionManager")
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    @Qualifier("metrics")
+    private MetricRegistry metricRegistry;
+
+    @Autowired(required = false)
+    @Qualifier("serviceTicketExpirationPolicy")
+    private ExpirationPolicy serviceTicketExpirationPolicy;
+
+    @Autowired(required = false)
+    @Qualifier("proxyTicketExpirationPolicy")
+    private ExpirationPolicy proxyTicketExpirationPolicy;
+
+    private final Meter optimisticLockConflicts = new Meter();
+
+    private final Meter optimisticLockRetries = new Meter();
+
     @NotNull
     @PersistenceContext(unitName = "ticketEntityManagerFactory")
     private EntityManager entityManager;
@@ -50,9 +148,199 @@ public final class JpaTicketRegistry extends AbstractTicketRegistry {
     @Override
     public void updateTicket(final Ticket ticket) {
         entityManager.merge(ticket);
+        if (this.optimisticLocking && ticket instanceof TicketGrantingTicket) {
+            try {
+                entityManager.flush();
+            } catch (final OptimisticLockException e) {
+                this.optimisticLockConflicts.mark();
+                throw e;
+            }
+        }
         logger.debug("Updated ticket [{}].", ticket);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>With optimistic locking, the grant is applied to the latest version of the ticket
+     * in a transaction of its own, which is retried when a concurrent update conflicts with it.
+     * The ticket itself is detached, so that the current transaction does not overwrite the result.</p>
+     */
+    @Override
+    protected void updateTicketGrantingTicket(final TicketGrantingTicket ticket, final String serviceTicketId,
+                                              final Service service, final boolean onlyTrackMostRecentSession) {
+        if (this.normalizedServiceSessions && !(ticket instanceof ProxyGrantingTicket)) {
+            addServiceSession(ticket, serviceTicketId, service, onlyTrackMostRecentSession);
+            return;
+        }
+        if (!this.optimisticLocking) {
+            updateTicket(ticket);
+            return;
+        }
+        if (entityManager.contains(ticket)) {
+            entityManager.detach(ticket);
+        }
+
+        final TransactionTemplate template = new TransactionTemplate(this.transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (int attempt = 0;; attempt++) {
+            try {
+                template.execute(status -> {
+                    final TicketGrantingTicket current = entityManager.find(TicketGrantingTicketImpl.class, ticket.getId());
+                    if (current != null) {
+                        // the service ticket is added separately; granting it again only updates the current version
+                        current.grantServiceTicket(serviceTicketId, service, new NeverExpiresExpirationPolicy(),
+                                false, onlyTrackMostRecentSession);
+                    }
+                    return null;
+                });
+                return;
+            } catch (final OptimisticLockingFailureException e) {
+                this.optimisticLockConflicts.mark();
+                if (attempt >= this.optimisticLockingRetries) {
+                    logger.warn("Giving up updating ticket [{}] after {} conflicting updates", ticket.getId(), attempt + 1);
+                    throw e;
+                }
+                this.optimisticLockRetries.mark();
+                logger.debug("Ticket [{}] was updated concurrently. Retrying update", ticket.getId());
+            }
+        }
+    }
+
+    /**
+     * Records the grant as a new service session, and only updates the usage
+     * statistics of the ticket-granting ticket, which is left detached so that
+     * its serialized services are not written again. The version of the ticket
+     * is incremented as well, so that concurrent updates of the ticket that
+     * are checked optimistically do not overwrite the statistics.
+     */
+    private void addServiceSession(final TicketGrantingTicket ticket, final String serviceTicketId,
+                                   final Service service, final boolean onlyTrackMostRecentSession) {
+        if (entityManager.contains(ticket)) {
+            entityManager.detach(ticket);
+        }
+        if (onlyTrackMostRecentSession) {
+            entityManager.createQuery("delete from ServiceSession s where s.ticketGrantingTicketId = :id and s.servicePath = :path")
+                    .setParameter("id", ticket.getId())
+                    .setParameter("path", ServiceSession.normalizePath(service))
+                    .executeUpdate();
+        }
+        entityManager.persist(new ServiceSession(serviceTicketId, ticket.getId(), service));
+        final ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        entityManager.createQuery("update TicketGrantingTicketImpl t set t.previousLastTimeUsed = t.lastTimeUsed, "
+                + "t.lastTimeUsed = :now, t.lastTimeUsedMillis = :nowMillis, t.countOfUses = t.countOfUses + 1, "
+                + "t.version = coalesce(t.version, 0) + 1 where t.id = :id")
+                .setParameter("now", now)
+                .setParameter("nowMillis", now.toInstant().toEpochMilli())
+                .setParameter("id", ticket.getId())
+                .executeUpdate();
+        logger.debug("Added service session [{}] to ticket [{}].", serviceTicketId, ticket.getId());
+    }
+
+    /**
+     * Gets the services of the given ticket-granting ticket that are stored as service sessions.
+     *
+     * @param ticketGrantingTicketId the ticket-granting ticket id
+     * @return the services, mapped by service ticket id
+     */
+    Map<String, Service> getServiceSessions(final String ticketGrantingTicketId) {
+        return entityManager.createQuery("select s from ServiceSession s where s.ticketGrantingTicketId = :id", ServiceSession.class)
+                .setParameter("id", ticketGrantingTicketId)
+                .getResultList().stream()
+                .collect(Collectors.toMap(ServiceSession::getId, ServiceSession::getService));
+    }
+
+    /**
+     * Captures the service sessions of the given tickets with as few statements as possible,
+     * so that logout notifications sent after the tickets are removed still reach their services.
+     *
+     * @param tickets the tickets about to be removed
+     */
+    private void captureServiceSessions(final Collection<Ticket> tickets) {
+        final Map<String, JpaTicketGrantingTicketDelegator> delegators = tickets.stream()
+                .filter(JpaTicketGrantingTicketDelegator.class::isInstance)
+                .map(JpaTicketGrantingTicketDelegator.class::cast)
+                .collect(Collectors.toMap(Ticket::getId, Function.identity()));
+        final Map<String, Map<String, Service>> serviceSessions = new HashMap<>();
+        for (final List<String> ids : Lists.partition(new ArrayList<>(delegators.keySet()), MAX_IDS_PER_STATEMENT)) {
+            entityManager.createQuery("select s from ServiceSession s where s.ticketGrantingTicketId in :ids", ServiceSession.class)
+                    .setParameter("ids", ids)
+                    .getResultList()
+                    .forEach(s -> serviceSessions.computeIfAbsent(s.getTicketGrantingTicketId(), id -> new HashMap<>())
+                            .put(s.getId(), s.getService()));
+        }
+        delegators.forEach((id, delegator) ->
+                delegator.captureServiceSessions(serviceSessions.getOrDefault(id, Collections.emptyMap())));
+    }
+
+    /**
+     * Deletes the service sessions of the given ticket-granting ticket.
+     *
+     * @param ticketGrantingTicketId the ticket-granting ticket id
+     */
+    void deleteServiceSessions(final String ticketGrantingTicketId) {
+        executeBulkDelete("delete from ServiceSession s where s.ticketGrantingTicketId in :ids",
+                Collections.singletonList(ticketGrantingTicketId));
+    }
+
+    /**
+     * Wraps ticket-granting tickets, but not proxy-granting tickets, in delegators
+     * that read their services from the service sessions.
+     */
+    @PostConstruct
+    public void registerServiceSessionDelegator() {
+        if (this.normalizedServiceSessions) {
+            final int index = Lists.transform(getTicketDelegators(), Pair::getFirst).indexOf(TicketGrantingTicket.class);
+            registerTicketDelegator(Math.max(index, 0), TicketGrantingTicket.class, JpaTicketGrantingTicketDelegator::new);
+        }
+    }
+
+    /**
+     * Raises the age after which service and proxy tickets are removed to their longest time to kill,
+     * since the cleaner removes them by age alone without consulting their expiration policies.
+     */
+    @PostConstruct
+    public void validateServiceTicketMaxAge() {
+        final long timeToLive = Math.max(getTimeToLiveInSeconds(this.serviceTicketExpirationPolicy),
+                getTimeToLiveInSeconds(this.proxyTicketExpirationPolicy));
+        if (this.serviceTicketMaxAge < timeToLive) {
+            logger.warn("Service tickets live for up to [{}] seconds, but would be removed after [{}] seconds. "
+                    + "Removing them after [{}] seconds instead", timeToLive, this.serviceTicketMaxAge, timeToLive);
+            this.serviceTicketMaxAge = timeToLive;
+        }
+    }
+
+    /**
+     * Gets the time to live of the policy in seconds. Multiple use policies,
+     * which service and proxy tickets use by default, report it in milliseconds.
+     *
+     * @param policy the expiration policy, may be null
+     * @return the time to live in seconds, or zero when unknown
+     */
+    private static long getTimeToLiveInSeconds(final ExpirationPolicy policy) {
+        if (policy == null || policy.getTimeToLive() == null) {
+            return 0;
+        }
+        if (policy instanceof MultiTimeUseOrTimeoutExpirationPolicy) {
+            return TimeUnit.MILLISECONDS.toSeconds(policy.getTimeToLive() + TimeUnit.SECONDS.toMillis(1) - 1);
+        }
+        return policy.getTimeToLive();
+    }
+
+    public void setNormalizedServiceSessions(final boolean normalizedServiceSessions) {
+        this.normalizedServiceSessions = normalizedServiceSessions;
+    }
+
+    @Override
+    public void registerMetrics() {
+        super.registerMetrics();
+        if (this.metricRegistry != null) {
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "OPTIMISTIC_LOCK_CONFLICTS"),
+                    this.optimisticLockConflicts);
+            this.metricRegistry.register(MetricRegistry.name(getClass(), "OPTIMISTIC_LOCK_RETRIES"),
+                    this.optimisticLockRetries);
+        }
+    }
+
     @Override
     public void addTicket(final Ticket ticket) {
         entityManager.persist(ticket);
@@ -93,7 +381,7 @@ public final class JpaTicketRegistry extends AbstractTicketRegistry {
                     || ticketId.startsWith(ProxyGrantingTicket.PROXY_GRANTING_TICKET_PREFIX)) {
                 // There is no need to distinguish between TGTs and PGTs since PGTs inherit from TGTs
                 return entityManager.find(TicketGrantingTicketImpl.class, ticketId,
-                        lockTgt ? LockModeType.PESSIMISTIC_WRITE : null);
+                        isTicketGrantingTicketLocked() ? LockModeType.PESSIMISTIC_WRITE : null);
             } else if (ticketId.startsWith(OAuthCode.PREFIX) || ticketId.startsWith(AccessToken.PREFIX)) {
                 return entityManager.find(OAuthCodeImpl.class, ticketId);
             }
@@ -105,6 +393,18 @@ public final class JpaTicketRegistry extends AbstractTicketRegistry {
         return null;
     }
 
+    private boolean isTicketGrantingTicketLocked() {
+        return this.lockTgt && !this.optimisticLocking;
+    }
+
+    public void setOptimisticLocking(final boolean optimisticLocking) {
+        this.optimisticLocking = optimisticLocking;
+    }
+
+    public void setOptimisticLockingRetries(final int optimisticLockingRetries) {
+        this.optimisticLockingRetries = optimisticLockingRetries;
+    }
+
     @Override
     public Collection<Ticket> getTickets() {
         final List<TicketGrantingTicketImpl> tgts = entityManager
@@ -120,6 +420,68 @@ public final class JpaTicketRegistry extends AbstractTicketRegistry {
         return tickets;
     }
 
+    @Override
+    public Collection<Ticket> getTickets(final Collection<String> ticketIds) {
+        final List<String> tgtIds = new ArrayList<>();
+        final List<String> oAuthIds = new ArrayList<>();
+        final List<String> stIds = new ArrayList<>();
+        for (final String ticketId : ticketIds) {
+            if (ticketId.startsWith(TicketGrantingTicket.PREFIX)
+                    || ticketId.startsWith(ProxyGrantingTicket.PROXY_GRANTING_TICKET_PREFIX)) {
+                tgtIds.add(ticketId);
+            } else if (ticketId.startsWith(OAuthCode.PREFIX) || ticketId.startsWith(AccessToken.PREFIX)) {
+                oAuthIds.add(ticketId);
+            } else {
+                stIds.add(ticketId);
+            }
+        }
+
+        final List<Ticket> tickets = new ArrayList<>(ticketIds.size());
+        for (final List<String> ids : Lists.partition(tgtIds, MAX_IDS_PER_STATEMENT)) {
+            final TypedQuery<TicketGrantingTicketImpl> query = entityManager.createQuery(
+                    "select t from TicketGrantingTicketImpl t where t.id in :ids", TicketGrantingTicketImpl.class);
+            if (isTicketGrantingTicketLocked()) {
+                query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+            }
+            tickets.addAll(query.setParameter("ids", ids).getResultList());
+        }
+        for (final List<String> ids : Lists.partition(oAuthIds, MAX_IDS_PER_STATEMENT)) {
+            tickets.addAll(entityManager.createQuery("select o from OAuthCodeImpl o where o.id in :ids", OAuthCodeImpl.class)
+                    .setParameter("ids", ids).getResultList());
+        }
+        for (final List<String> ids : Lists.partition(stIds, MAX_IDS_PER_STATEMENT)) {
+            tickets.addAll(entityManager.createQuery("select s from ServiceTicketImpl s where s.id in :ids", ServiceTicketImpl.class)
+                    .setParameter("ids", ids).getResultList());
+        }
+        return tickets.stream().map(this::getProxiedTicketInstance).collect(Collectors.toList());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Tickets are removed with bulk statements, children first, mirroring
+     * the removal of a single ticket-granting ticket.
+     */
+    @Override
+    protected int deleteSingleTickets(final Collection<String> ticketIds) {
+        int count = 0;
+        for (final List<String> ids : Lists.partition(new ArrayList<>(ticketIds), MAX_IDS_PER_STATEMENT)) {
+            executeBulkDelete("delete from ServiceTicketImpl s where s.ticketGrantingTicket.id in :ids and s.id not in :ids", ids);
+            count += executeBulkDelete("delete from ServiceTicketImpl s where s.id in :ids", ids);
+            count += executeBulkDelete("delete from OAuthCodeImpl o where o.id in :ids", ids);
+            if (this.normalizedServiceSessions) {
+                executeBulkDelete("delete from ServiceSession s where s.ticketGrantingTicketId in :ids", ids);
+            }
+            executeBulkDelete("delete from TicketGrantingTicketImpl t where t.ticketGrantingTicket.id in :ids and t.id not in :ids", ids);
+            count += executeBulkDelete("delete from TicketGrantingTicketImpl t where t.id in :ids", ids);
+        }
+        logger.debug("Removed {} of {} ticket(s) from registry.", count, ticketIds.size());
+        return count;
+    }
+
+    private int executeBulkDelete(final String query, final List<String> ticketIds) {
+        return entityManager.createQuery(query).setParameter("ids", ticketIds).executeUpdate();
+    }
+
     @Override
     protected boolean needsCallback() {
         return false;
@@ -196,6 +558,10 @@ public final class JpaTicketRegistry extends AbstractTicketRegistry {
                 "select t from TicketGrantingTicketImpl t where t.id = :id", TicketGrantingTicketImpl.class);
         failureCount += deleteTicketsFromResultList(ticketGrantingTicketImpls);
 
+        if (this.normalizedServiceSessions) {
+            deleteServiceSessions(ticketId);
+        }
+
         return failureCount;
     }
 
@@ -209,20 +575,147 @@ public final class JpaTicketRegistry extends AbstractTicketRegistry {
         return ((Number) result).longValue();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>Service tickets older than {@link #serviceTicketMaxAge} are removed with bulk statements,
+     * found by their indexed creation time. Ticket-granting tickets that have been idle for at least
+     * {@link #ticketGrantingTicketMinIdle}, or that were marked as expired, are found by their indexed
+     * last time used and examined a page at a time. Each batch runs in a short transaction of its own,
+     * and only covers the partition of this node.</p>
+     */
+    @Override
+    protected int cleanupExpiredTickets() {
+        final long now = System.currentTimeMillis();
+        final int count = cleanupExpiredServiceTickets(now - TimeUnit.SECONDS.toMillis(this.serviceTicketMaxAge));
+        return count + cleanupExpiredTicketGrantingTickets(now - TimeUnit.SECONDS.toMillis(this.ticketGrantingTicketMinIdle));
+    }
+
+    private int cleanupExpiredServiceTickets(final long createdBefore) {
+        final TransactionTemplate template = new TransactionTemplate(this.transactionManager);
+        final int batchSize = getCleanerBatchSize();
+        int count = 0;
+        int found;
+        do {
+            final List<String> ids = template.execute(status -> createPartitionedQuery(
+                    "select s.id from ServiceTicketImpl s where (s.creationTimeMillis < :before or s.creationTimeMillis is null)",
+                    "s", String.class)
+                    .setParameter("before", createdBefore)
+                    .setMaxResults(batchSize)
+                    .getResultList());
+            found = ids.size();
+            for (final List<String> batch : Lists.partition(ids, MAX_IDS_PER_STATEMENT)) {
+                count += template.execute(status -> executeBulkDelete("delete from ServiceTicketImpl s where s.id in :ids", batch));
+            }
+        } while (found >= batchSize);
+        logger.debug("Removed {} service ticket(s) created before {}", count, createdBefore);
+        return count;
+    }
+
+    private int cleanupExpiredTicketGrantingTickets(final long lastUsedBefore) {
+        final TransactionTemplate template = new TransactionTemplate(this.transactionManager);
+        final int batchSize = getCleanerBatchSize();
+        int count = 0;
+        String lastId = "";
+        List<TicketGrantingTicketImpl> page;
+        do {
+            final String after = lastId;
+            page = template.execute(status -> createPartitionedQuery("select t from TicketGrantingTicketImpl t "
+                    + "where (t.expired = true or t.lastTimeUsedMillis < :before or t.lastTimeUsedMillis is null) "
+                    + "and t.id > :after", "t", TicketGrantingTicketImpl.class, " order by t.id")
+                    .setParameter("before", lastUsedBefore)
+                    .setParameter("after", after)
+                    .setMaxResults(batchSize)
+                    .getResultList());
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).getId();
+                final List<Ticket> expired = page.stream()
+                        .filter(Ticket::isExpired)
+                        .map(this::getProxiedTicketInstance)
+                        .collect(Collectors.toList());
+                if (!expired.isEmpty()) {
+                    count += template.execute(status -> {
+                        if (this.normalizedServiceSessions) {
+                            captureServiceSessions(expired);
+                        }
+                        return cleanupExpiredTickets(expired);
+                    });
+                }
+            }
+        } while (page.size() >= batchSize);
+        logger.debug("Removed {} expired ticket-granting ticket(s) and their children", count);
+        return count;
+    }
+
+    private <T> TypedQuery<T> createPartitionedQuery(final String query, final String alias, final Class<T> clazz) {
+        return createPartitionedQuery(query, alias, clazz, "");
+    }
+
+    private <T> TypedQuery<T> createPartitionedQuery(final String query, final String alias,
+                                                     final Class<T> clazz, final String orderBy) {
+        if (!isCleanerPartitioned()) {
+            return entityManager.createQuery(query + orderBy, clazz);
+        }
+        return entityManager.createQuery(query + " and mod(" + alias + ".idHash, :partitions) = :partition" + orderBy, clazz)
+                .setParameter("partitions", this.cleanerPartitions)
+                .setParameter("partition", this.cleanerPartition);
+    }
+
+    private boolean isCleanerPartitioned() {
+        return this.cleanerPartitions > 1;
+    }
+
+    public void setCleanerPartitions(final int cleanerPartitions) {
+        this.cleanerPartitions = cleanerPartitions;
+    }
+
+    public void setCleanerPartition(final int cleanerPartition) {
+        this.cleanerPartition = cleanerPartition;
+    }
+
+    public long getServiceTicketMaxAge() {
+        return this.serviceTicketMaxAge;
+    }
+
+    public void setServiceTicketMaxAge(final long serviceTicketMaxAge) {
+        this.serviceTicketMaxAge = serviceTicketMaxAge;
+    }
+
+    public void setTicketGrantingTicketMinIdle(final long ticketGrantingTicketMinIdle) {
+        this.ticketGrantingTicketMinIdle = ticketGrantingTicketMinIdle;
+    }
+
     @Override
     protected void postCleanupTickets() {
-        logger.debug("Releasing ticket cleanup lock.");
-        this.jpaLockingStrategy.release();
+        if (this.cleanupLockAcquired) {
+            logger.debug("Releasing ticket cleanup lock.");
+            this.jpaLockingStrategy.release();
+            this.cleanupLockAcquired = false;
+        }
         logger.info("Finished ticket cleanup.");
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>When the cleaner is partitioned, each node only cleans up its own partition,
+     * and no lock is needed.</p>
+     */
     @Override
     protected boolean preCleanupTickets() {
+        if (isCleanerPartitioned()) {
+            if (this.cleanerPartition < 0 || this.cleanerPartition >= this.cleanerPartitions) {
+                logger.warn("Cleaner partition {} is not between 0 and {}. Aborting cleanup.",
+                        this.cleanerPartition, this.cleanerPartitions - 1);
+                return false;
+            }
+            logger.debug("Cleaning up partition {} of {}.", this.cleanerPartition, this.cleanerPartitions);
+            return super.preCleanupTickets();
+        }
         logger.debug("Attempting to acquire ticket cleanup lock.");
         if (!this.jpaLockingStrategy.acquire()) {
             logger.warn("Could not obtain lock. Aborting cleanup.");
             return false;
         }
+        this.cleanupLockAcquired = true;
         logger.debug("Acquired lock. Proceeding with cleanup.");
         return super.preCleanupTickets();
     }
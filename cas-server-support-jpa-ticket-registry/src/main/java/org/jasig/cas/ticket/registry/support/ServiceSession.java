@@ -0,0 +1,102 @@
+package org.jasig.cas.ticket.registry.support;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jasig.cas.authentication.principal.Service;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * A service that a ticket-granting ticket has granted access to, stored as
+ * a row of its own rather than as part of the ticket. Each row is keyed by the
+ * id of the service ticket that was granted for the service.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+@Entity
+@Table(name = "SERVICESESSION",
+        indexes = @Index(name = "SERVICESESSION_TGT_IDX", columnList = "TICKET_GRANTING_TICKET_ID"))
+public class ServiceSession {
+
+    @Id
+    @Column(name = "ID", nullable = false)
+    private String id;
+
+    @Column(name = "TICKET_GRANTING_TICKET_ID", nullable = false)
+    private String ticketGrantingTicketId;
+
+    /** Service id without its query string or fragment, to find earlier sessions of the same service. */
+    @Column(name = "SERVICE_PATH", nullable = false, length = 2048)
+    private String servicePath;
+
+    @Lob
+    @Column(name = "SERVICE", nullable = false, length = Integer.MAX_VALUE)
+    private Service service;
+
+    @Column(name = "CREATION_TIME", nullable = false)
+    private ZonedDateTime creationTime;
+
+    /**
+     * Instantiates a new service session.
+     */
+    public ServiceSession() {
+        // nothing to do
+    }
+
+    /**
+     * Instantiates a new service session.
+     *
+     * @param serviceTicketId        the id of the service ticket granted for the service
+     * @param ticketGrantingTicketId the id of the ticket-granting ticket
+     * @param service                the service
+     */
+    public ServiceSession(final String serviceTicketId, final String ticketGrantingTicketId, final Service service) {
+        this.id = serviceTicketId;
+        this.ticketGrantingTicketId = ticketGrantingTicketId;
+        this.service = service;
+        this.servicePath = normalizePath(service);
+        this.creationTime = ZonedDateTime.now(ZoneOffset.UTC);
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public String getTicketGrantingTicketId() {
+        return this.ticketGrantingTicketId;
+    }
+
+    public String getServicePath() {
+        return this.servicePath;
+    }
+
+    public Service getService() {
+        return this.service;
+    }
+
+    public ZonedDateTime getCreationTime() {
+        return this.creationTime;
+    }
+
+    /**
+     * Normalize the path of a service by removing the query string and everything after a semi-colon,
+     * the same way the ticket-granting ticket does when it only tracks the most recent session.
+     *
+     * @param service the service to normalize
+     * @return the normalized path
+     */
+    public static String normalizePath(final Service service) {
+        String path = service.getId();
+        path = StringUtils.substringBefore(path, "?");
+        path = StringUtils.substringBefore(path, ";");
+        path = StringUtils.substringBefore(path, "#");
+        return path;
+    }
+}
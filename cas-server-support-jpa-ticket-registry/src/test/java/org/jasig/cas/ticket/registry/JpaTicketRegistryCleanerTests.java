@@ -0,0 +1,181 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.authentication.TestUtils;
+import org.jasig.cas.authentication.principal.Service;
+import org.jasig.cas.logout.LogoutManager;
+import org.jasig.cas.logout.LogoutRequest;
+import org.jasig.cas.mock.MockService;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.jasig.cas.ticket.TicketGrantingTicketImpl;
+import org.jasig.cas.ticket.support.HardTimeoutExpirationPolicy;
+import org.jasig.cas.ticket.support.NeverExpiresExpirationPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.Advised;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for the partitioned cleaner of {@link JpaTicketRegistry}.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class JpaTicketRegistryCleanerTests {
+
+    private static final int NUMBER_OF_TICKETS = 20;
+
+    private static final int PARTITIONS = 2;
+
+    private ClassPathXmlApplicationContext context;
+
+    private PlatformTransactionManager txManager;
+
+    private TicketRegistry jpaTicketRegistry;
+
+    private JpaTicketRegistry registry;
+
+    @Before
+    public void setup() throws Exception {
+        System.setProperty("ticket.registry.cleaner.enabled", "false");
+        System.setProperty("ticket.registry.cleaner.batchsize", "3");
+        System.setProperty("database.url", "jdbc:hsqldb:mem:cas-ticket-registry-cleaner");
+        this.context = new ClassPathXmlApplicationContext("classpath:/jpaSpringContext.xml");
+        this.jpaTicketRegistry = this.context.getBean("jpaTicketRegistry", TicketRegistry.class);
+        this.registry = (JpaTicketRegistry) ((Advised) this.jpaTicketRegistry).getTargetSource().getTarget();
+        this.txManager = this.context.getBean("ticketTransactionManager", PlatformTransactionManager.class);
+    }
+
+    @After
+    public void shutdown() {
+        System.clearProperty("ticket.registry.cleaner.enabled");
+        System.clearProperty("ticket.registry.cleaner.batchsize");
+        System.clearProperty("database.url");
+        this.context.close();
+    }
+
+    @Test
+    public void verifyServiceTicketMaxAgeCoversTimeToKill() throws Exception {
+        this.context.close();
+        System.setProperty("ticketreg.database.jpa.cleaner.st.maxage", "1");
+        System.setProperty("st.timeToKillInSeconds", "30");
+        try {
+            setup();
+            assertEquals(30, this.registry.getServiceTicketMaxAge());
+        } finally {
+            System.clearProperty("ticketreg.database.jpa.cleaner.st.maxage");
+            System.clearProperty("st.timeToKillInSeconds");
+        }
+    }
+
+    @Test
+    public void verifyExpiredTicketsAreCleanedByPartition() throws Exception {
+        final List<String> expired = new ArrayList<>();
+        for (int i = 0; i < NUMBER_OF_TICKETS; i++) {
+            final TicketGrantingTicket tgt = new TicketGrantingTicketImpl("TGT-EXPIRED-" + i,
+                    TestUtils.getAuthentication(), new HardTimeoutExpirationPolicy(0));
+            inTransaction(() -> {
+                this.jpaTicketRegistry.addTicket(tgt);
+                this.jpaTicketRegistry.addTicket(JpaTicketRegistryTests.newST(tgt));
+            });
+            expired.add(tgt.getId());
+        }
+        final TicketGrantingTicket valid = new TicketGrantingTicketImpl("TGT-VALID",
+                TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy());
+        inTransaction(() -> {
+            this.jpaTicketRegistry.addTicket(valid);
+            this.jpaTicketRegistry.addTicket(valid.grantServiceTicket("ST-VALID", new MockService("https://service.example.com"),
+                    new NeverExpiresExpirationPolicy(), false, false));
+        });
+        Thread.sleep(10);
+
+        this.registry.setServiceTicketMaxAge(0);
+        this.registry.setCleanerPartitions(PARTITIONS);
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            this.registry.setCleanerPartition(partition);
+            this.registry.cleanupTickets();
+            for (final String id : expired) {
+                final boolean cleaned = (id.hashCode() & Integer.MAX_VALUE) % PARTITIONS <= partition;
+                assertEquals(id, cleaned, getTicket(id) == null);
+            }
+        }
+
+        assertNotNull(getTicket(valid.getId()));
+        assertEquals(1, this.jpaTicketRegistry.sessionCount());
+        assertEquals(0, this.jpaTicketRegistry.serviceTicketCount());
+    }
+
+    @Test
+    public void verifyRecentServiceTicketsAreKept() throws Exception {
+        final TicketGrantingTicket tgt = new TicketGrantingTicketImpl("TGT-RECENT",
+                TestUtils.getAuthentication(), new NeverExpiresExpirationPolicy());
+        inTransaction(() -> {
+            this.jpaTicketRegistry.addTicket(tgt);
+            this.jpaTicketRegistry.addTicket(JpaTicketRegistryTests.newST(tgt));
+        });
+        this.registry.cleanupTickets();
+        assertEquals(1, this.jpaTicketRegistry.sessionCount());
+        assertEquals(1, this.jpaTicketRegistry.serviceTicketCount());
+    }
+
+    @Test
+    public void verifyLogoutSeesServiceSessionsOfCleanedTickets() throws Exception {
+        this.registry.setNormalizedServiceSessions(true);
+        this.registry.registerServiceSessionDelegator();
+        final Map<String, Map<String, Service>> loggedOut = new ConcurrentHashMap<>();
+        this.registry.setLogoutManager(new LogoutManager() {
+            @Override
+            public List<LogoutRequest> performLogout(final TicketGrantingTicket ticket) {
+                loggedOut.put(ticket.getId(), ticket.getServices());
+                return Collections.emptyList();
+            }
+
+            @Override
+            public String createFrontChannelLogoutMessage(final LogoutRequest logoutRequest) {
+                return null;
+            }
+        });
+
+        final TicketGrantingTicket tgt = new TicketGrantingTicketImpl("TGT-SESSIONS",
+                TestUtils.getAuthentication(), new HardTimeoutExpirationPolicy(0));
+        inTransaction(() -> this.jpaTicketRegistry.addTicket(tgt));
+        for (int i = 0; i < NUMBER_OF_TICKETS; i++) {
+            final int index = i;
+            inTransaction(() -> {
+                final TicketGrantingTicket ticket = (TicketGrantingTicket) this.jpaTicketRegistry.getTicket(tgt.getId());
+                this.jpaTicketRegistry.addTicket(ticket.grantServiceTicket("ST-SESSION-" + index,
+                        new MockService("https://service" + index + ".example.com"), new NeverExpiresExpirationPolicy(), false, false));
+            });
+        }
+        Thread.sleep(10);
+
+        this.registry.setServiceTicketMaxAge(0);
+        this.registry.cleanupTickets();
+
+        assertNull(getTicket(tgt.getId()));
+        assertEquals(NUMBER_OF_TICKETS, loggedOut.get(tgt.getId()).size());
+        assertEquals("https://service0.example.com", loggedOut.get(tgt.getId()).get("ST-SESSION-0").getId());
+    }
+
+    private TicketGrantingTicket getTicket(final String id) {
+        return new TransactionTemplate(this.txManager).execute(
+                status -> (TicketGrantingTicket) this.jpaTicketRegistry.getTicket(id));
+    }
+
+    private void inTransaction(final Runnable runnable) {
+        new TransactionTemplate(this.txManager).execute(status -> {
+            runnable.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,113 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.Advised;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.OptimisticLockException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link JpaTicketRegistry} with optimistic locking of ticket-granting tickets.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class JpaTicketRegistryOptimisticLockingTests {
+
+    /** Number of clients contending for the same ticket; each may hold two connections at once. */
+    private static final int CONCURRENT_SIZE = 5;
+
+    private ClassPathXmlApplicationContext context;
+
+    private PlatformTransactionManager txManager;
+
+    private TicketRegistry jpaTicketRegistry;
+
+    @Before
+    public void setup() {
+        System.setProperty("ticketreg.database.jpa.locking.tgt.optimistic", "true");
+        System.setProperty("database.url", "jdbc:hsqldb:mem:cas-ticket-registry-optimistic;hsqldb.tx=mvcc");
+        this.context = new ClassPathXmlApplicationContext("classpath:/jpaSpringContext.xml");
+        this.jpaTicketRegistry = this.context.getBean("jpaTicketRegistry", TicketRegistry.class);
+        this.txManager = this.context.getBean("ticketTransactionManager", PlatformTransactionManager.class);
+    }
+
+    @After
+    public void shutdown() {
+        System.clearProperty("ticketreg.database.jpa.locking.tgt.optimistic");
+        System.clearProperty("database.url");
+        this.context.close();
+    }
+
+    @Test
+    public void verifyConcurrentServiceTicketGrantsAreNotLost() throws Exception {
+        final TicketGrantingTicket tgt = JpaTicketRegistryTests.newTGT();
+        new TransactionTemplate(this.txManager).execute(status -> {
+            this.jpaTicketRegistry.addTicket(tgt);
+            return null;
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_SIZE);
+        try {
+            final List<Callable<String>> generators = new ArrayList<>(CONCURRENT_SIZE);
+            for (int i = 0; i < CONCURRENT_SIZE; i++) {
+                generators.add(() -> new TransactionTemplate(this.txManager).execute(status -> {
+                    final ServiceTicket st = JpaTicketRegistryTests.newST(
+                            (TicketGrantingTicket) this.jpaTicketRegistry.getTicket(tgt.getId()));
+                    this.jpaTicketRegistry.addTicket(st);
+                    return st.getId();
+                }));
+            }
+            for (final Future<String> result : executor.invokeAll(generators)) {
+                assertNotNull(this.jpaTicketRegistry.getTicket(result.get()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final TicketGrantingTicket result = new TransactionTemplate(this.txManager).execute(
+                status -> (TicketGrantingTicket) this.jpaTicketRegistry.getTicket(tgt.getId()));
+        assertEquals(CONCURRENT_SIZE, result.getCountOfUses());
+    }
+
+    @Test(expected = OptimisticLockException.class)
+    public void verifyServiceSessionsIncrementVersion() throws Exception {
+        final JpaTicketRegistry registry = (JpaTicketRegistry) ((Advised) this.jpaTicketRegistry).getTargetSource().getTarget();
+        registry.setNormalizedServiceSessions(true);
+        registry.registerServiceSessionDelegator();
+
+        final TicketGrantingTicket tgt = JpaTicketRegistryTests.newTGT();
+        new TransactionTemplate(this.txManager).execute(status -> {
+            this.jpaTicketRegistry.addTicket(tgt);
+            return null;
+        });
+
+        final TransactionTemplate grant = new TransactionTemplate(this.txManager);
+        grant.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        new TransactionTemplate(this.txManager).execute(status -> {
+            final TicketGrantingTicket stale = (TicketGrantingTicket) this.jpaTicketRegistry.getTicket(tgt.getId());
+            grant.execute(grantStatus -> {
+                this.jpaTicketRegistry.addTicket(JpaTicketRegistryTests.newST(
+                        (TicketGrantingTicket) this.jpaTicketRegistry.getTicket(tgt.getId())));
+                return null;
+            });
+            stale.markTicketExpired();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,122 @@
+package org.jasig.cas.ticket.registry;
+
+import org.jasig.cas.mock.MockService;
+import org.jasig.cas.ticket.ServiceTicket;
+import org.jasig.cas.ticket.TicketGrantingTicket;
+import org.jasig.cas.ticket.support.NeverExpiresExpirationPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link JpaTicketRegistry} with service sessions stored in a table of their own.
+ *
+ * @author Misagh Moayyed
+ * @since 5.0.0
+ */
+public class JpaTicketRegistryServiceSessionTests {
+
+    private static final int NUMBER_OF_SERVICES = 200;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private ClassPathXmlApplicationContext context;
+
+    private PlatformTransactionManager txManager;
+
+    private TicketRegistry jpaTicketRegistry;
+
+    @Before
+    public void setup() {
+        System.setProperty("ticketreg.database.jpa.services.normalized", "true");
+        System.setProperty("database.url", "jdbc:hsqldb:mem:cas-ticket-registry-sessions");
+        this.context = new ClassPathXmlApplicationContext("classpath:/jpaSpringContext.xml");
+        this.jpaTicketRegistry = this.context.getBean("jpaTicketRegistry", TicketRegistry.class);
+        this.txManager = this.context.getBean("ticketTransactionManager", PlatformTransactionManager.class);
+    }
+
+    @After
+    public void shutdown() {
+        System.clearProperty("ticketreg.database.jpa.services.normalized");
+        System.clearProperty("database.url");
+        this.context.close();
+    }
+
+    @Test
+    public void verifyServicesAreStoredAsServiceSessions() {
+        final TicketGrantingTicket tgt = JpaTicketRegistryTests.newTGT();
+        // granted before service sessions were stored separately
+        tgt.grantServiceTicket("ST-MIGRATED", new MockService("https://migrated.example.com"),
+                new NeverExpiresExpirationPolicy(), false, false);
+        inTransaction(() -> this.jpaTicketRegistry.addTicket(tgt));
+
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < NUMBER_OF_SERVICES; i++) {
+            final int index = i;
+            inTransaction(() -> {
+                final TicketGrantingTicket ticket = (TicketGrantingTicket) this.jpaTicketRegistry.getTicket(tgt.getId());
+                this.jpaTicketRegistry.addTicket(ticket.grantServiceTicket("ST-" + index,
+                        new MockService("https://service" + index + ".example.com"), new NeverExpiresExpirationPolicy(), false, false));
+            });
+        }
+        logger.info("Granted {} service tickets in {} ms", NUMBER_OF_SERVICES, System.currentTimeMillis() - start);
+
+        final TicketGrantingTicket result = getTicketGrantingTicket(tgt.getId());
+        assertEquals(NUMBER_OF_SERVICES + 1, result.getServices().size());
+        assertEquals("https://migrated.example.com", result.getServices().get("ST-MIGRATED").getId());
+        assertEquals(NUMBER_OF_SERVICES + 1, result.getCountOfUses());
+        assertEquals(NUMBER_OF_SERVICES, countServiceSessions());
+
+        inTransaction(() -> this.jpaTicketRegistry.deleteTicket(tgt.getId()));
+        assertNull(getTicketGrantingTicket(tgt.getId()));
+        assertEquals(0, countServiceSessions());
+    }
+
+    @Test
+    public void verifyOnlyMostRecentSessionIsTracked() {
+        final TicketGrantingTicket tgt = JpaTicketRegistryTests.newTGT();
+        inTransaction(() -> this.jpaTicketRegistry.addTicket(tgt));
+        for (int i = 0; i < 2; i++) {
+            inTransaction(() -> {
+                final ServiceTicket st = JpaTicketRegistryTests.newST(
+                        (TicketGrantingTicket) this.jpaTicketRegistry.getTicket(tgt.getId()));
+                this.jpaTicketRegistry.addTicket(st);
+            });
+        }
+        final TicketGrantingTicket result = getTicketGrantingTicket(tgt.getId());
+        assertEquals(1, result.getServices().size());
+        assertEquals(2, result.getCountOfUses());
+    }
+
+    private void inTransaction(final Runnable runnable) {
+        new TransactionTemplate(this.txManager).execute(status -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    private TicketGrantingTicket getTicketGrantingTicket(final String id) {
+        return new TransactionTemplate(this.txManager).execute(
+                status -> (TicketGrantingTicket) this.jpaTicketRegistry.getTicket(id));
+    }
+
+    private long countServiceSessions() {
+        final EntityManager entityManager = this.context.getBean("ticketEntityManagerFactory", EntityManagerFactory.class)
+                .createEntityManager();
+        try {
+            return ((Number) entityManager.createQuery("select count(s) from ServiceSession s").getSingleResult()).longValue();
+        } finally {
+            entityManager.close();
+        }
+    }
+}
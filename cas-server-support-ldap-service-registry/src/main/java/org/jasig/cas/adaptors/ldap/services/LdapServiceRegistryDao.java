@@ -2,6 +2,7 @@ package org.jasig.cas.adaptors.ldap.services;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jasig.cas.services.RegisteredService;
+import org.jasig.cas.services.ReloadableServicesManager;
 import org.jasig.cas.services.ServiceRegistryDao;
 
 import org.ldaptive.AddOperation;
@@ -10,6 +11,7 @@ import org.ldaptive.AttributeModification;
 import org.ldaptive.AttributeModificationType;
 import org.ldaptive.Connection;
 import org.ldaptive.ConnectionFactory;
+import org.ldaptive.DefaultConnectionFactory;
 import org.ldaptive.DeleteOperation;
 import org.ldaptive.DeleteRequest;
 import org.ldaptive.LdapEntry;
@@ -23,22 +25,40 @@ import org.ldaptive.SearchFilter;
 import org.ldaptive.SearchOperation;
 import org.ldaptive.SearchRequest;
 import org.ldaptive.SearchResult;
+import org.ldaptive.control.PersistentSearchChangeType;
+import org.ldaptive.control.util.PagedResultsClient;
+import org.ldaptive.control.util.PersistentSearchClient;
+import org.ldaptive.control.util.PersistentSearchItem;
+import org.ldaptive.pool.BlockingConnectionPool;
+import org.ldaptive.pool.PoolConfig;
+import org.ldaptive.pool.PooledConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.stream.Collectors;
 
 /**
  * Implementation of the ServiceRegistryDao interface which stores the services in a LDAP Directory.
+ * <p>
+ * Services are loaded a page at a time using the paged results control, and each page is
+ * mapped before the next one is requested. A plain connection factory may be pooled by the dao,
+ * and the lookup and modification of a service happen on the same connection. The directory may
+ * optionally be watched with a persistent search, in which case the services manager is reloaded
+ * as soon as services change rather than on its next periodic reload.
  *
  * @author Misagh Moayyed
  * @author Marvin S. Addison
@@ -70,6 +90,41 @@ public final class LdapServiceRegistryDao implements ServiceRegistryDao {
     @Qualifier("ldapServiceRegistrySearchRequest")
     private SearchRequest searchRequest;
 
+    @Autowired(required=false)
+    private ApplicationContext applicationContext;
+
+    /**
+     * Number of entries requested per page when loading services. Set to 0 to load all entries at once.
+     */
+    @Value("${svcreg.ldap.load.pageSize:0}")
+    private int pageSize;
+
+    /**
+     * Minimum size of the pool created when a plain connection factory is provided.
+     */
+    @Value("${svcreg.ldap.pool.minSize:0}")
+    private int minPoolSize;
+
+    /**
+     * Maximum size of the pool created when a plain connection factory is provided. Set to 0 to disable pooling.
+     */
+    @Value("${svcreg.ldap.pool.maxSize:0}")
+    private int maxPoolSize;
+
+    /**
+     * Whether to watch service entries with a persistent search and reload services as they change.
+     */
+    @Value("${svcreg.ldap.persistentSearch.enabled:false}")
+    private boolean persistentSearchEnabled;
+
+    private PooledConnectionFactory pooledConnectionFactory;
+
+    private Connection persistentSearchConnection;
+
+    private PersistentSearchClient persistentSearchClient;
+
+    private Thread persistentSearchThread;
+
     /**
      * Inits the dao with the search filter and load filters.
      */
@@ -79,17 +134,54 @@ public final class LdapServiceRegistryDao implements ServiceRegistryDao {
         logger.debug("Configured search filter to {}", this.searchFilter);
         this.loadFilter = "(objectClass=" + this.ldapServiceMapper.getObjectClass() + ')';
         logger.debug("Configured load filter to {}", this.loadFilter);
+
+        if (this.maxPoolSize > 0 && this.connectionFactory instanceof DefaultConnectionFactory) {
+            final PoolConfig config = new PoolConfig();
+            config.setMinPoolSize(this.minPoolSize);
+            config.setMaxPoolSize(this.maxPoolSize);
+            final BlockingConnectionPool pool = new BlockingConnectionPool(config, (DefaultConnectionFactory) this.connectionFactory);
+            pool.initialize();
+            this.pooledConnectionFactory = new PooledConnectionFactory(pool);
+            logger.debug("Pooling up to {} connections to the service registry", this.maxPoolSize);
+        }
+
+        if (this.persistentSearchEnabled && this.connectionFactory != null && this.searchRequest != null) {
+            startPersistentSearch();
+        }
+    }
+
+    /**
+     * Stops watching the directory and closes the connections owned by the dao.
+     */
+    @PreDestroy
+    public void destroy() {
+        if (this.persistentSearchClient != null) {
+            try {
+                this.persistentSearchClient.cancel();
+            } catch (final LdapException e) {
+                logger.debug("Unable to cancel the persistent search", e);
+            }
+        }
+        if (this.persistentSearchThread != null) {
+            this.persistentSearchThread.interrupt();
+        }
+        if (this.persistentSearchConnection != null) {
+            this.persistentSearchConnection.close();
+        }
+        if (this.pooledConnectionFactory != null) {
+            this.pooledConnectionFactory.getConnectionPool().close();
+        }
     }
 
     @Override
     public RegisteredService save(final RegisteredService rs) {
 
         if (this.ldapServiceMapper != null && this.searchRequest != null) {
-            if (rs.getId() != RegisteredService.INITIAL_IDENTIFIER_VALUE) {
-                return update(rs);
-            }
-
             try (final Connection connection = getConnection()) {
+                if (rs.getId() != RegisteredService.INITIAL_IDENTIFIER_VALUE) {
+                    return update(connection, rs);
+                }
+
                 final AddOperation operation = new AddOperation(connection);
 
                 final LdapEntry entry = this.ldapServiceMapper.mapFromRegisteredService(this.searchRequest.getBaseDn(), rs);
@@ -105,17 +197,14 @@ public final class LdapServiceRegistryDao implements ServiceRegistryDao {
     /**
      * Update the ldap entry with the given registered service.
      *
+     * @param connection the connection to look up and modify the entry with
      * @param rs the rs
      * @return the registered service
      */
-    private RegisteredService update(final RegisteredService rs) {
+    private RegisteredService update(final Connection connection, final RegisteredService rs) {
         String currentDn = null;
-        if (ldapServiceMapper == null || searchRequest == null) {
-            return null;
-        }
-
-        try (final Connection searchConnection = getConnection()) {
-            final Response<SearchResult> response = searchForServiceById(searchConnection, rs.getId());
+        try {
+            final Response<SearchResult> response = searchForServiceById(connection, rs.getId());
             if (hasResults(response)) {
                 currentDn = response.getResult().getEntry().getDn();
             }
@@ -126,8 +215,8 @@ public final class LdapServiceRegistryDao implements ServiceRegistryDao {
         if (StringUtils.isNotBlank(currentDn)) {
             logger.debug("Updating registered service at {}", currentDn);
 
-            try (final Connection modifyConnection = getConnection()) {
-                final ModifyOperation operation = new ModifyOperation(modifyConnection);
+            try {
+                final ModifyOperation operation = new ModifyOperation(connection);
                 final List<AttributeModification> mods = new ArrayList<>();
 
                 final LdapEntry entry = this.ldapServiceMapper.mapFromRegisteredService(this.searchRequest.getBaseDn(), rs);
@@ -170,18 +259,46 @@ public final class LdapServiceRegistryDao implements ServiceRegistryDao {
         }
 
         try (final Connection connection = getConnection()) {
-            final Response<SearchResult> response =
-                    executeSearchOperation(connection, new SearchFilter(this.loadFilter));
-            if (hasResults(response)) {
-                for (final LdapEntry entry : response.getResult().getEntries()) {
-                    final RegisteredService svc = this.ldapServiceMapper.mapToRegisteredService(entry);
-                    list.add(svc);
+            final SearchRequest request = newRequest(new SearchFilter(this.loadFilter));
+            if (this.pageSize <= 0) {
+                logger.debug("Using search request {}", request);
+                mapEntries(new SearchOperation(connection).execute(request), list);
+                return list;
+            }
+
+            final PagedResultsClient client = new PagedResultsClient(connection, this.pageSize);
+            logger.debug("Using search request {} with pages of {} entries", request, this.pageSize);
+            Response<SearchResult> response = client.execute(request);
+            while (response.getResultCode() == ResultCode.SUCCESS) {
+                mapEntries(response, list);
+                if (!client.hasMore(response)) {
+                    return list;
                 }
+                response = client.execute(request, response);
             }
+            logger.error("Loading services failed after {} entries. Code: {}, Message: {}",
+                    list.size(), response.getResultCode(), response.getMessage());
         } catch (final LdapException e) {
             logger.error(e.getMessage(), e);
         }
-        return list;
+        // a partial list would silently drop the services of the missing pages
+        return new LinkedList<>();
+    }
+
+    /**
+     * Map the entries of the given response to registered services.
+     *
+     * @param response the response
+     * @param services the services to add the mapped entries to
+     * @throws LdapException the ldap exception
+     */
+    private void mapEntries(final Response<SearchResult> response, final List<RegisteredService> services)
+            throws LdapException {
+        if (hasResults(response)) {
+            for (final LdapEntry entry : response.getResult().getEntries()) {
+                services.add(this.ldapServiceMapper.mapToRegisteredService(entry));
+            }
+        }
     }
 
     @Override
@@ -246,6 +363,10 @@ public final class LdapServiceRegistryDao implements ServiceRegistryDao {
         this.searchRequest = request;
     }
 
+    public void setPageSize(final int pageSize) {
+        this.pageSize = pageSize;
+    }
+
     /**
      * Checks to see if response has a result.
      *
@@ -288,14 +409,90 @@ public final class LdapServiceRegistryDao implements ServiceRegistryDao {
     }
 
     /**
-     * Gets connection from the factory.
+     * Start watching service entries with a persistent search, on a connection of its own.
+     * Failures are logged, and services are then only reloaded periodically.
+     */
+    private void startPersistentSearch() {
+        try {
+            this.persistentSearchConnection = this.connectionFactory.getConnection();
+            if (!this.persistentSearchConnection.isOpen()) {
+                this.persistentSearchConnection.open();
+            }
+            this.persistentSearchClient = new PersistentSearchClient(this.persistentSearchConnection,
+                    EnumSet.allOf(PersistentSearchChangeType.class), true, false);
+            final BlockingQueue<PersistentSearchItem> queue =
+                    this.persistentSearchClient.execute(newRequest(new SearchFilter(this.loadFilter)));
+            this.persistentSearchThread = new Thread(() -> watchPersistentSearch(queue), "ldapServiceRegistryWatcher");
+            this.persistentSearchThread.setDaemon(true);
+            this.persistentSearchThread.start();
+            logger.info("Watching service entries under {} for changes", this.searchRequest.getBaseDn());
+        } catch (final LdapException e) {
+            logger.warn("Unable to watch service entries for changes. Services will only be reloaded periodically", e);
+        }
+    }
+
+    /**
+     * Reload the services manager whenever the persistent search reports changes,
+     * once for all the changes that are reported at the same time.
+     *
+     * @param queue the queue of persistent search items
+     */
+    private void watchPersistentSearch(final BlockingQueue<PersistentSearchItem> queue) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final List<PersistentSearchItem> items = new ArrayList<>();
+                items.add(queue.take());
+                queue.drainTo(items);
+                boolean changed = false;
+                for (final PersistentSearchItem item : items) {
+                    if (item.isEntry()) {
+                        changed = true;
+                    } else if (item.isException()) {
+                        logger.warn("Persistent search failed. Services will only be reloaded periodically",
+                                item.getException());
+                        return;
+                    } else if (item.isResponse()) {
+                        logger.info("Persistent search ended with {}. Services will only be reloaded periodically",
+                                item.getResponse().getResultCode());
+                        return;
+                    }
+                }
+                if (changed) {
+                    logger.debug("{} service entries changed, reloading services", items.size());
+                    refreshServicesManager();
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Refreshes the services manager, forcing it to reload.
+     */
+    private void refreshServicesManager() {
+        if (this.applicationContext == null) {
+            logger.debug("No application context is available to reload services from");
+            return;
+        }
+        try {
+            this.applicationContext.getBean(ReloadableServicesManager.class).reload();
+        } catch (final Exception e) {
+            logger.error("Unable to reload the services manager", e);
+        }
+    }
+
+    /**
+     * Gets connection from the pool created by the dao, or from the factory.
      * Opens the connection if needed.
      *
      * @return the connection
      * @throws LdapException the ldap exception
      */
     private Connection getConnection() throws LdapException {
-        final Connection c = this.connectionFactory.getConnection();
+        final Connection c = this.pooledConnectionFactory != null
+                ? this.pooledConnectionFactory.getConnection()
+                : this.connectionFactory.getConnection();
         if (!c.isOpen()) {
             c.open();
         }
@@ -184,6 +184,20 @@ public class LdapServiceRegistryDaoTests extends AbstractLdapTests {
         assertEquals(0, this.dao.load().size());
     }
 
+    @Test
+    public void verifyLoadingServicesInPages() throws Exception {
+        final LdapServiceRegistryDao registry = (LdapServiceRegistryDao) this.dao;
+        for (int i = 0; i < 5; i++) {
+            registry.save(getRegisteredService());
+        }
+        registry.setPageSize(2);
+        try {
+            assertEquals(5, registry.load().size());
+        } finally {
+            registry.setPageSize(0);
+        }
+    }
+
     private static RegisteredService getRegisteredService() {
         final AbstractRegisteredService rs = new RegisteredServiceImpl();
         rs.setName("Service Name1");
@@ -11,9 +11,7 @@ import org.jasig.cas.support.oauth.ticket.refreshtoken.RefreshToken;
 import org.jasig.cas.support.oauth.ticket.registry.AccessTokenDelegator;
 import org.jasig.cas.support.oauth.ticket.registry.OAuthCodeDelegator;
 import org.jasig.cas.support.oauth.ticket.registry.RefreshTokenDelegator;
-import org.jasig.cas.ticket.registry.AbstractTicketDelegator;
 import org.jasig.cas.ticket.registry.AbstractTicketRegistry;
-import org.jasig.cas.util.Pair;
 import org.jasig.cas.web.AbstractServletContextInitializer;
 import org.jasig.cas.web.support.WebUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -69,12 +67,9 @@ public class OAuthServletContextListener extends AbstractServletContextInitializ
             servicesManager.reload();
         }
 
-        ticketRegistry.getTicketDelegators().add(0, new Pair(RefreshToken.class,
-                AbstractTicketDelegator.getDefaultConstructor(RefreshTokenDelegator.class)));
-        ticketRegistry.getTicketDelegators().add(1, new Pair(AccessToken.class,
-                AbstractTicketDelegator.getDefaultConstructor(AccessTokenDelegator.class)));
-        ticketRegistry.getTicketDelegators().add(2, new Pair(OAuthCode.class,
-                AbstractTicketDelegator.getDefaultConstructor(OAuthCodeDelegator.class)));
+        ticketRegistry.registerTicketDelegator(0, RefreshToken.class, RefreshTokenDelegator::new);
+        ticketRegistry.registerTicketDelegator(1, AccessToken.class, AccessTokenDelegator::new);
+        ticketRegistry.registerTicketDelegator(2, OAuthCode.class, OAuthCodeDelegator::new);
     }
 
     @Override